@@ -3,6 +3,8 @@ package uk.ac.sanger.storelight.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -13,6 +15,22 @@ public class ApiKeyConfig {
     @Value("#{${uk.ac.sanger.storelight.apikeys}}")
     Map<String, String> apiKeys;
 
+    /** Map of app name to barcode rules specification (see {@link BarcodeRules#valueOf}) */
+    @Value("#{${uk.ac.sanger.storelight.barcoderules:{:}}}")
+    Map<String, String> barcodeRuleSpecs;
+
+    private Map<String, BarcodeRules> barcodeRules = Map.of();
+
+    @PostConstruct
+    void parseBarcodeRules() {
+        if (barcodeRuleSpecs==null || barcodeRuleSpecs.isEmpty()) {
+            return;
+        }
+        Map<String, BarcodeRules> rules = new HashMap<>(barcodeRuleSpecs.size());
+        barcodeRuleSpecs.forEach((app, spec) -> rules.put(app, BarcodeRules.valueOf(spec)));
+        this.barcodeRules = rules;
+    }
+
     public Map<String, String> getApiKeys() {
         return this.apiKeys;
     }
@@ -24,4 +42,14 @@ public class ApiKeyConfig {
     public String getApp(String apiKey) {
         return getApiKeys().get(apiKey);
     }
+
+    /**
+     * Gets the barcode rules for the given app.
+     * @param app the name of the app
+     * @return the barcode rules for the app, or the default rules if none are configured
+     */
+    public BarcodeRules getBarcodeRules(String app) {
+        BarcodeRules rules = (app==null ? null : barcodeRules.get(app));
+        return (rules==null ? BarcodeRules.DEFAULT : rules);
+    }
 }
@@ -0,0 +1,133 @@
+package uk.ac.sanger.storelight.config;
+
+import uk.ac.sanger.storelight.model.Item;
+
+import java.util.Objects;
+
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
+
+/**
+ * Rules for what item barcodes an app is allowed to store.
+ * <p>Rules are specified as a string like <tt>"min=4; max=20; chars=A-Z0-9_-"</tt>,
+ * where every part is optional.
+ * <ul>
+ *     <li><tt>min</tt> and <tt>max</tt> give the allowed length of barcodes, within the bounds
+ *     of {@link Item#MIN_BARCODE} and {@link Item#MAX_BARCODE};</li>
+ *     <li><tt>chars</tt> lists the allowed (ASCII) characters, including ranges such as <tt>A-Z</tt>.
+ *     A hyphen at the start or end of the list is literal. Since barcodes are case insensitive, allowing
+ *     a letter allows it in either case. If <tt>chars</tt> is omitted, any characters are allowed.</li>
+ * </ul>
+ * @author dr6
+ */
+public class BarcodeRules {
+    public static final BarcodeRules DEFAULT = new BarcodeRules(Item.MIN_BARCODE, Item.MAX_BARCODE, null);
+
+    private final int minLength, maxLength;
+    private final boolean[] allowedChars;
+
+    public BarcodeRules(int minLength, int maxLength, boolean[] allowedChars) {
+        if (minLength < Item.MIN_BARCODE || maxLength > Item.MAX_BARCODE || minLength > maxLength) {
+            throw new IllegalArgumentException(String.format("Invalid barcode length range: %s-%s.", minLength, maxLength));
+        }
+        if (allowedChars!=null && allowedChars.length!=128) {
+            throw new IllegalArgumentException("Allowed characters must be given as an array of length 128.");
+        }
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.allowedChars = allowedChars;
+    }
+
+    public int getMinLength() {
+        return this.minLength;
+    }
+
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+    /** Are characters restricted by these rules? */
+    public boolean hasCharacterRestriction() {
+        return (allowedChars!=null);
+    }
+
+    /**
+     * Is the given character allowed by these rules?
+     * @param ch the character
+     * @return true if the character is allowed
+     */
+    public boolean isAllowed(char ch) {
+        return (allowedChars==null || ch < 128 && allowedChars[ch]);
+    }
+
+    /**
+     * Parses barcode rules from a string.
+     * @param spec the specification of the rules
+     * @return the rules specified
+     * @exception IllegalArgumentException if the specification is invalid
+     */
+    public static BarcodeRules valueOf(String spec) {
+        Objects.requireNonNull(spec, "Cannot convert null to barcode rules.");
+        int min = Item.MIN_BARCODE, max = Item.MAX_BARCODE;
+        boolean[] allowedChars = null;
+        for (String part : spec.split(";")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int n = part.indexOf('=');
+            if (n < 0) {
+                throw new IllegalArgumentException("Invalid barcode rule: "+repr(part));
+            }
+            String key = part.substring(0, n).trim();
+            String value = part.substring(n+1).trim();
+            try {
+                switch (key) {
+                    case "min":
+                        min = Integer.parseInt(value);
+                        break;
+                    case "max":
+                        max = Integer.parseInt(value);
+                        break;
+                    case "chars":
+                        allowedChars = parseChars(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown barcode rule: "+repr(key));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid barcode rule: "+repr(part), e);
+            }
+        }
+        return new BarcodeRules(min, max, allowedChars);
+    }
+
+    private static boolean[] parseChars(String value) {
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("No characters specified in barcode rule.");
+        }
+        boolean[] allowed = new boolean[128];
+        final int len = value.length();
+        for (int i = 0; i < len; ++i) {
+            char start = value.charAt(i);
+            char end = start;
+            if (i+2 < len && value.charAt(i+1)=='-') {
+                end = value.charAt(i+2);
+                i += 2;
+            }
+            if (start > end || end >= 128) {
+                throw new IllegalArgumentException("Invalid characters in barcode rule: "+repr(value));
+            }
+            for (char ch = start; ch <= end; ++ch) {
+                allowed[ch] = true;
+                allowed[Character.toUpperCase(ch)] = true;
+                allowed[Character.toLowerCase(ch)] = true;
+            }
+        }
+        return allowed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(min=%s, max=%s, restricted=%s)", minLength, maxLength, allowedChars!=null);
+    }
+}
@@ -1,16 +1,22 @@
 package uk.ac.sanger.storelight.graphql;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import graphql.schema.DataFetcher;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import uk.ac.sanger.storelight.model.Item;
-import uk.ac.sanger.storelight.model.Location;
+import uk.ac.sanger.storelight.model.*;
 import uk.ac.sanger.storelight.repo.StoreDB;
-import uk.ac.sanger.storelight.requests.LocationIdentifier;
-import uk.ac.sanger.storelight.service.LocationService;
+import uk.ac.sanger.storelight.requests.*;
+import uk.ac.sanger.storelight.service.*;
 
+import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
+
+import static java.util.stream.Collectors.toList;
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 
 /**
  * @author dr6
@@ -19,12 +25,22 @@ import java.util.List;
 public class DataFetchers extends BaseGraphQLResource {
     final StoreDB db;
     final LocationService locationService;
+    final LocationSearchIndex locationSearchIndex;
+    final StoredQueryService storedQueryService;
+    final ReconcileService reconcileService;
+    final SubtreeCountService subtreeCountService;
 
     @Autowired
-    public DataFetchers(ObjectMapper objectMapper, StoreDB db, LocationService locationService) {
+    public DataFetchers(ObjectMapper objectMapper, StoreDB db, LocationService locationService,
+                        LocationSearchIndex locationSearchIndex, StoredQueryService storedQueryService,
+                        ReconcileService reconcileService, SubtreeCountService subtreeCountService) {
         super(objectMapper);
         this.db = db;
         this.locationService = locationService;
+        this.locationSearchIndex = locationSearchIndex;
+        this.storedQueryService = storedQueryService;
+        this.reconcileService = reconcileService;
+        this.subtreeCountService = subtreeCountService;
     }
 
     public DataFetcher<Location> getLocation() {
@@ -34,6 +50,13 @@ public class DataFetchers extends BaseGraphQLResource {
         };
     }
 
+    public DataFetcher<LocationLookupResult> getLocations() {
+        return dfe -> {
+            List<LocationIdentifier> lis = arg(dfe, "identifiers", new TypeReference<List<LocationIdentifier>>() {});
+            return locationService.lookUpLocations(lis);
+        };
+    }
+
     public DataFetcher<Iterable<Item>> getStored() {
         return dfe -> {
             Iterable<String> barcodes = dfe.getArgument("barcodes");
@@ -48,4 +71,172 @@ public class DataFetchers extends BaseGraphQLResource {
             return loc.getHierarchy();
         };
     }
+
+    public DataFetcher<Location> getLocationByPath() {
+        return dfe -> {
+            String path = dfe.getArgument("path");
+            List<Location> locations = db.getLocationRepo().findAllByPath(path);
+            if (locations.size() > 1) {
+                throw new IllegalArgumentException("The path "+repr(path)+" matches more than one location: "
+                        + locations.stream().map(Location::getBarcode).collect(toList()) + ".");
+            }
+            return (locations.isEmpty() ? null : locations.get(0));
+        };
+    }
+
+    public DataFetcher<List<Location>> searchLocations() {
+        return dfe -> {
+            String text = dfe.getArgument("text");
+            LocationIdentifier under = (dfe.getArgument("under")==null ? null : getLocationIdentifier(dfe, "under"));
+            int first = dfe.getArgument("first");
+            return locationSearchIndex.searchLocations(text, under, first);
+        };
+    }
+
+    public DataFetcher<ResultPage<Item>> storedByPrefix() {
+        return dfe -> {
+            String prefix = dfe.getArgument("prefix");
+            int first = dfe.getArgument("first");
+            String after = dfe.getArgument("after");
+            return storedQueryService.storedByPrefix(prefix, first, after);
+        };
+    }
+
+    public DataFetcher<ResultPage<Item>> storedUnder() {
+        return dfe -> {
+            LocationIdentifier li = getLocationIdentifier(dfe);
+            int first = dfe.getArgument("first");
+            String after = dfe.getArgument("after");
+            return storedQueryService.storedUnder(li, first, after);
+        };
+    }
+
+    public DataFetcher<ReconcileResult> reconcile() {
+        return dfe -> {
+            LocationIdentifier li = getLocationIdentifier(dfe);
+            List<StoreInput> scanned = arg(dfe, "scanned", new TypeReference<List<StoreInput>>() {});
+            boolean recursive = dfe.getArgument("recursive");
+            return reconcileService.reconcile(li, scanned, recursive);
+        };
+    }
+
+    public DataFetcher<Address> getAddressAt() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            int index = dfe.getArgument("index");
+            return loc.addressAt(index);
+        };
+    }
+
+    public DataFetcher<List<Address>> getAddresses() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            int from = dfe.getArgument("from");
+            int count = dfe.getArgument("count");
+            return loc.addresses(from, count);
+        };
+    }
+
+    /**
+     * The children of a location; or, if a region is specified, the children in that region
+     */
+    public DataFetcher<List<Location>> getChildren() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            String region = dfe.getArgument("region");
+            if (region==null) {
+                return loc.getChildren();
+            }
+            return db.getLocationRepo().findAllInRegion(loc.getId(), Region.valueOf(region));
+        };
+    }
+
+    /**
+     * The items stored in a location; or, if a region is specified, the items in that region
+     */
+    public DataFetcher<List<Item>> getLocationStored() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            String region = dfe.getArgument("region");
+            if (region==null) {
+                return loc.getStored();
+            }
+            return db.getItemRepo().findAllInRegion(loc.getId(), Region.valueOf(region));
+        };
+    }
+
+    public DataFetcher<ResultPage<Location>> getChildrenPage() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            int first = dfe.getArgument("first");
+            String after = dfe.getArgument("after");
+            return storedQueryService.childrenPage(loc, first, after);
+        };
+    }
+
+    public DataFetcher<ResultPage<Item>> getStoredPage() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            int first = dfe.getArgument("first");
+            String after = dfe.getArgument("after");
+            return storedQueryService.storedPage(loc, first, after);
+        };
+    }
+
+    /**
+     * The number of children of a location, counted in the database unless its children are already loaded
+     */
+    public DataFetcher<Integer> getNumChildren() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            if (loc.getId()==null || Hibernate.isInitialized(loc.getChildren())) {
+                return loc.getNumChildren();
+            }
+            return (int) db.getLocationRepo().countByParentId(loc.getId());
+        };
+    }
+
+    /**
+     * The number of items in a location, counted in the database unless its items are already loaded
+     */
+    public DataFetcher<Integer> getNumStored() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            if (loc.getId()==null || Hibernate.isInitialized(loc.getStored())) {
+                return loc.getNumStored();
+            }
+            return (int) db.getItemRepo().countByLocationId(loc.getId());
+        };
+    }
+
+    /**
+     * The number of items in a location and all the locations inside it, from the maintained subtree counts
+     */
+    public DataFetcher<Integer> getNumStoredUnder() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            return subtreeCountService.countUnder(loc.getId());
+        };
+    }
+
+    /**
+     * The occupancy bitmap of a location, base64 encoded.
+     * The addresses are read with a projection query unless the location's items are already loaded.
+     * @see Location#occupancy
+     */
+    public DataFetcher<String> getOccupancy() {
+        return dfe -> {
+            Location loc = dfe.getSource();
+            if (loc.getSize()==null || loc.getDirection()==null) {
+                return null;
+            }
+            List<Address> addresses;
+            if (loc.getId()==null || Hibernate.isInitialized(loc.getStored())) {
+                addresses = loc.getStored().stream().map(Item::getAddress).filter(Objects::nonNull).collect(toList());
+            } else {
+                addresses = db.getItemRepo().findAddressesByLocationId(loc.getId());
+            }
+            return Base64.getEncoder().encodeToString(loc.occupancy(addresses));
+        };
+    }
 }
@@ -71,20 +71,46 @@ public class GraphQLProvider {
         return RuntimeWiring.newRuntimeWiring()
                 .type(newTypeWiring("Query")
                         .dataFetcher("location", dataFetchers.getLocation())
+                        .dataFetcher("locations", dataFetchers.getLocations())
                         .dataFetcher("stored", dataFetchers.getStored())
                         .dataFetcher("locationHierarchy", dataFetchers.getLocationHierarchy())
+                        .dataFetcher("locationByPath", dataFetchers.getLocationByPath())
+                        .dataFetcher("searchLocations", dataFetchers.searchLocations())
+                        .dataFetcher("storedByPrefix", dataFetchers.storedByPrefix())
+                        .dataFetcher("storedUnder", dataFetchers.storedUnder())
+                        .dataFetcher("reconcile", dataFetchers.reconcile())
+                )
+                .type(newTypeWiring("Location")
+                        .dataFetcher("addressAt", dataFetchers.getAddressAt())
+                        .dataFetcher("addresses", dataFetchers.getAddresses())
+                        .dataFetcher("occupancy", dataFetchers.getOccupancy())
+                        .dataFetcher("children", dataFetchers.getChildren())
+                        .dataFetcher("stored", dataFetchers.getLocationStored())
+                        .dataFetcher("childrenPage", dataFetchers.getChildrenPage())
+                        .dataFetcher("storedPage", dataFetchers.getStoredPage())
+                        .dataFetcher("numChildren", dataFetchers.getNumChildren())
+                        .dataFetcher("numStored", dataFetchers.getNumStored())
+                        .dataFetcher("numStoredUnder", dataFetchers.getNumStoredUnder())
                 )
                 .type(newTypeWiring("Mutation")
                         .dataFetcher("addLocation", transact(locationMutations.addLocation()))
+                        .dataFetcher("addLocations", transact(locationMutations.addLocations()))
                         .dataFetcher("editLocation", transact(locationMutations.editLocation()))
+                        .dataFetcher("editLocations", transact(locationMutations.editLocations()))
+                        .dataFetcher("rearrange", transact(locationMutations.rearrange()))
+                        .dataFetcher("deleteLocation", transact(locationMutations.deleteLocation()))
 
                         .dataFetcher("storeBarcode", transact(storeMutations.storeBarcode()))
                         .dataFetcher("storeBarcodes", transact(storeMutations.storeBarcodes()))
                         .dataFetcher("store", transact(storeMutations.store()))
+                        // bulkStore commits its items in chunks, each in its own transaction
+                        .dataFetcher("bulkStore", storeMutations.bulkStore())
+                        .dataFetcher("transfer", transact(storeMutations.transfer()))
 
                         .dataFetcher("unstoreBarcode", transact(unstoreMutations.unstoreBarcode()))
                         .dataFetcher("unstoreBarcodes", transact(unstoreMutations.unstoreBarcodes()))
                         .dataFetcher("empty", transact(unstoreMutations.empty()))
+                        .dataFetcher("emptyRecursive", transact(unstoreMutations.emptyRecursive()))
                 )
                 .scalar(CustomTypes.ADDRESS)
                 .build();
@@ -1,14 +1,16 @@
 package uk.ac.sanger.storelight.graphql;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import graphql.schema.DataFetcher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import uk.ac.sanger.storelight.model.Location;
-import uk.ac.sanger.storelight.requests.LocationIdentifier;
-import uk.ac.sanger.storelight.requests.LocationInput;
+import uk.ac.sanger.storelight.requests.*;
 import uk.ac.sanger.storelight.service.LocationService;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,6 +33,14 @@ public class LocationMutations extends BaseGraphQLResource {
         };
     }
 
+    public DataFetcher<List<Location>> addLocations() {
+        return dfe -> {
+            Integer parentId = dfe.getArgument("parentId");
+            List<LocationLayout> layouts = arg(dfe, "layout", new TypeReference<List<LocationLayout>>() {});
+            return locationService.createLocations(auth(dfe), parentId, layouts);
+        };
+    }
+
     public DataFetcher<Location> editLocation() {
         return dfe -> {
             LocationIdentifier li = getLocationIdentifier(dfe);
@@ -38,4 +48,34 @@ public class LocationMutations extends BaseGraphQLResource {
             return locationService.editLocation(auth(dfe), li, fields);
         };
     }
+
+    public DataFetcher<Location> rearrange() {
+        return dfe -> {
+            LocationIdentifier parentLi = getLocationIdentifier(dfe, "parent");
+            List<LocationMove> moves = arg(dfe, "moves", new TypeReference<List<LocationMove>>() {});
+            return locationService.rearrange(auth(dfe), parentLi, moves);
+        };
+    }
+
+    public DataFetcher<DeleteLocationResult> deleteLocation() {
+        return dfe -> {
+            LocationIdentifier li = getLocationIdentifier(dfe);
+            Boolean unstore = dfe.getArgument("unstore");
+            return locationService.deleteLocation(auth(dfe), li, unstore!=null && unstore);
+        };
+    }
+
+    public DataFetcher<List<Location>> editLocations() {
+        return dfe -> {
+            List<Map<String, ?>> editArgs = dfe.getArgument("edits");
+            List<LocationEdit> edits = new ArrayList<>(editArgs.size());
+            for (Map<String, ?> editArg : editArgs) {
+                LocationIdentifier li = objectMapper.convertValue(editArg.get("location"), LocationIdentifier.class);
+                //noinspection unchecked
+                Map<String, ?> fields = (Map<String, ?>) editArg.get("change");
+                edits.add(new LocationEdit(li, fields));
+            }
+            return locationService.editLocations(auth(dfe), edits);
+        };
+    }
 }
@@ -8,7 +8,9 @@ import org.springframework.stereotype.Component;
 import uk.ac.sanger.storelight.model.Address;
 import uk.ac.sanger.storelight.model.Item;
 import uk.ac.sanger.storelight.requests.*;
+import uk.ac.sanger.storelight.service.BulkStoreService;
 import uk.ac.sanger.storelight.service.StoreService;
+import uk.ac.sanger.storelight.service.TransferService;
 
 import java.util.List;
 
@@ -18,11 +20,16 @@ import java.util.List;
 @Component
 public class StoreMutations extends BaseGraphQLResource {
     private final StoreService storeService;
+    private final BulkStoreService bulkStoreService;
+    private final TransferService transferService;
 
     @Autowired
-    public StoreMutations(ObjectMapper objectMapper, StoreService storeService) {
+    public StoreMutations(ObjectMapper objectMapper, StoreService storeService, BulkStoreService bulkStoreService,
+                          TransferService transferService) {
         super(objectMapper);
         this.storeService = storeService;
+        this.bulkStoreService = bulkStoreService;
+        this.transferService = transferService;
     }
 
     public DataFetcher<Item> storeBarcode() {
@@ -49,4 +56,24 @@ public class StoreMutations extends BaseGraphQLResource {
             return new StoreResult(storeService.store(auth(dfe), storeInputs, li));
         };
     }
+
+    public DataFetcher<BulkStoreResult> bulkStore() {
+        return dfe -> {
+            List<StoreInput> storeInputs = arg(dfe, "store", new TypeReference<List<StoreInput>>() {});
+            LocationIdentifier li = (dfe.getArgument("location")==null ? null : getLocationIdentifier(dfe));
+            Integer chunkSize = dfe.getArgument("chunkSize");
+            return bulkStoreService.store(auth(dfe), storeInputs, li, chunkSize);
+        };
+    }
+
+    public DataFetcher<TransferResult> transfer() {
+        return dfe -> {
+            List<LocationIdentifier> sources = arg(dfe, "sources", new TypeReference<List<LocationIdentifier>>() {});
+            LocationIdentifier destination = getLocationIdentifier(dfe, "destination");
+            TransferMapping mapping = arg(dfe, "mapping", TransferMapping.class);
+            Integer rowOffset = dfe.getArgument("rowOffset");
+            Integer columnOffset = dfe.getArgument("columnOffset");
+            return transferService.transfer(auth(dfe), sources, destination, mapping, rowOffset, columnOffset);
+        };
+    }
 }
@@ -5,6 +5,7 @@ import graphql.schema.DataFetcher;
 import org.springframework.stereotype.Component;
 import uk.ac.sanger.storelight.model.Item;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
+import uk.ac.sanger.storelight.requests.RecursiveUnstoreResult;
 import uk.ac.sanger.storelight.requests.UnstoreResult;
 import uk.ac.sanger.storelight.service.UnstoreService;
 
@@ -42,4 +43,12 @@ public class UnstoreMutations extends BaseGraphQLResource {
             return new UnstoreResult(unstoreService.empty(auth(dfe), li));
         };
     }
+
+    public DataFetcher<RecursiveUnstoreResult> emptyRecursive() {
+        return dfe -> {
+            LocationIdentifier li = getLocationIdentifier(dfe);
+            Boolean includeItems = dfe.getArgument("includeItems");
+            return unstoreService.emptyRecursive(auth(dfe), li, includeItems!=null && includeItems);
+        };
+    }
 }
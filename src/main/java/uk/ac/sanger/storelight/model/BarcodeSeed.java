@@ -9,6 +9,8 @@ import javax.persistence.*;
 public class BarcodeSeed {
     public static final String STORE_PREFIX = "STO-";
     private static final int MIN_NUM_LENGTH = 3;
+    /** The most hex digits a seed can have */
+    private static final int MAX_NUM_LENGTH = 8;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,7 +25,19 @@ public class BarcodeSeed {
     }
 
     public final String toBarcode(String prefix) {
-        String hex = Integer.toHexString(this.id).toUpperCase();
+        return toBarcode(prefix, this.id);
+    }
+
+    // region static methods
+    /**
+     * Makes a barcode from a seed: the prefix, followed by the seed in hex (at least three digits),
+     * followed by a hex checksum character.
+     * @param prefix the prefix for the barcode
+     * @param seed the seed value
+     * @return a barcode for the given seed
+     */
+    public static String toBarcode(String prefix, int seed) {
+        String hex = Integer.toHexString(seed).toUpperCase();
         char checksum = calculateChecksum(hex);
         StringBuilder sb = new StringBuilder(prefix.length()+Math.max(MIN_NUM_LENGTH, hex.length())+1);
         sb.append(prefix);
@@ -35,7 +49,66 @@ public class BarcodeSeed {
         return sb.toString();
     }
 
-    // region static methods
+    /**
+     * Decodes a barcode made by {@link #toBarcode(String, int)}.
+     * The prefix is matched case-insensitively, and so are the hex digits.
+     * @param prefix the expected prefix
+     * @param barcode the barcode to decode
+     * @return the seed encoded in the barcode; or null if the barcode is not a well-formed barcode
+     * with the given prefix and a correct checksum
+     */
+    public static Integer decode(String prefix, String barcode) {
+        if (barcode==null || !barcode.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return null;
+        }
+        final int start = prefix.length();
+        final int end = barcode.length() - 1; // the index of the checksum
+        final int numDigits = end - start;
+        if (numDigits < MIN_NUM_LENGTH || numDigits > MAX_NUM_LENGTH
+                || numDigits > MIN_NUM_LENGTH && barcode.charAt(start)=='0') {
+            return null;
+        }
+        long value = 0;
+        int sum = 0;
+        for (int i = start; i < end; ++i) {
+            int v = hexValue(barcode.charAt(i));
+            if (v < 0) {
+                return null;
+            }
+            value = 16 * value + v;
+            sum += (((end - 1 - i) & 1)!=0 ? 3 * v : v);
+        }
+        if (value > Integer.MAX_VALUE || hexValue(barcode.charAt(end))!=((-sum)&0xf)) {
+            return null;
+        }
+        return (int) value;
+    }
+
+    /**
+     * Decodes a location barcode.
+     * @param barcode the barcode to decode
+     * @return the seed encoded in the barcode, or null if it is not a valid location barcode
+     * @see #decode(String, String)
+     */
+    public static Integer decodeStoreBarcode(String barcode) {
+        return decode(STORE_PREFIX, barcode);
+    }
+
+    /**
+     * Does the given string start with the {@link #STORE_PREFIX store prefix} (case insensitive)?
+     */
+    public static boolean hasStorePrefix(String barcode) {
+        return (barcode!=null && barcode.regionMatches(true, 0, STORE_PREFIX, 0, STORE_PREFIX.length()));
+    }
+
+    /** The value of a hex digit (either case), or -1 if it is not a hex digit */
+    private static int hexValue(char ch) {
+        if (ch>='0' && ch<='9') return ch-'0';
+        if (ch>='A' && ch<='F') return ch-'A'+10;
+        if (ch>='a' && ch<='f') return ch-'a'+10;
+        return -1;
+    }
+
     private static int hexCharToInt(char ch) {
         if (ch>='0' && ch<='9') return ch-'0';
         if (ch>='A' && ch<='F') return ch-'A'+10;
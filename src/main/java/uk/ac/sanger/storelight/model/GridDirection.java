@@ -20,4 +20,86 @@ public enum GridDirection {
      * Up the leftmost column, then right to the next column, etc.
      */
     UpRight,
+    ;
+
+    /**
+     * The index of the given row and column in a grid of the given size, traversed in this direction.
+     * @param numRows the number of rows in the grid
+     * @param numColumns the number of columns in the grid
+     * @param row the row (starting from 1)
+     * @param column the column (starting from 1)
+     * @return the index of the given position, starting from 1
+     */
+    public int indexOf(int numRows, int numColumns, int row, int column) {
+        switch (this) {
+            case RightDown: return (row-1) * numColumns + column;
+            case DownRight: return (column-1) * numRows + row;
+            case RightUp: return (numRows-row) * numColumns + column;
+            case UpRight: return (column-1) * numRows + numRows - row + 1;
+        }
+        throw new IllegalStateException("Unhandled direction: "+this);
+    }
+
+    /**
+     * The row at the given index in a grid of the given size, traversed in this direction.
+     * This is the inverse of {@link #indexOf}, and does not check bounds.
+     * @param numRows the number of rows in the grid
+     * @param numColumns the number of columns in the grid
+     * @param index the index (starting from 1)
+     * @return the row at the given index (starting from 1)
+     */
+    public int rowAt(int numRows, int numColumns, int index) {
+        final int n = index - 1;
+        switch (this) {
+            case RightDown: return n / numColumns + 1;
+            case DownRight: return n % numRows + 1;
+            case RightUp: return numRows - n / numColumns;
+            case UpRight: return numRows - n % numRows;
+        }
+        throw new IllegalStateException("Unhandled direction: "+this);
+    }
+
+    /**
+     * The column at the given index in a grid of the given size, traversed in this direction.
+     * This is the inverse of {@link #indexOf}, and does not check bounds.
+     * @param numRows the number of rows in the grid
+     * @param numColumns the number of columns in the grid
+     * @param index the index (starting from 1)
+     * @return the column at the given index (starting from 1)
+     */
+    public int columnAt(int numRows, int numColumns, int index) {
+        final int n = index - 1;
+        switch (this) {
+            case RightDown: case RightUp: return n % numColumns + 1;
+            case DownRight: case UpRight: return n / numRows + 1;
+        }
+        throw new IllegalStateException("Unhandled direction: "+this);
+    }
+
+    /**
+     * The index of the given address in a grid of the given size, traversed in this direction.
+     * @param size the size of the grid
+     * @param address the address in the grid
+     * @return the index of the address (starting from 1), or null if the address is out of bounds
+     */
+    public Integer indexOf(Size size, Address address) {
+        if (!size.contains(address)) {
+            return null;
+        }
+        return indexOf(size.getNumRows(), size.getNumColumns(), address.getRow(), address.getColumn());
+    }
+
+    /**
+     * The address at the given index in a grid of the given size, traversed in this direction.
+     * @param size the size of the grid
+     * @param index the index (starting from 1)
+     * @return the address at the given index, or null if the index is out of bounds
+     */
+    public Address addressAt(Size size, int index) {
+        final int numRows = size.getNumRows(), numColumns = size.getNumColumns();
+        if (index < 1 || index > numRows * numColumns) {
+            return null;
+        }
+        return new Address(rowAt(numRows, numColumns, index), columnAt(numRows, numColumns, index));
+    }
 }
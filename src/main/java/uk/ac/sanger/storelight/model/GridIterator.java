@@ -0,0 +1,75 @@
+package uk.ac.sanger.storelight.model;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An iterator through the addresses of a grid in the order given by a {@link GridDirection}.
+ * Optionally skips any addresses whose index is set in a bitset of occupied positions.
+ * The only allocation per step is the returned address.
+ * @author dr6
+ */
+public class GridIterator implements Iterator<Address> {
+    private final int numRows, numColumns;
+    private final GridDirection direction;
+    private final BitSet occupied;
+    private final int end;
+    private int nextIndex;
+
+    /**
+     * Creates an iterator through the grid from the given index (inclusive) to the given index (exclusive).
+     * @param size the size of the grid
+     * @param direction the traversal order
+     * @param fromIndex the first index to consider (starting from 1)
+     * @param toIndex the index after the last index to consider
+     * @param occupied the indexes to skip (bit {@code n} represents index {@code n}), or null
+     */
+    public GridIterator(Size size, GridDirection direction, int fromIndex, int toIndex, BitSet occupied) {
+        requireNonNull(size, "Size is null.");
+        requireNonNull(direction, "Direction is null.");
+        this.numRows = size.getNumRows();
+        this.numColumns = size.getNumColumns();
+        this.direction = direction;
+        this.occupied = occupied;
+        this.end = Math.min(toIndex, numRows * numColumns + 1);
+        this.nextIndex = Math.max(fromIndex, 1);
+        skipOccupied();
+    }
+
+    /**
+     * Creates an iterator through every address in the grid.
+     * @param size the size of the grid
+     * @param direction the traversal order
+     */
+    public GridIterator(Size size, GridDirection direction) {
+        this(size, direction, 1, Integer.MAX_VALUE, null);
+    }
+
+    private void skipOccupied() {
+        if (occupied!=null && nextIndex < end) {
+            nextIndex = occupied.nextClearBit(nextIndex);
+        }
+    }
+
+    /** The index of the address that will next be returned by {@link #next}. */
+    public int nextIndex() {
+        return this.nextIndex;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return (nextIndex < end);
+    }
+
+    @Override
+    public Address next() {
+        if (nextIndex >= end) {
+            throw new NoSuchElementException();
+        }
+        final int index = nextIndex;
+        ++nextIndex;
+        skipOccupied();
+        return new Address(direction.rowAt(numRows, numColumns, index), direction.columnAt(numRows, numColumns, index));
+    }
+}
@@ -6,6 +6,7 @@ import com.google.common.base.MoreObjects;
 import javax.persistence.*;
 import java.util.Objects;
 
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
 import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 
 /**
@@ -13,6 +14,7 @@ import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
  * @author dr6
  */
 @Entity
+@Table(indexes = @Index(columnList = "location_id, row_index, col_index"))
 public class Item {
     public static final int MIN_BARCODE = 2, MAX_BARCODE = 64;
 
@@ -21,6 +23,9 @@ public class Item {
     private Integer id;
 
     private String barcode;
+    /** The upper-case form of the barcode, uniquely indexed, used for all lookups by barcode */
+    @Column(unique = true)
+    private String barcodeKey;
 
     @ManyToOne
     private Location location;
@@ -39,6 +44,7 @@ public class Item {
     public Item(Integer id, String barcode, Location location, Address address) {
         this.id = id;
         this.barcode = barcode;
+        this.barcodeKey = barcodeKey(barcode);
         this.location = location;
         this.address = address;
     }
@@ -57,6 +63,12 @@ public class Item {
 
     public void setBarcode(String barcode) {
         this.barcode = barcode;
+        this.barcodeKey = barcodeKey(barcode);
+    }
+
+    @JsonIgnore
+    public String getBarcodeKey() {
+        return this.barcodeKey;
     }
 
     public Location getLocation() {
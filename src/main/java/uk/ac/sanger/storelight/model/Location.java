@@ -7,6 +7,7 @@ import javax.persistence.*;
 import java.util.*;
 
 import static uk.ac.sanger.storelight.utils.BasicUtils.newArrayList;
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
 import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 
 /**
@@ -14,14 +15,37 @@ import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
  * @author dr6
  */
 @Entity
+@Table(indexes = {@Index(columnList = "pathKey"), @Index(columnList = "parent_id, row_index, col_index")})
 public class Location {
     public static final int MAX_DESCRIPTION = 256, MAX_NAME = 64;
+    /** The maximum length of a path key; locations with longer paths have no path key */
+    public static final int MAX_PATH_KEY = 768;
+    /** The separator between the levels of a path key */
+    public static final String PATH_SEPARATOR = "/";
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
 
     private String barcode;
+    /** The upper-case form of the barcode, uniquely indexed, used for all lookups by barcode */
+    @Column(unique = true)
+    private String barcodeKey;
+    /** The seed encoded in the barcode, if it is a valid location barcode; used to look up location barcodes */
+    @Column(unique = true)
+    private Integer seed;
+    /**
+     * The normalised path to this location, used to look up locations by path.
+     * This has to be {@link #updatePathKey updated} when this location or anything above it is renamed or moved.
+     */
+    @Column(length = MAX_PATH_KEY)
+    private String pathKey;
+    /**
+     * The qualified name of this location, stored so that it does not have to be built from the parents.
+     * This has to be {@link #updateQualifiedName updated} when this location or anything above it is renamed or moved.
+     */
+    @Column(columnDefinition = "text")
+    private String qualifiedName;
     private String name;
     private String description;
     @ManyToOne(fetch = FetchType.LAZY)
@@ -51,6 +75,8 @@ public class Location {
     public Location(Integer id, String barcode, String name, String description, Location parent, Address address, Size size, GridDirection direction) {
         this.id = id;
         this.barcode = barcode;
+        this.barcodeKey = barcodeKey(barcode);
+        this.seed = BarcodeSeed.decodeStoreBarcode(barcode);
         this.name = name;
         this.description = description;
         this.parent = parent;
@@ -75,6 +101,70 @@ public class Location {
 
     public void setBarcode(String barcode) {
         this.barcode = barcode;
+        this.barcodeKey = barcodeKey(barcode);
+        this.seed = BarcodeSeed.decodeStoreBarcode(barcode);
+    }
+
+    @JsonIgnore
+    public String getBarcodeKey() {
+        return this.barcodeKey;
+    }
+
+    @JsonIgnore
+    public Integer getSeed() {
+        return this.seed;
+    }
+
+    @JsonIgnore
+    public String getPathKey() {
+        return this.pathKey;
+    }
+
+    /**
+     * Sets the path key of this location from its current name, address and barcode, and the path key of its parent.
+     * If the path would be too long (or the parent has no path key), the path key is null.
+     * @return true if the path key has changed; false if it is unchanged
+     */
+    public boolean updatePathKey() {
+        String key;
+        String segmentName = (name==null || name.isEmpty() ? null : name);
+        if (parent==null) {
+            key = pathKey(segmentName!=null ? segmentName : barcode);
+        } else if (parent.getPathKey()==null) {
+            key = null;
+        } else {
+            String segment = (segmentName!=null ? segmentName : address!=null ? address.toString() : barcode);
+            key = pathKey(parent.getPathKey() + PATH_SEPARATOR + segment);
+        }
+        if (Objects.equals(key, this.pathKey)) {
+            return false;
+        }
+        this.pathKey = key;
+        return true;
+    }
+
+    /**
+     * The normalised form of a path used for looking up locations.
+     * Each level of the path is the name of the location; or, if it has no name,
+     * its address in its parent; or, failing that, its barcode.
+     * The levels are separated by slashes, and any spaces around each level are ignored, as is case.
+     * So {@code "Freezer 3 / Shelf 2 / B1"} has the same key as {@code "freezer 3/shelf 2/b1"}.
+     * @param path a path (may be null)
+     * @return the normalised path; or null if the path is null, has an empty level, or is too long
+     */
+    public static String pathKey(String path) {
+        if (path==null) {
+            return null;
+        }
+        String[] levels = path.split(PATH_SEPARATOR, -1);
+        for (int i = 0; i < levels.length; ++i) {
+            levels[i] = levels[i].trim();
+            if (levels[i].isEmpty()) {
+                return null;
+            }
+        }
+        String key = String.join(PATH_SEPARATOR, levels).toUpperCase(Locale.ROOT);
+        return (key.length() > MAX_PATH_KEY ? null : key);
     }
 
     public String getName() {
@@ -141,34 +231,39 @@ public class Location {
         this.direction = direction;
     }
 
+    /**
+     * The names of the locations from the root down to this location, separated by slashes, starting with
+     * the barcode of the root. Each level after the root is the name of the location; or, if it has no name,
+     * its address in its parent; or, failing that, its barcode.
+     * The stored qualified name is used if there is one; otherwise it is built from the parents.
+     * @return the qualified name of this location
+     */
     @JsonIgnore
     public String getQualifiedNameWithFirstBarcode() {
-        List<Location> hierarchy = getHierarchy();
-        StringBuilder sb = new StringBuilder();
-        boolean first = true;
-        for (Location loc : hierarchy) {
-            String name = loc.getName();
-            if (name!=null && name.isEmpty()) {
-                name = null;
-            }
-            if (first) {
-                sb.append(loc.getBarcode());
-                if (name!=null) {
-                    sb.append(' ').append(name);
-                }
-                first = false;
-            } else {
-                sb.append(" / ");
-                if (name!=null) {
-                    sb.append(name);
-                } else if (loc.getAddress()!=null) {
-                    sb.append(loc.getAddress());
-                } else {
-                    sb.append(loc.getBarcode());
-                }
-            }
+        return (qualifiedName!=null ? qualifiedName : buildQualifiedName());
+    }
+
+    /**
+     * Sets the stored qualified name of this location from its current name, address and barcode,
+     * and the qualified name of its parent.
+     * @return true if the qualified name has changed; false if it is unchanged
+     */
+    public boolean updateQualifiedName() {
+        String qn = buildQualifiedName();
+        if (Objects.equals(qn, this.qualifiedName)) {
+            return false;
+        }
+        this.qualifiedName = qn;
+        return true;
+    }
+
+    private String buildQualifiedName() {
+        String segmentName = (name==null || name.isEmpty() ? null : name);
+        if (parent==null) {
+            return (segmentName==null ? barcode : barcode + " " + segmentName);
         }
-        return sb.toString();
+        String segment = (segmentName!=null ? segmentName : address!=null ? address.toString() : barcode);
+        return parent.getQualifiedNameWithFirstBarcode() + " / " + segment;
     }
 
     /**
@@ -225,17 +320,83 @@ public class Location {
      * @return the index of the given address, starting from 1; or null
      */
     public Integer addressIndex(Address address) {
-        if (address!=null && size!=null && direction!=null && size.contains(address)) {
-            switch (direction) {
-                case RightDown: return (address.getRow()-1) * size.getNumColumns() + address.getColumn();
-                case DownRight: return (address.getColumn()-1) * size.getNumRows() + address.getRow();
-                case RightUp: return (size.getNumRows()-address.getRow()) * size.getNumColumns() + address.getColumn();
-                case UpRight: return (address.getColumn()-1) * size.getNumRows() + size.getNumRows() - address.getRow() + 1;
-            }
+        if (address!=null && size!=null && direction!=null) {
+            return direction.indexOf(size, address);
+        }
+        return null;
+    }
+
+    /**
+     * The address at the given index in this location, if such a thing can be deduced.
+     * This is the inverse of {@link #addressIndex}.
+     * @param index the index of the address, starting from 1
+     * @return the address at the given index; or null
+     */
+    public Address addressAt(int index) {
+        if (size!=null && direction!=null) {
+            return direction.addressAt(size, index);
         }
         return null;
     }
 
+    /**
+     * Lists addresses in this location in the order of its direction.
+     * @param fromIndex the index of the first address to list, starting from 1
+     * @param count the maximum number of addresses to list
+     * @return a list of up to {@code count} addresses; empty if the location has no size or direction
+     */
+    public List<Address> addresses(int fromIndex, int count) {
+        if (size==null || direction==null || count <= 0) {
+            return List.of();
+        }
+        int toIndex = (int) Math.min((long) fromIndex + count, Integer.MAX_VALUE);
+        GridIterator iter = new GridIterator(size, direction, fromIndex, toIndex, null);
+        List<Address> addresses = new ArrayList<>(Math.min(count, size.getNumRows() * size.getNumColumns()));
+        iter.forEachRemaining(addresses::add);
+        return addresses;
+    }
+
+    /**
+     * A bitmap of which of the given addresses are filled in this location, in the order of this location's direction.
+     * The address at index <i>n</i> (starting from 1) is bit <i>n</i>-1, counting from the most significant bit
+     * of the first byte; so for a 96-well plate the bitmap is 12 bytes long.
+     * Addresses outside this location's size are ignored.
+     * @param occupiedAddresses the addresses that are filled
+     * @return the occupancy bitmap; or null if this location has no size or direction
+     */
+    public byte[] occupancy(Iterable<Address> occupiedAddresses) {
+        if (size==null || direction==null) {
+            return null;
+        }
+        byte[] bitmap = new byte[(size.getNumRows() * size.getNumColumns() + 7) / 8];
+        for (Address address : occupiedAddresses) {
+            if (address!=null && size.contains(address)) {
+                int n = direction.indexOf(size, address) - 1;
+                bitmap[n >> 3] |= (byte) (0x80 >>> (n & 7));
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * An iterator through the addresses in this location that have no item stored in them,
+     * in the order of this location's direction.
+     * @return an iterator of free addresses; empty if the location has no size or direction
+     */
+    public Iterator<Address> freeAddresses() {
+        if (size==null || direction==null) {
+            return Collections.emptyIterator();
+        }
+        BitSet occupied = new BitSet(size.getNumRows() * size.getNumColumns() + 1);
+        for (Item item : getStored()) {
+            Integer index = addressIndex(item.getAddress());
+            if (index!=null) {
+                occupied.set(index);
+            }
+        }
+        return new GridIterator(size, direction, 1, Integer.MAX_VALUE, occupied);
+    }
+
     /** Number of items stored directly in this location */
     public int getNumStored() {
         var stored = getStored();
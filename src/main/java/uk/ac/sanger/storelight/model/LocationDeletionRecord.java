@@ -0,0 +1,159 @@
+package uk.ac.sanger.storelight.model;
+
+import com.google.common.base.MoreObjects;
+import org.hibernate.annotations.*;
+
+import javax.persistence.*;
+import javax.persistence.Entity;
+import java.sql.Timestamp;
+import java.util.Objects;
+
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
+
+/**
+ * A record of a location being deleted.
+ * The location itself no longer exists, so its id, barcode and name are copied into the record.
+ * @author dr6
+ */
+@Entity
+@DynamicInsert
+public class LocationDeletionRecord {
+    @Id
+    @GeneratedValue(strategy=GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(columnDefinition="TIMESTAMP DEFAULT CURRENT_TIMESTAMP")
+    @Generated(GenerationTime.INSERT)
+    private Timestamp recorded;
+
+    private Integer locationId;
+    private String barcode;
+    private String name;
+    private Integer parentId;
+    private String username;
+    private String app;
+
+    public LocationDeletionRecord() {}
+
+    public LocationDeletionRecord(Integer locationId, String barcode, String name, Integer parentId,
+                                  String username, String app) {
+        this.locationId = locationId;
+        this.barcode = barcode;
+        this.name = name;
+        this.parentId = parentId;
+        this.username = username;
+        this.app = app;
+    }
+
+    public Integer getId() {
+        return this.id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    /** When the deletion was recorded. */
+    public Timestamp getRecorded() {
+        return this.recorded;
+    }
+
+    /** Sets when the deletion was recorded. */
+    public void setRecorded(Timestamp recorded) {
+        this.recorded = recorded;
+    }
+
+    /** The id of the deleted location. */
+    public Integer getLocationId() {
+        return this.locationId;
+    }
+
+    /** Sets the id of the deleted location. */
+    public void setLocationId(Integer locationId) {
+        this.locationId = locationId;
+    }
+
+    /** The barcode of the deleted location. */
+    public String getBarcode() {
+        return this.barcode;
+    }
+
+    /** Sets the barcode of the deleted location. */
+    public void setBarcode(String barcode) {
+        this.barcode = barcode;
+    }
+
+    /** The name of the deleted location (may be null). */
+    public String getName() {
+        return this.name;
+    }
+
+    /** Sets the name of the deleted location (may be null). */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /** The id of the location that the deleted location was inside (null if it had no parent). */
+    public Integer getParentId() {
+        return this.parentId;
+    }
+
+    /** Sets the id of the location that the deleted location was inside (null if it had no parent). */
+    public void setParentId(Integer parentId) {
+        this.parentId = parentId;
+    }
+
+    /** The username of the person deleting the location (may be null). */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /** Sets the username of the person deleting the location (may be null). */
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /** The app responsible for the request */
+    public String getApp() {
+        return this.app;
+    }
+
+    /** Sets the app responsible for the request */
+    public void setApp(String app) {
+        this.app = app;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LocationDeletionRecord that = (LocationDeletionRecord) o;
+        return (Objects.equals(this.id, that.id)
+                && Objects.equals(this.recorded, that.recorded)
+                && Objects.equals(this.locationId, that.locationId)
+                && Objects.equals(this.barcode, that.barcode)
+                && Objects.equals(this.name, that.name)
+                && Objects.equals(this.parentId, that.parentId)
+                && Objects.equals(this.username, that.username)
+                && Objects.equals(this.app, that.app));
+    }
+
+    @Override
+    public int hashCode() {
+        return (id!=null ? id.hashCode() : Objects.hash(recorded, locationId, barcode, name, parentId, username, app));
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("id", id)
+                .add("recorded", recorded)
+                .add("locationId", locationId)
+                .add("barcode", repr(barcode))
+                .add("name", repr(name))
+                .add("parentId", parentId)
+                .add("username", username)
+                .add("app", app)
+                .toString();
+    }
+}
@@ -0,0 +1,92 @@
+package uk.ac.sanger.storelight.model;
+
+import java.util.Objects;
+
+/**
+ * A rectangular region of a grid, between two corner addresses (inclusive).
+ * @author dr6
+ */
+public class Region {
+    private final Address topLeft, bottomRight;
+
+    /**
+     * Creates a region with the given corners, which may be given in any order.
+     * @param corner one corner of the region
+     * @param oppositeCorner the opposite corner of the region
+     */
+    public Region(Address corner, Address oppositeCorner) {
+        this.topLeft = new Address(Math.min(corner.getRow(), oppositeCorner.getRow()),
+                Math.min(corner.getColumn(), oppositeCorner.getColumn()));
+        this.bottomRight = new Address(Math.max(corner.getRow(), oppositeCorner.getRow()),
+                Math.max(corner.getColumn(), oppositeCorner.getColumn()));
+    }
+
+    /** The address in the region with the lowest row and column */
+    public Address getTopLeft() {
+        return this.topLeft;
+    }
+
+    /** The address in the region with the highest row and column */
+    public Address getBottomRight() {
+        return this.bottomRight;
+    }
+
+    /**
+     * Is the given address inside this region?
+     * @param address the address to check
+     * @return true if the address is inside this region; false otherwise
+     */
+    public boolean contains(Address address) {
+        return (address.getRow() >= topLeft.getRow() && address.getRow() <= bottomRight.getRow()
+                && address.getColumn() >= topLeft.getColumn() && address.getColumn() <= bottomRight.getColumn());
+    }
+
+    /**
+     * Parses a string as a region.
+     * <p>Supported formats:
+     * <ul>
+     *     <li><tt>"A1:D24"</tt>: rows 1 to 4, columns 1 to 24</li>
+     *     <li><tt>"A12:P12"</tt>: rows 1 to 16, column 12</li>
+     *     <li><tt>"B3"</tt>: just the address B3</li>
+     * </ul>
+     * Each address may be in any of the formats supported by {@link Address#valueOf}.
+     * @param string the string to parse
+     * @return the region parsed from the string
+     * @exception NullPointerException if the string is null
+     * @exception IllegalArgumentException if the string is not parsable as a region
+     */
+    public static Region valueOf(String string) {
+        Objects.requireNonNull(string, "Cannot convert null to a region.");
+        String[] parts = string.split(":", -1);
+        try {
+            if (parts.length==1) {
+                Address address = Address.valueOf(parts[0].trim());
+                return new Region(address, address);
+            }
+            if (parts.length==2) {
+                return new Region(Address.valueOf(parts[0].trim()), Address.valueOf(parts[1].trim()));
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid region string: "+string);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Region that = (Region) o;
+        return (this.topLeft.equals(that.topLeft) && this.bottomRight.equals(that.bottomRight));
+    }
+
+    @Override
+    public int hashCode() {
+        return topLeft.hashCode() + 31 * bottomRight.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return topLeft + ":" + bottomRight;
+    }
+}
@@ -5,10 +5,10 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.persistence.Column;
 import javax.persistence.Embeddable;
-import java.util.Comparator;
-import java.util.Objects;
+import java.util.*;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A grid size (num rows and num columns, both positive).
@@ -76,6 +76,16 @@ public class Size {
         return Address.stream(this.numRows, this.numColumns);
     }
 
+    /**
+     * Streams the addresses in this size in the order given by the specified direction.
+     * @param direction the traversal order
+     * @return a stream of addresses
+     */
+    public Stream<Address> addresses(GridDirection direction) {
+        return StreamSupport.stream(Spliterators.spliterator(new GridIterator(this, direction), numRows*numColumns,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
     public boolean contains(Address address) {
         return contains(address.getRow(), address.getColumn());
     }
@@ -0,0 +1,131 @@
+package uk.ac.sanger.storelight.model;
+
+import com.google.common.base.MoreObjects;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One stripe of the count of items stored in a location and all the locations inside it.
+ * The count for a location is the sum of all its stripes. Changes are spread over the stripes
+ * (by the location the items are stored in), so that concurrent changes in different parts
+ * of a subtree do not all have to update the same row at the top of it.
+ * @author dr6
+ */
+@Entity
+@IdClass(SubtreeCount.Key.class)
+public class SubtreeCount {
+    @Id
+    private Integer locationId;
+    @Id
+    private Integer stripe;
+    private int numItems;
+
+    public SubtreeCount() {}
+
+    public SubtreeCount(Integer locationId, Integer stripe, int numItems) {
+        this.locationId = locationId;
+        this.stripe = stripe;
+        this.numItems = numItems;
+    }
+
+    public Integer getLocationId() {
+        return this.locationId;
+    }
+
+    public void setLocationId(Integer locationId) {
+        this.locationId = locationId;
+    }
+
+    public Integer getStripe() {
+        return this.stripe;
+    }
+
+    public void setStripe(Integer stripe) {
+        this.stripe = stripe;
+    }
+
+    /** This stripe's part of the number of items in the subtree */
+    public int getNumItems() {
+        return this.numItems;
+    }
+
+    public void setNumItems(int numItems) {
+        this.numItems = numItems;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SubtreeCount that = (SubtreeCount) o;
+        return (this.numItems == that.numItems
+                && Objects.equals(this.locationId, that.locationId)
+                && Objects.equals(this.stripe, that.stripe));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(locationId, stripe);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("locationId", locationId)
+                .add("stripe", stripe)
+                .add("numItems", numItems)
+                .toString();
+    }
+
+    /**
+     * The primary key of a subtree count: the location id and stripe.
+     * Keys are ordered by location id and then stripe, which is the order rows are updated in,
+     * so that concurrent transactions take their row locks in the same order.
+     */
+    public static class Key implements Serializable, Comparable<Key> {
+        private Integer locationId;
+        private Integer stripe;
+
+        public Key() {}
+
+        public Key(Integer locationId, Integer stripe) {
+            this.locationId = locationId;
+            this.stripe = stripe;
+        }
+
+        public Integer getLocationId() {
+            return this.locationId;
+        }
+
+        public Integer getStripe() {
+            return this.stripe;
+        }
+
+        @Override
+        public int compareTo(Key that) {
+            int c = this.locationId.compareTo(that.locationId);
+            return (c!=0 ? c : this.stripe.compareTo(that.stripe));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return (Objects.equals(this.locationId, that.locationId)
+                    && Objects.equals(this.stripe, that.stripe));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(locationId, stripe);
+        }
+
+        @Override
+        public String toString() {
+            return "("+locationId+", "+stripe+")";
+        }
+    }
+}
@@ -3,12 +3,10 @@ package uk.ac.sanger.storelight.repo;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.storelight.model.BarcodeSeed;
 
+/**
+ * Repo for barcode seeds. New barcodes should be created through
+ * {@link uk.ac.sanger.storelight.service.BarcodeAllocator BarcodeAllocator}, which uses each
+ * seed row to reserve a block of barcodes.
+ */
 public interface BarcodeSeedRepo extends CrudRepository<BarcodeSeed, Integer> {
-    default String createBarcode(String prefix) {
-        return save(new BarcodeSeed()).toBarcode(prefix);
-    }
-
-    default String createStoreBarcode() {
-        return createBarcode(BarcodeSeed.STORE_PREFIX);
-    }
 }
@@ -1,13 +1,207 @@
 package uk.ac.sanger.storelight.repo;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import uk.ac.sanger.storelight.model.Address;
 import uk.ac.sanger.storelight.model.Item;
+import uk.ac.sanger.storelight.model.Location;
+import uk.ac.sanger.storelight.model.Region;
 
 import java.util.*;
 
+import static uk.ac.sanger.storelight.repo.RepoUtils.*;
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
+
 public interface ItemRepo extends CrudRepository<Item, Integer> {
-    Optional<Item> findByBarcode(String barcode);
-    List<Item> findAllByBarcodeIn(Iterable<String> barcodes);
-    void deleteAllByBarcodeIn(Iterable<String> barcodes);
+    Optional<Item> findByBarcodeKey(String barcodeKey);
+    @Query("select i from Item i join fetch i.location where i.barcodeKey in (?1)")
+    List<Item> findAllByBarcodeKeyIn(Collection<String> barcodeKeys);
+    void deleteAllByBarcodeKeyIn(Collection<String> barcodeKeys);
+
+    /**
+     * Deletes the items with the given barcode keys with a single statement, without loading them.
+     * Unlike {@link #deleteAllByBarcodeKeyIn}, this bypasses the persistence context, so any of the items
+     * already loaded are not removed from it.
+     * @param barcodeKeys the barcode keys of the items to delete
+     * @return the number of items deleted
+     */
+    @Modifying
+    @Query("delete from Item i where i.barcodeKey in (?1)")
+    int bulkDeleteByBarcodeKeyIn(Collection<String> barcodeKeys);
+
+    /**
+     * Finds items whose barcode keys match a like pattern (with {@code !} as the escape character)
+     * and come after the given key, in order of barcode key.
+     * For a pattern that is a prefix followed by {@code %}, this is a range scan of the barcode key index.
+     * @param pattern the like pattern to match
+     * @param afterKey the barcode key that all the results must come after (use an empty string for no limit)
+     * @param pageable the limit on the number of results
+     * @return the items found, with their locations
+     */
+    @Query("select i from Item i join fetch i.location where i.barcodeKey like ?1 escape '!' " +
+            "and i.barcodeKey > ?2 order by i.barcodeKey")
+    List<Item> findPageByBarcodeKeyLike(String pattern, String afterKey, Pageable pageable);
+
+    /**
+     * Finds items in the given locations that come after the given location id and item id,
+     * in order of location id and then item id.
+     * @param locationIds the ids of the locations
+     * @param afterLocationId the location id to start after, or at, if the item id is greater than {@code afterId}
+     * @param afterId the id of the item to start after, in the location {@code afterLocationId}
+     * @param pageable the limit on the number of results
+     * @return the items found, with their locations
+     */
+    @Query("select i from Item i join fetch i.location where i.location.id in (?1)" +
+            " and (i.location.id > ?2 or (i.location.id = ?2 and i.id > ?3))" +
+            " order by i.location.id, i.id")
+    List<Item> findPageInLocations(Collection<Integer> locationIds, int afterLocationId, int afterId, Pageable pageable);
+
+    /**
+     * Finds items with an address in the given location, after the given position,
+     * in order of row, column and id.
+     * @param locationId the id of the location
+     * @param row the row of the position to start after (zero to start at the beginning)
+     * @param column the column of the position to start after
+     * @param afterId the id of the item to start after, if it is at the given row and column
+     * @param pageable the limit on the number of results
+     * @return the items found
+     */
+    @Query("select i from Item i where i.location.id = ?1 and i.address.row is not null" +
+            " and (i.address.row > ?2 or (i.address.row = ?2 and (i.address.column > ?3" +
+            " or (i.address.column = ?3 and i.id > ?4))))" +
+            " order by i.address.row, i.address.column, i.id")
+    List<Item> findAddressedPage(Integer locationId, int row, int column, int afterId, Pageable pageable);
+
+    /**
+     * Finds items without an address in the given location, after the given id, in order of id.
+     * @param locationId the id of the location
+     * @param afterId the id of the item to start after (zero to start at the beginning)
+     * @param pageable the limit on the number of results
+     * @return the items found
+     */
+    @Query("select i from Item i where i.location.id = ?1 and i.address.row is null and i.id > ?2 order by i.id")
+    List<Item> findUnaddressedPage(Integer locationId, int afterId, Pageable pageable);
+
+    long countByLocationId(Integer locationId);
+
+    /**
+     * Finds the addresses of the items in the given location, without loading the items.
+     * @param locationId the id of the location
+     * @return the addresses of the items that have addresses in the location
+     */
+    @Query("select i.address from Item i where i.location.id = ?1 and i.address.row is not null")
+    List<Address> findAddressesByLocationId(Integer locationId);
+
+    @Query("select i from Item i where i.location.id = ?1 and i.address.row between ?2 and ?3" +
+            " and i.address.column between ?4 and ?5 order by i.address.row, i.address.column")
+    List<Item> findAllInRegion(Integer locationId, int minRow, int maxRow, int minColumn, int maxColumn);
+
+    /**
+     * Finds the items stored in the given region of a location, in order of address.
+     * This is a range scan of the index on location, row and column.
+     * @param locationId the id of the location
+     * @param region the region of the location
+     * @return the items found
+     */
+    default List<Item> findAllInRegion(Integer locationId, Region region) {
+        return findAllInRegion(locationId, region.getTopLeft().getRow(), region.getBottomRight().getRow(),
+                region.getTopLeft().getColumn(), region.getBottomRight().getColumn());
+    }
+
+    default Optional<Item> findByBarcode(String barcode) {
+        return findByBarcodeKey(barcodeKey(barcode));
+    }
+
+    /**
+     * Finds items by barcode (case insensitive), using the indexed barcode key.
+     * Very long lists of barcodes are looked up in chunks.
+     * @param barcodes the barcodes to look up
+     * @return the items found
+     */
+    default List<Item> findAllByBarcodeIn(Iterable<String> barcodes) {
+        return findInChunks(barcodeKeys(barcodes), this::findAllByBarcodeKeyIn);
+    }
+
+    /**
+     * Deletes items by barcode (case insensitive), using the indexed barcode key.
+     * Very long lists of barcodes are deleted in chunks.
+     * @param barcodes the barcodes of the items to delete
+     */
+    default void deleteAllByBarcodeIn(Iterable<String> barcodes) {
+        runInChunks(barcodeKeys(barcodes), this::deleteAllByBarcodeKeyIn);
+    }
+
+    /**
+     * Finds the location id, row, column and barcode of every item with an address in the given locations.
+     * @param locationIds the ids of the locations
+     * @return a list of arrays of {@code [locationId, row, column, barcode]}
+     */
+    @Query("select i.location.id, i.address.row, i.address.column, i.barcode from Item i " +
+            "where i.location.id in (?1) and i.address.row is not null")
+    List<Object[]> findAddressedItemsInLocations(Collection<Integer> locationIds);
+
+    /**
+     * Counts the items with the given barcode keys in each location.
+     * @param barcodeKeys the barcode keys of the items
+     * @return a list of arrays of {@code [locationId, count]}
+     */
+    @Query("select i.location.id, count(i) from Item i where i.barcodeKey in (?1) group by i.location.id")
+    List<Object[]> countByLocationOfBarcodeKeyIn(Collection<String> barcodeKeys);
+
+    /**
+     * Counts the items in each of the given locations.
+     * Locations without any items are not included.
+     * @param locationIds the ids of the locations
+     * @return a list of arrays of {@code [locationId, count]}
+     */
+    @Query("select i.location.id, count(i) from Item i where i.location.id in (?1) group by i.location.id")
+    List<Object[]> countByLocationIdInGrouped(Collection<Integer> locationIds);
+
+    /**
+     * Counts the items in every location that has any.
+     * @return a list of arrays of {@code [locationId, count]}
+     */
+    @Query("select i.location.id, count(i) from Item i group by i.location.id")
+    List<Object[]> countAllByLocation();
+
+    @Query("select i from Item i join fetch i.location where i.location.id in (?1)")
+    List<Item> findAllByLocationIdIn(Collection<Integer> locationIds);
+
+    long countByLocationIdIn(Collection<Integer> locationIds);
+
+    /**
+     * Finds the location id, row, column and barcode of every item in the given locations.
+     * The row and column are null for items without an address.
+     * @param locationIds the ids of the locations
+     * @return a list of arrays of {@code [locationId, row, column, barcode]}
+     */
+    @Query("select i.location.id, i.address.row, i.address.column, i.barcode from Item i where i.location.id in (?1)")
+    List<Object[]> findItemPositionsInLocations(Collection<Integer> locationIds);
+
+    /**
+     * Moves every item in one location into another with a single statement, transforming the address
+     * of each item (if it has one) to {@code (row*scale + rowShift, column*scale + columnShift)}.
+     * @param sourceId the id of the location to move the items out of
+     * @param destination the location to move the items into
+     * @param scale the multiplier for the row and column
+     * @param rowShift the amount to add to the (multiplied) row
+     * @param columnShift the amount to add to the (multiplied) column
+     * @return the number of items moved
+     */
+    @Modifying
+    @Query("update Item i set i.location = ?2, i.address.row = i.address.row * ?3 + ?4, " +
+            "i.address.column = i.address.column * ?3 + ?5 where i.location.id = ?1")
+    int transfer(Integer sourceId, Location destination, int scale, int rowShift, int columnShift);
 
+    /**
+     * Deletes all the items in the given locations with a single statement,
+     * without loading them.
+     * @param locationIds the ids of the locations
+     * @return the number of items deleted
+     */
+    @Modifying
+    @Query("delete from Item i where i.location.id in (?1)")
+    int deleteAllByLocationIdIn(Collection<Integer> locationIds);
 }
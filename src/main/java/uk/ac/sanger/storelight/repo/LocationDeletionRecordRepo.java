@@ -0,0 +1,23 @@
+package uk.ac.sanger.storelight.repo;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import uk.ac.sanger.storelight.model.LocationDeletionRecord;
+
+import java.util.Collection;
+
+public interface LocationDeletionRecordRepo extends CrudRepository<LocationDeletionRecord, Integer> {
+    /**
+     * Records the deletion of the given locations with a single statement, without loading the locations.
+     * This must be run before the locations are deleted.
+     * @param locationIds the ids of the locations
+     * @param username the user responsible
+     * @param app the app responsible
+     * @return the number of records inserted
+     */
+    @Modifying
+    @Query(value="insert into location_deletion_record (location_id, barcode, name, parent_id, username, app) " +
+            "select l.id, l.barcode, l.name, l.parent_id, ?2, ?3 from location l where l.id in (?1)", nativeQuery=true)
+    int recordDeletions(Collection<Integer> locationIds, String username, String app);
+}
@@ -1,20 +1,184 @@
 package uk.ac.sanger.storelight.repo;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import uk.ac.sanger.storelight.model.BarcodeSeed;
 import uk.ac.sanger.storelight.model.Location;
+import uk.ac.sanger.storelight.model.Region;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
 
 import javax.persistence.EntityNotFoundException;
-import java.util.Collection;
-import java.util.Optional;
+import java.util.*;
 
 import static java.util.Objects.requireNonNull;
+import static uk.ac.sanger.storelight.repo.RepoUtils.barcodeKeys;
+import static uk.ac.sanger.storelight.repo.RepoUtils.findInChunks;
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
 import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 
 public interface LocationRepo extends CrudRepository<Location, Integer> {
-    Optional<Location> findByBarcode(String barcode);
+    Optional<Location> findByBarcodeKey(String barcodeKey);
 
-    Iterable<Location> findAllByBarcodeIn(Collection<String> barcodes);
+    List<Location> findAllByBarcodeKeyIn(Collection<String> barcodeKeys);
+
+    Optional<Location> findBySeed(int seed);
+
+    List<Location> findAllBySeedIn(Collection<Integer> seeds);
+
+    List<Location> findAllByParentIdIn(Collection<Integer> parentIds);
+
+    List<Location> findAllByPathKey(String pathKey);
+
+    @Query("select l.id from Location l where l.parent.id in (?1)")
+    List<Integer> findIdsByParentIdIn(Collection<Integer> parentIds);
+
+    /**
+     * Gets the fields of every location used by the search index.
+     * @return arrays of location id, parent id, name and description
+     */
+    @Query("select l.id, p.id, l.name, l.description from Location l left join l.parent p")
+    List<Object[]> findAllSearchFields();
+
+    /**
+     * Gets the id and parent id of every location.
+     * @return arrays of location id and parent id
+     */
+    @Query("select l.id, p.id from Location l left join l.parent p")
+    List<Object[]> findAllParentIds();
+
+    /**
+     * Finds locations with an address in the given parent, after the given position,
+     * in order of row, column and id.
+     * @param parentId the id of the parent location
+     * @param row the row of the position to start after (zero to start at the beginning)
+     * @param column the column of the position to start after
+     * @param afterId the id of the location to start after, if it is at the given row and column
+     * @param pageable the limit on the number of results
+     * @return the locations found
+     */
+    @Query("select l from Location l where l.parent.id = ?1 and l.address.row is not null" +
+            " and (l.address.row > ?2 or (l.address.row = ?2 and (l.address.column > ?3" +
+            " or (l.address.column = ?3 and l.id > ?4))))" +
+            " order by l.address.row, l.address.column, l.id")
+    List<Location> findAddressedPage(Integer parentId, int row, int column, int afterId, Pageable pageable);
+
+    /**
+     * Finds locations without an address in the given parent, after the given id, in order of id.
+     * @param parentId the id of the parent location
+     * @param afterId the id of the location to start after (zero to start at the beginning)
+     * @param pageable the limit on the number of results
+     * @return the locations found
+     */
+    @Query("select l from Location l where l.parent.id = ?1 and l.address.row is null and l.id > ?2 order by l.id")
+    List<Location> findUnaddressedPage(Integer parentId, int afterId, Pageable pageable);
+
+    long countByParentId(Integer parentId);
+
+    @Query("select l from Location l where l.parent.id = ?1 and l.address.row between ?2 and ?3" +
+            " and l.address.column between ?4 and ?5 order by l.address.row, l.address.column")
+    List<Location> findAllInRegion(Integer parentId, int minRow, int maxRow, int minColumn, int maxColumn);
+
+    /**
+     * Finds the locations in the given region of a parent location, in order of address.
+     * This is a range scan of the index on parent, row and column.
+     * @param parentId the id of the parent location
+     * @param region the region of the parent
+     * @return the locations found
+     */
+    default List<Location> findAllInRegion(Integer parentId, Region region) {
+        return findAllInRegion(parentId, region.getTopLeft().getRow(), region.getBottomRight().getRow(),
+                region.getTopLeft().getColumn(), region.getBottomRight().getColumn());
+    }
+
+    @Modifying
+    @Query("delete from Location l where l.id in (?1)")
+    int bulkDeleteByIdIn(Collection<Integer> ids);
+
+    /**
+     * Finds the ids of a location and all the locations inside it, at any depth, grouped by depth.
+     * The tree is walked one level at a time, with one query per level (per chunk of ids),
+     * so the locations are never loaded as entities.
+     * @param locationId the id of the location at the top of the subtree
+     * @return the ids of the locations at each level of the subtree, starting with a list of just the given id
+     */
+    default List<List<Integer>> findSubtreeLevels(int locationId) {
+        List<List<Integer>> levels = new ArrayList<>();
+        List<Integer> level = List.of(locationId);
+        while (!level.isEmpty()) {
+            levels.add(level);
+            level = findInChunks(level, this::findIdsByParentIdIn);
+        }
+        return levels;
+    }
+
+    /**
+     * Finds the ids of a location and all the locations inside it, at any depth.
+     * @param locationId the id of the location at the top of the subtree
+     * @return the ids of the locations in the subtree, breadth-first, starting with the given id
+     * @see #findSubtreeLevels
+     */
+    default List<Integer> findSubtreeIds(int locationId) {
+        List<Integer> ids = new ArrayList<>();
+        findSubtreeLevels(locationId).forEach(ids::addAll);
+        return ids;
+    }
+
+    /**
+     * Finds a location by barcode (case insensitive).
+     * Location barcodes are decoded and looked up by their seed; if they are malformed
+     * or fail their checksum, the database is not queried.
+     * Other barcodes are looked up by the indexed barcode key.
+     * @param barcode the barcode to look up
+     * @return the location found, if any
+     */
+    default Optional<Location> findByBarcode(String barcode) {
+        if (BarcodeSeed.hasStorePrefix(barcode)) {
+            Integer seed = BarcodeSeed.decodeStoreBarcode(barcode);
+            return (seed==null ? Optional.empty() : findBySeed(seed));
+        }
+        return findByBarcodeKey(barcodeKey(barcode));
+    }
+
+    /**
+     * Finds locations by barcode (case insensitive), as in {@link #findByBarcode}.
+     * Very long lists of barcodes are looked up in chunks.
+     * @param barcodes the barcodes to look up
+     * @return the locations found
+     */
+    default Iterable<Location> findAllByBarcodeIn(Collection<String> barcodes) {
+        Set<Integer> seeds = new LinkedHashSet<>();
+        List<String> otherBarcodes = new ArrayList<>();
+        for (String barcode : barcodes) {
+            if (BarcodeSeed.hasStorePrefix(barcode)) {
+                Integer seed = BarcodeSeed.decodeStoreBarcode(barcode);
+                if (seed!=null) {
+                    seeds.add(seed);
+                }
+            } else if (barcode!=null) {
+                otherBarcodes.add(barcode);
+            }
+        }
+        List<Location> locations = (seeds.isEmpty() ? new ArrayList<>()
+                : findInChunks(new ArrayList<>(seeds), this::findAllBySeedIn));
+        if (!otherBarcodes.isEmpty()) {
+            locations.addAll(findInChunks(barcodeKeys(otherBarcodes), this::findAllByBarcodeKeyIn));
+        }
+        return locations;
+    }
+
+    /**
+     * Finds locations by their path (case insensitive), as described in {@link Location#pathKey(String)}.
+     * This is a single lookup of the indexed path key, however deep the locations are.
+     * Names are not unique, so more than one location may have the same path.
+     * @param path the path to look up, e.g. {@code "Freezer 3 / Shelf 2 / Rack B"}
+     * @return the locations found
+     */
+    default List<Location> findAllByPath(String path) {
+        String key = Location.pathKey(path);
+        return (key==null ? List.of() : findAllByPathKey(key));
+    }
 
     default Location getById(final Integer id) throws EntityNotFoundException {
         return findById(id).orElseThrow(() -> new EntityNotFoundException("No location found with id "+id));
@@ -0,0 +1,93 @@
+package uk.ac.sanger.storelight.repo;
+
+import com.google.common.collect.Lists;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
+
+/**
+ * Helpers for repos.
+ * @author dr6
+ */
+public class RepoUtils {
+    /**
+     * The maximum number of values to put in one {@code IN} list.
+     * Larger lists are split, since very long lists can stop the database using an index.
+     */
+    public static final int MAX_IN_SIZE = 1000;
+
+    private RepoUtils() {}
+
+    /**
+     * Gets the distinct barcode keys for the given barcodes, in order.
+     * @param barcodes the barcodes
+     * @return a list of distinct barcode keys
+     */
+    public static List<String> barcodeKeys(Iterable<String> barcodes) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String barcode : barcodes) {
+            if (barcode!=null) {
+                keys.add(barcodeKey(barcode));
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * Runs a query for the given values, in chunks of at most {@link #MAX_IN_SIZE}, and collects the results.
+     * @param values the values to query for
+     * @param query a function running the query for a chunk of values
+     * @param <V> the type of value
+     * @param <E> the type of result
+     * @return a list of all the results
+     */
+    public static <V, E> List<E> findInChunks(List<V> values, Function<? super List<V>, ? extends Iterable<E>> query) {
+        if (values.size() <= MAX_IN_SIZE) {
+            return Lists.newArrayList(query.apply(values));
+        }
+        List<E> results = new ArrayList<>(values.size());
+        for (List<V> chunk : Lists.partition(values, MAX_IN_SIZE)) {
+            query.apply(chunk).forEach(results::add);
+        }
+        return results;
+    }
+
+    /**
+     * Runs an operation for the given values, in chunks of at most {@link #MAX_IN_SIZE}.
+     * @param values the values
+     * @param operation an operation to run for a chunk of values
+     * @param <V> the type of value
+     */
+    public static <V> void runInChunks(List<V> values, Consumer<? super List<V>> operation) {
+        if (values.size() <= MAX_IN_SIZE) {
+            operation.accept(values);
+            return;
+        }
+        for (List<V> chunk : Lists.partition(values, MAX_IN_SIZE)) {
+            operation.accept(chunk);
+        }
+    }
+
+    /**
+     * Runs an operation for the given values, in chunks of at most {@link #MAX_IN_SIZE},
+     * and adds up the numbers it returns (such as the number of rows updated).
+     * @param values the values
+     * @param operation an operation to run for a chunk of values
+     * @param <V> the type of value
+     * @return the total of the numbers returned for each chunk
+     */
+    public static <V> int sumInChunks(List<V> values, ToIntFunction<? super List<V>> operation) {
+        if (values.size() <= MAX_IN_SIZE) {
+            return operation.applyAsInt(values);
+        }
+        int total = 0;
+        for (List<V> chunk : Lists.partition(values, MAX_IN_SIZE)) {
+            total += operation.applyAsInt(chunk);
+        }
+        return total;
+    }
+}
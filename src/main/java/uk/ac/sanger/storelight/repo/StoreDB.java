@@ -12,14 +12,19 @@ public class StoreDB {
     private final ItemRepo itemRepo;
     private final LocationRepo locationRepo;
     private final StoreRecordRepo storeRecordRepo;
+    private final SubtreeCountRepo subtreeCountRepo;
+    private final LocationDeletionRecordRepo locationDeletionRecordRepo;
 
     @Autowired
     public StoreDB(BarcodeSeedRepo barcodeSeedRepo, ItemRepo itemRepo, LocationRepo locationRepo,
-                   StoreRecordRepo storeRecordRepo) {
+                   StoreRecordRepo storeRecordRepo, SubtreeCountRepo subtreeCountRepo,
+                   LocationDeletionRecordRepo locationDeletionRecordRepo) {
         this.barcodeSeedRepo = barcodeSeedRepo;
         this.itemRepo = itemRepo;
         this.locationRepo = locationRepo;
         this.storeRecordRepo = storeRecordRepo;
+        this.subtreeCountRepo = subtreeCountRepo;
+        this.locationDeletionRecordRepo = locationDeletionRecordRepo;
     }
 
     public BarcodeSeedRepo getBarcodeSeedRepo() {
@@ -37,4 +42,12 @@ public class StoreDB {
     public StoreRecordRepo getStoreRecordRepo() {
         return this.storeRecordRepo;
     }
+
+    public SubtreeCountRepo getSubtreeCountRepo() {
+        return this.subtreeCountRepo;
+    }
+
+    public LocationDeletionRecordRepo getLocationDeletionRecordRepo() {
+        return this.locationDeletionRecordRepo;
+    }
 }
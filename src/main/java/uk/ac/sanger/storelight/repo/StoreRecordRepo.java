@@ -1,7 +1,58 @@
 package uk.ac.sanger.storelight.repo;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.storelight.model.StoreRecord;
 
+import java.util.Collection;
+
 public interface StoreRecordRepo extends CrudRepository<StoreRecord, Integer> {
+    /**
+     * Records the unstoring of every item in the given locations with a single statement,
+     * without loading the items.
+     * This must be run before the items are deleted.
+     * @param locationIds the ids of the locations
+     * @param username the user responsible
+     * @param app the app responsible
+     * @return the number of records inserted
+     */
+    @Modifying
+    @Query(value="insert into store_record (barcode, username, app) " +
+            "select i.barcode, ?2, ?3 from item i where i.location_id in (?1)", nativeQuery=true)
+    int recordUnstoresInLocations(Collection<Integer> locationIds, String username, String app);
+
+    /**
+     * Records the unstoring of the items with the given barcode keys with a single statement,
+     * without loading the items.
+     * This must be run before the items are deleted.
+     * @param barcodeKeys the barcode keys of the items
+     * @param username the user responsible
+     * @param app the app responsible
+     * @return the number of records inserted
+     */
+    @Modifying
+    @Query(value="insert into store_record (barcode, username, app) " +
+            "select i.barcode, ?2, ?3 from item i where i.barcode_key in (?1)", nativeQuery=true)
+    int recordUnstoresOfBarcodeKeys(Collection<String> barcodeKeys, String username, String app);
+
+    /**
+     * Records the move of every item in one location into another with a single statement,
+     * as performed by {@link ItemRepo#transfer}.
+     * This must be run before the items are moved.
+     * @param sourceId the id of the location the items are moved out of
+     * @param scale the multiplier for the row and column
+     * @param rowShift the amount added to the (multiplied) row
+     * @param columnShift the amount added to the (multiplied) column
+     * @param destinationId the id of the location the items are moved into
+     * @param username the user responsible
+     * @param app the app responsible
+     * @return the number of records inserted
+     */
+    @Modifying
+    @Query(value="insert into store_record (barcode, row_index, col_index, location_id, username, app) " +
+            "select i.barcode, i.row_index * ?2 + ?3, i.col_index * ?2 + ?4, ?5, ?6, ?7 from item i " +
+            "where i.location_id = ?1", nativeQuery=true)
+    int recordTransfer(Integer sourceId, int scale, int rowShift, int columnShift, Integer destinationId,
+                       String username, String app);
 }
@@ -0,0 +1,78 @@
+package uk.ac.sanger.storelight.repo;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import uk.ac.sanger.storelight.model.SubtreeCount;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface SubtreeCountRepo extends CrudRepository<SubtreeCount, SubtreeCount.Key> {
+    /**
+     * Adds to one stripe of the count for a location with a single statement, creating the row if necessary.
+     * @param locationId the id of the location
+     * @param stripe the stripe to add to
+     * @param delta the number to add (may be negative)
+     * @return the number of rows affected
+     */
+    @Modifying
+    @Query(value="insert into subtree_count (location_id, stripe, num_items) values (?1, ?2, ?3) " +
+            "on duplicate key update num_items = num_items + ?3", nativeQuery=true)
+    int addItems(Integer locationId, int stripe, int delta);
+
+    /**
+     * Gets the number of items in the subtree at the given location, summing its stripes.
+     * @param locationId the id of the location
+     * @return the number of items in the location and all the locations inside it
+     */
+    @Query("select coalesce(sum(c.numItems), 0) from SubtreeCount c where c.locationId = ?1")
+    long sumByLocationId(Integer locationId);
+
+    /**
+     * Gets the number of items in the subtrees at the given locations, summing their stripes.
+     * Locations without any counts are not included.
+     * @param locationIds the ids of the locations
+     * @return arrays of {@code [locationId, numItems]}
+     */
+    @Query("select c.locationId, sum(c.numItems) from SubtreeCount c where c.locationId in (?1) group by c.locationId")
+    List<Object[]> sumByLocationIdIn(Collection<Integer> locationIds);
+
+    /**
+     * Gets every stripe of the counts for the given locations, locking the rows until the transaction ends.
+     * The rows are locked in order of location id and stripe, like the rows updated by {@link #addItems}.
+     * Where a location has no counts, the gap is locked, so no other transaction can add its count.
+     * @param locationIds the ids of the locations
+     * @return the counts
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from SubtreeCount c where c.locationId in (?1) order by c.locationId, c.stripe")
+    List<SubtreeCount> findAllForUpdateByLocationIdIn(Collection<Integer> locationIds);
+
+    @Modifying
+    @Query("delete from SubtreeCount c where c.locationId in (?1)")
+    int deleteAllByLocationIdIn(Collection<Integer> locationIds);
+
+    /**
+     * Deletes every count with a single statement.
+     * In MySQL this locks every row (and the gaps between them) until the transaction ends,
+     * so no other transaction can add to any count in the meantime.
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Query("delete from SubtreeCount c")
+    int deleteAllCounts();
+
+    /**
+     * Gets the count in the given stripe for the given location, locking the row until the transaction ends.
+     * @param locationId the id of the location
+     * @param stripe the stripe
+     * @return the count, if it exists
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from SubtreeCount c where c.locationId = ?1 and c.stripe = ?2")
+    Optional<SubtreeCount> findForUpdate(Integer locationId, Integer stripe);
+}
@@ -0,0 +1,58 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Type summarising a bulk store operation
+ * @author dr6
+ */
+public class BulkStoreResult {
+    private final int numStored;
+    private final int numLocations;
+    private final int numChunks;
+
+    public BulkStoreResult(int numStored, int numLocations, int numChunks) {
+        this.numStored = numStored;
+        this.numLocations = numLocations;
+        this.numChunks = numChunks;
+    }
+
+    /** The number of items stored */
+    public int getNumStored() {
+        return this.numStored;
+    }
+
+    /** The number of distinct locations the items were stored in */
+    public int getNumLocations() {
+        return this.numLocations;
+    }
+
+    /** The number of chunks the items were committed in */
+    public int getNumChunks() {
+        return this.numChunks;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BulkStoreResult that = (BulkStoreResult) o;
+        return (this.numStored == that.numStored
+                && this.numLocations == that.numLocations
+                && this.numChunks == that.numChunks);
+    }
+
+    @Override
+    public int hashCode() {
+        return numStored + 31 * (numLocations + 31 * numChunks);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("numStored", numStored)
+                .add("numLocations", numLocations)
+                .add("numChunks", numChunks)
+                .toString();
+    }
+}
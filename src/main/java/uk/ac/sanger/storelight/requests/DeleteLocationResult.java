@@ -0,0 +1,49 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Type summarising the deletion of a location and everything inside it
+ * @author dr6
+ */
+public class DeleteLocationResult {
+    private final int numLocations;
+    private final int numUnstored;
+
+    public DeleteLocationResult(int numLocations, int numUnstored) {
+        this.numLocations = numLocations;
+        this.numUnstored = numUnstored;
+    }
+
+    /** The number of locations deleted */
+    public int getNumLocations() {
+        return this.numLocations;
+    }
+
+    /** The number of items unstored from the deleted locations */
+    public int getNumUnstored() {
+        return this.numUnstored;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DeleteLocationResult that = (DeleteLocationResult) o;
+        return (this.numLocations == that.numLocations
+                && this.numUnstored == that.numUnstored);
+    }
+
+    @Override
+    public int hashCode() {
+        return numLocations + 31 * numUnstored;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("numLocations", numLocations)
+                .add("numUnstored", numUnstored)
+                .toString();
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.sanger.storelight.requests;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A requested change to one location, as part of a bulk edit.
+ * The change is a map of the fields to update, as in a single edit:
+ * any field given with a null value is cleared.
+ * @author dr6
+ */
+public class LocationEdit {
+    private LocationIdentifier location;
+    private Map<String, ?> change;
+
+    public LocationEdit() {}
+
+    public LocationEdit(LocationIdentifier location, Map<String, ?> change) {
+        this.location = location;
+        this.change = change;
+    }
+
+    /**
+     * The identifier of the location to change
+     * @return the identifier of the location to change
+     */
+    public LocationIdentifier getLocation() {
+        return this.location;
+    }
+
+    public void setLocation(LocationIdentifier location) {
+        this.location = location;
+    }
+
+    /**
+     * The fields to update in the location
+     * @return a map of field names to their new values
+     */
+    public Map<String, ?> getChange() {
+        return this.change;
+    }
+
+    public void setChange(Map<String, ?> change) {
+        this.change = change;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LocationEdit that = (LocationEdit) o;
+        return (Objects.equals(this.location, that.location)
+                && Objects.equals(this.change, that.change));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(location, change);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(location=%s, change=%s)", location, change);
+    }
+}
@@ -0,0 +1,159 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+import uk.ac.sanger.storelight.model.*;
+
+import java.util.List;
+import java.util.Objects;
+
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
+
+/**
+ * A template for creating one or more {@link uk.ac.sanger.storelight.model.Location Locations},
+ * along with the locations inside them.
+ * @author dr6
+ */
+public class LocationLayout {
+    /** The placeholder in a name that is replaced with the number of the repeat */
+    public static final String NUMBER_PLACEHOLDER = "{n}";
+
+    private String name;
+    private String description;
+    private Address address;
+    private Size size;
+    private GridDirection direction;
+    private Integer repeat;
+    private List<LocationLayout> children;
+
+    public LocationLayout() {}
+
+    public LocationLayout(String name, String description, Address address, Size size, GridDirection direction,
+                          Integer repeat, List<LocationLayout> children) {
+        this.name = name;
+        this.description = description;
+        this.address = address;
+        this.size = size;
+        this.direction = direction;
+        this.repeat = repeat;
+        this.children = children;
+    }
+
+    /**
+     * The name for the locations (optional).
+     * Any occurrence of {@link #NUMBER_PLACEHOLDER} is replaced with the (1-based) number of the repeat.
+     * @return the name pattern for the locations, or null
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The description of the locations (optional)
+     * @return the description of the locations, or null
+     */
+    public String getDescription() {
+        return this.description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    /**
+     * The address of the (first) location inside its parent (optional).
+     * Repeats take the following addresses in the parent's grid direction.
+     * @return the address of the first location, or null
+     */
+    public Address getAddress() {
+        return this.address;
+    }
+
+    public void setAddress(Address address) {
+        this.address = address;
+    }
+
+    /**
+     * The size of the locations in rows and columns (optional)
+     * @return the size of the locations, or null
+     */
+    public Size getSize() {
+        return this.size;
+    }
+
+    public void setSize(Size size) {
+        this.size = size;
+    }
+
+    /**
+     * The preferred direction of grid iteration, if any.
+     * @return the preferred direction of grid iteration, or null
+     */
+    public GridDirection getDirection() {
+        return this.direction;
+    }
+
+    public void setDirection(GridDirection direction) {
+        this.direction = direction;
+    }
+
+    /**
+     * The number of locations to create from this layout (null means one)
+     * @return the number of locations to create from this layout, or null
+     */
+    public Integer getRepeat() {
+        return this.repeat;
+    }
+
+    public void setRepeat(Integer repeat) {
+        this.repeat = repeat;
+    }
+
+    /**
+     * The layouts of locations to create inside each location created from this layout
+     * @return the layouts for child locations, or null
+     */
+    public List<LocationLayout> getChildren() {
+        return this.children;
+    }
+
+    public void setChildren(List<LocationLayout> children) {
+        this.children = children;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LocationLayout that = (LocationLayout) o;
+        return (Objects.equals(this.name, that.name)
+                && Objects.equals(this.description, that.description)
+                && Objects.equals(this.address, that.address)
+                && Objects.equals(this.size, that.size)
+                && this.direction==that.direction
+                && Objects.equals(this.repeat, that.repeat)
+                && Objects.equals(this.children, that.children));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, description, address, size, repeat, children);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("name", repr(name))
+                .add("description", repr(description))
+                .add("address", address)
+                .add("size", size)
+                .add("direction", direction)
+                .add("repeat", repeat)
+                .add("children", children)
+                .omitNullValues()
+                .toString();
+    }
+}
@@ -0,0 +1,62 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+import uk.ac.sanger.storelight.model.Location;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The locations found for a list of location identifiers
+ * @author dr6
+ */
+public class LocationLookupResult {
+    private final List<Location> locations;
+    private final List<Integer> unknownIds;
+    private final List<String> unknownBarcodes;
+
+    public LocationLookupResult(List<Location> locations, List<Integer> unknownIds, List<String> unknownBarcodes) {
+        this.locations = locations;
+        this.unknownIds = unknownIds;
+        this.unknownBarcodes = unknownBarcodes;
+    }
+
+    /** The location for each identifier, in the same order; null for each identifier that was not found */
+    public List<Location> getLocations() {
+        return this.locations;
+    }
+
+    /** The ids that were not found */
+    public List<Integer> getUnknownIds() {
+        return this.unknownIds;
+    }
+
+    /** The barcodes that were not found */
+    public List<String> getUnknownBarcodes() {
+        return this.unknownBarcodes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LocationLookupResult that = (LocationLookupResult) o;
+        return (Objects.equals(this.locations, that.locations)
+                && Objects.equals(this.unknownIds, that.unknownIds)
+                && Objects.equals(this.unknownBarcodes, that.unknownBarcodes));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(locations, unknownIds, unknownBarcodes);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("locations", locations)
+                .add("unknownIds", unknownIds)
+                .add("unknownBarcodes", unknownBarcodes)
+                .toString();
+    }
+}
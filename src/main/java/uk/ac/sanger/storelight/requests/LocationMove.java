@@ -0,0 +1,64 @@
+package uk.ac.sanger.storelight.requests;
+
+import uk.ac.sanger.storelight.model.Address;
+
+import java.util.Objects;
+
+/**
+ * A request to move a location to a new address inside its parent.
+ * @author dr6
+ */
+public class LocationMove {
+    private LocationIdentifier location;
+    private Address address;
+
+    public LocationMove() {}
+
+    public LocationMove(LocationIdentifier location, Address address) {
+        this.location = location;
+        this.address = address;
+    }
+
+    /**
+     * The identifier of the location to move
+     * @return the identifier of the location to move
+     */
+    public LocationIdentifier getLocation() {
+        return this.location;
+    }
+
+    public void setLocation(LocationIdentifier location) {
+        this.location = location;
+    }
+
+    /**
+     * The new address of the location inside its parent (null to clear its address)
+     * @return the new address of the location, or null
+     */
+    public Address getAddress() {
+        return this.address;
+    }
+
+    public void setAddress(Address address) {
+        this.address = address;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LocationMove that = (LocationMove) o;
+        return (Objects.equals(this.location, that.location)
+                && Objects.equals(this.address, that.address));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(location, address);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(location=%s, address=%s)", location, address);
+    }
+}
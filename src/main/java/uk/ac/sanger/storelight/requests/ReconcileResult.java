@@ -0,0 +1,89 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The differences between a scan of the contents of a location and what is recorded as stored there
+ * @author dr6
+ */
+public class ReconcileResult {
+    private final int numScanned;
+    private final int numExpected;
+    private final int numMatched;
+    private final List<ScanDiscrepancy> missing;
+    private final List<ScanDiscrepancy> unexpected;
+    private final List<ScanDiscrepancy> misplaced;
+
+    public ReconcileResult(int numScanned, int numExpected, int numMatched, List<ScanDiscrepancy> missing,
+                           List<ScanDiscrepancy> unexpected, List<ScanDiscrepancy> misplaced) {
+        this.numScanned = numScanned;
+        this.numExpected = numExpected;
+        this.numMatched = numMatched;
+        this.missing = missing;
+        this.unexpected = unexpected;
+        this.misplaced = misplaced;
+    }
+
+    /** The number of items scanned */
+    public int getNumScanned() {
+        return this.numScanned;
+    }
+
+    /** The number of items recorded as stored in the reconciled locations */
+    public int getNumExpected() {
+        return this.numExpected;
+    }
+
+    /** The number of items scanned where they are recorded as stored */
+    public int getNumMatched() {
+        return this.numMatched;
+    }
+
+    /** The items recorded as stored in the reconciled locations that were not scanned */
+    public List<ScanDiscrepancy> getMissing() {
+        return this.missing;
+    }
+
+    /** The items scanned that are not recorded as stored in the reconciled locations */
+    public List<ScanDiscrepancy> getUnexpected() {
+        return this.unexpected;
+    }
+
+    /** The items scanned in the reconciled locations, but not in the location or address where they are recorded */
+    public List<ScanDiscrepancy> getMisplaced() {
+        return this.misplaced;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReconcileResult that = (ReconcileResult) o;
+        return (this.numScanned == that.numScanned
+                && this.numExpected == that.numExpected
+                && this.numMatched == that.numMatched
+                && Objects.equals(this.missing, that.missing)
+                && Objects.equals(this.unexpected, that.unexpected)
+                && Objects.equals(this.misplaced, that.misplaced));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(numScanned, numExpected, numMatched, missing, unexpected, misplaced);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("numScanned", numScanned)
+                .add("numExpected", numExpected)
+                .add("numMatched", numMatched)
+                .add("missing", missing)
+                .add("unexpected", unexpected)
+                .add("misplaced", misplaced)
+                .toString();
+    }
+}
@@ -0,0 +1,63 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+import uk.ac.sanger.storelight.model.Item;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Type summarising the items removed from a location and all the locations inside it
+ * @author dr6
+ */
+public class RecursiveUnstoreResult {
+    private final int numLocations;
+    private final int numUnstored;
+    private final List<Item> unstored;
+
+    public RecursiveUnstoreResult(int numLocations, int numUnstored, List<Item> unstored) {
+        this.numLocations = numLocations;
+        this.numUnstored = numUnstored;
+        this.unstored = unstored;
+    }
+
+    /** The number of locations emptied */
+    public int getNumLocations() {
+        return this.numLocations;
+    }
+
+    /** The number of items unstored */
+    public int getNumUnstored() {
+        return this.numUnstored;
+    }
+
+    /** The former storage information for the items that were unstored, if it was requested */
+    public List<Item> getUnstored() {
+        return this.unstored;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RecursiveUnstoreResult that = (RecursiveUnstoreResult) o;
+        return (this.numLocations == that.numLocations
+                && this.numUnstored == that.numUnstored
+                && Objects.equals(this.unstored, that.unstored));
+    }
+
+    @Override
+    public int hashCode() {
+        return numLocations + 31 * numUnstored;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("numLocations", numLocations)
+                .add("numUnstored", numUnstored)
+                .add("unstored", unstored)
+                .omitNullValues()
+                .toString();
+    }
+}
@@ -0,0 +1,78 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of the results of a paginated query.
+ * The next page is requested by passing the {@link #getEndCursor end cursor} of this page
+ * as the {@code after} argument to the same query.
+ * @param <E> the type of thing in the page
+ * @author dr6
+ */
+public class ResultPage<E> {
+    private final List<E> items;
+    private final String endCursor;
+    private final boolean hasNextPage;
+    private final Integer totalCount;
+
+    public ResultPage(List<E> items, String endCursor, boolean hasNextPage) {
+        this(items, endCursor, hasNextPage, null);
+    }
+
+    public ResultPage(List<E> items, String endCursor, boolean hasNextPage, Integer totalCount) {
+        this.items = items;
+        this.endCursor = endCursor;
+        this.hasNextPage = hasNextPage;
+        this.totalCount = totalCount;
+    }
+
+    /** The things in this page */
+    public List<E> getItems() {
+        return this.items;
+    }
+
+    /** The cursor for the last thing in this page; or null if the page is empty */
+    public String getEndCursor() {
+        return this.endCursor;
+    }
+
+    /** Whether there are more results after this page */
+    public boolean isHasNextPage() {
+        return this.hasNextPage;
+    }
+
+    /** The total number of results in all the pages, if it is known */
+    public Integer getTotalCount() {
+        return this.totalCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ResultPage<?> that = (ResultPage<?>) o;
+        return (this.hasNextPage == that.hasNextPage
+                && Objects.equals(this.items, that.items)
+                && Objects.equals(this.endCursor, that.endCursor)
+                && Objects.equals(this.totalCount, that.totalCount));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(items, endCursor, hasNextPage, totalCount);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("items", items)
+                .add("endCursor", endCursor)
+                .add("hasNextPage", hasNextPage)
+                .add("totalCount", totalCount)
+                .omitNullValues()
+                .toString();
+    }
+}
@@ -0,0 +1,84 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+import uk.ac.sanger.storelight.model.Address;
+import uk.ac.sanger.storelight.model.Location;
+
+import java.util.Objects;
+
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
+
+/**
+ * A difference between where an item was scanned and where it is recorded as stored
+ * @author dr6
+ */
+public class ScanDiscrepancy {
+    private final String barcode;
+    private final Location expectedLocation;
+    private final Address expectedAddress;
+    private final Location scannedLocation;
+    private final Address scannedAddress;
+
+    public ScanDiscrepancy(String barcode, Location expectedLocation, Address expectedAddress,
+                           Location scannedLocation, Address scannedAddress) {
+        this.barcode = barcode;
+        this.expectedLocation = expectedLocation;
+        this.expectedAddress = expectedAddress;
+        this.scannedLocation = scannedLocation;
+        this.scannedAddress = scannedAddress;
+    }
+
+    /** The barcode of the item */
+    public String getBarcode() {
+        return this.barcode;
+    }
+
+    /** The location where the item is recorded as stored, if it is stored */
+    public Location getExpectedLocation() {
+        return this.expectedLocation;
+    }
+
+    /** The address where the item is recorded as stored, if it has one */
+    public Address getExpectedAddress() {
+        return this.expectedAddress;
+    }
+
+    /** The location where the item was scanned, if it was scanned */
+    public Location getScannedLocation() {
+        return this.scannedLocation;
+    }
+
+    /** The address where the item was scanned, if it was given */
+    public Address getScannedAddress() {
+        return this.scannedAddress;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ScanDiscrepancy that = (ScanDiscrepancy) o;
+        return (Objects.equals(this.barcode, that.barcode)
+                && Objects.equals(this.expectedLocation, that.expectedLocation)
+                && Objects.equals(this.expectedAddress, that.expectedAddress)
+                && Objects.equals(this.scannedLocation, that.scannedLocation)
+                && Objects.equals(this.scannedAddress, that.scannedAddress));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(barcode, expectedLocation, expectedAddress, scannedLocation, scannedAddress);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("barcode", repr(barcode))
+                .add("expectedLocation", expectedLocation==null ? null : expectedLocation.getBarcode())
+                .add("expectedAddress", expectedAddress)
+                .add("scannedLocation", scannedLocation==null ? null : scannedLocation.getBarcode())
+                .add("scannedAddress", scannedAddress)
+                .omitNullValues()
+                .toString();
+    }
+}
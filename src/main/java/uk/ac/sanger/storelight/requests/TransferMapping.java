@@ -0,0 +1,19 @@
+package uk.ac.sanger.storelight.requests;
+
+/**
+ * How the addresses of items are mapped when they are transferred from one location to another.
+ * @author dr6
+ */
+public enum TransferMapping {
+    /** Each item keeps the same address (or lack of address) */
+    Identity,
+    /** Each item is moved by a fixed number of rows and columns */
+    Offset,
+    /**
+     * Each source location is mapped to one quadrant of a grid twice the size:
+     * the first source to the odd rows and odd columns, the second to the odd rows and even columns,
+     * the third to the even rows and odd columns, and the fourth to the even rows and even columns
+     * (e.g. four 96-well plates into a 384-well plate).
+     */
+    Quadrant,
+}
@@ -0,0 +1,52 @@
+package uk.ac.sanger.storelight.requests;
+
+import com.google.common.base.MoreObjects;
+import uk.ac.sanger.storelight.model.Location;
+
+import java.util.Objects;
+
+/**
+ * Type summarising a transfer of items into a location
+ * @author dr6
+ */
+public class TransferResult {
+    private final int numTransferred;
+    private final Location destination;
+
+    public TransferResult(int numTransferred, Location destination) {
+        this.numTransferred = numTransferred;
+        this.destination = destination;
+    }
+
+    /** The number of items transferred */
+    public int getNumTransferred() {
+        return this.numTransferred;
+    }
+
+    /** The location the items were transferred into */
+    public Location getDestination() {
+        return this.destination;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TransferResult that = (TransferResult) o;
+        return (this.numTransferred == that.numTransferred
+                && Objects.equals(this.destination, that.destination));
+    }
+
+    @Override
+    public int hashCode() {
+        return numTransferred + 31 * Objects.hashCode(destination);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("numTransferred", numTransferred)
+                .add("destination", destination)
+                .toString();
+    }
+}
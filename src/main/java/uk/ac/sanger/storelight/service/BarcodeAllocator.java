@@ -0,0 +1,129 @@
+package uk.ac.sanger.storelight.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.sanger.storelight.model.BarcodeSeed;
+import uk.ac.sanger.storelight.repo.BarcodeSeedRepo;
+
+import java.util.*;
+
+/**
+ * Allocates seeds for location barcodes using a hi/lo scheme.
+ * <p>Each {@link BarcodeSeed} row saved is a "hi" value that reserves the block of seeds
+ * {@code [hi*BLOCK_SIZE, hi*BLOCK_SIZE + BLOCK_SIZE)}. Seeds from the block are then
+ * handed out in-process without going back to the database.
+ * Since every instance of the application gets its own hi values from the identity column,
+ * the blocks never overlap. The hi rows are saved in their own transaction, so a block
+ * stays reserved even if the transaction that asked for it is rolled back.
+ * <p>Seeds issued before this scheme were the ids of the seed rows themselves. Any new hi value
+ * is greater than all those ids, so every block starts above them.
+ * Any seeds left in a block when the application stops are never used.
+ * @author dr6
+ */
+@Service
+public class BarcodeAllocator {
+    /** The number of seeds in each block. This must never change, or blocks could overlap. */
+    public static final int BLOCK_SIZE = 32;
+
+    private final BarcodeSeedRepo barcodeSeedRepo;
+    private final TransactionTemplate transactionTemplate;
+
+    /** The next seed to hand out from the current block */
+    private int nextSeed;
+    /** The end (exclusive) of the current block */
+    private int blockEnd;
+
+    @Autowired
+    public BarcodeAllocator(BarcodeSeedRepo barcodeSeedRepo, PlatformTransactionManager transactionManager) {
+        this.barcodeSeedRepo = barcodeSeedRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setName("Reserve barcode seeds");
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Creates a new location barcode.
+     * @return a new unique barcode with the {@link BarcodeSeed#STORE_PREFIX store prefix}
+     */
+    public String createStoreBarcode() {
+        return BarcodeSeed.toBarcode(BarcodeSeed.STORE_PREFIX, allocateSeed());
+    }
+
+    /**
+     * Creates the given number of new location barcodes.
+     * @param count the number of barcodes required
+     * @return a list of new unique barcodes with the {@link BarcodeSeed#STORE_PREFIX store prefix}
+     */
+    public List<String> createStoreBarcodes(int count) {
+        int[] seeds = allocateSeeds(count);
+        List<String> barcodes = new ArrayList<>(count);
+        for (int seed : seeds) {
+            barcodes.add(BarcodeSeed.toBarcode(BarcodeSeed.STORE_PREFIX, seed));
+        }
+        return barcodes;
+    }
+
+    /**
+     * Allocates a single seed.
+     * @return a new unique seed
+     */
+    public synchronized int allocateSeed() {
+        if (nextSeed >= blockEnd) {
+            int[] blocks = reserveBlocks(1);
+            nextSeed = blocks[0] * BLOCK_SIZE;
+            blockEnd = nextSeed + BLOCK_SIZE;
+        }
+        return nextSeed++;
+    }
+
+    /**
+     * Allocates the given number of seeds.
+     * The rest of the current block is used first, and then as many new blocks as required
+     * are reserved together.
+     * @param count the number of seeds required
+     * @return an array of new unique seeds
+     */
+    public synchronized int[] allocateSeeds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Cannot allocate a negative number of seeds.");
+        }
+        int[] seeds = new int[count];
+        int i = 0;
+        while (i < count && nextSeed < blockEnd) {
+            seeds[i++] = nextSeed++;
+        }
+        if (i < count) {
+            int[] blocks = reserveBlocks((count - i + BLOCK_SIZE - 1) / BLOCK_SIZE);
+            for (int hi : blocks) {
+                nextSeed = hi * BLOCK_SIZE;
+                blockEnd = nextSeed + BLOCK_SIZE;
+                while (i < count && nextSeed < blockEnd) {
+                    seeds[i++] = nextSeed++;
+                }
+            }
+        }
+        return seeds;
+    }
+
+    /**
+     * Saves new seed rows (in a new transaction), whose ids are the hi values for new blocks.
+     * @param numBlocks the number of blocks to reserve
+     * @return the hi values of the reserved blocks
+     */
+    private int[] reserveBlocks(int numBlocks) {
+        List<BarcodeSeed> newSeeds = new ArrayList<>(numBlocks);
+        for (int i = 0; i < numBlocks; ++i) {
+            newSeeds.add(new BarcodeSeed());
+        }
+        Iterable<BarcodeSeed> saved = transactionTemplate.execute(status -> barcodeSeedRepo.saveAll(newSeeds));
+        int[] his = new int[numBlocks];
+        int i = 0;
+        for (BarcodeSeed seed : Objects.requireNonNull(saved)) {
+            his[i++] = seed.getId();
+        }
+        return his;
+    }
+}
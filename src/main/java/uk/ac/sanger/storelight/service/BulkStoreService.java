@@ -0,0 +1,248 @@
+package uk.ac.sanger.storelight.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.sanger.storelight.graphql.StoreRequestContext;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.ItemRepo;
+import uk.ac.sanger.storelight.repo.StoreDB;
+import uk.ac.sanger.storelight.requests.*;
+import uk.ac.sanger.storelight.utils.CIStringSet;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static uk.ac.sanger.storelight.repo.RepoUtils.findInChunks;
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
+import static uk.ac.sanger.storelight.utils.BasicUtils.coalesce;
+
+/**
+ * Service for storing very large numbers of items (e.g. for migrations).
+ * <p>Items are grouped by destination location, and the groups are validated in parallel
+ * before anything is written. The groups are then written in chunks of roughly the requested size
+ * (keeping together groups that depend on each other, where an item takes the address of one being moved),
+ * each in its own transaction (unless the caller already has a transaction open),
+ * so a failure part way through leaves the earlier chunks committed.
+ * For all-or-nothing storage, use {@link StoreService#store}.
+ * @author dr6
+ */
+@Service
+public class BulkStoreService {
+    static final int DEFAULT_CHUNK_SIZE = 1000, MAX_CHUNK_SIZE = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(BulkStoreService.class);
+
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final StoreDB db;
+    private final ItemBarcodeValidator itemBarcodeValidator;
+    private final StoreAddressChecker storeAddressChecker;
+    private final SubtreeCountService subtreeCountService;
+
+    @Autowired
+    public BulkStoreService(EntityManager entityManager, PlatformTransactionManager transactionManager, StoreDB db,
+                            ItemBarcodeValidator itemBarcodeValidator, StoreAddressChecker storeAddressChecker,
+                            SubtreeCountService subtreeCountService) {
+        this.entityManager = entityManager;
+        this.transactionManager = transactionManager;
+        this.db = db;
+        this.itemBarcodeValidator = itemBarcodeValidator;
+        this.storeAddressChecker = storeAddressChecker;
+        this.subtreeCountService = subtreeCountService;
+    }
+
+    /**
+     * Stores the given items, validating them in parallel and committing them in chunks.
+     * @param ctxt the request context
+     * @param storeInputs the specification of what to store where
+     * @param defaultLi the location to use for inputs that do not specify one (may be null)
+     * @param chunkSize the approximate number of items to commit in each transaction (null for the default)
+     * @return a summary of what was stored
+     * @exception IllegalArgumentException if the request is invalid; in which case nothing is stored
+     */
+    public BulkStoreResult store(StoreRequestContext ctxt, List<StoreInput> storeInputs, LocationIdentifier defaultLi,
+                                 Integer chunkSize) {
+        requireNonNull(ctxt, "Request context is null.");
+        if (chunkSize!=null && (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE)) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and "+MAX_CHUNK_SIZE+".");
+        }
+        if (storeInputs.isEmpty()) {
+            return new BulkStoreResult(0, 0, 0);
+        }
+        CIStringSet barcodes = itemBarcodeValidator.validateItemBarcodes(storeInputs.stream().map(StoreInput::getBarcode),
+                ctxt.getApp());
+        if (defaultLi==null && storeInputs.stream().anyMatch(sin -> sin.getLocation()==null)) {
+            throw new IllegalArgumentException("A location must be specified for each item.");
+        }
+        LocationCache locationCache = new LocationCache(db.getLocationRepo());
+        locationCache.lookUp(Stream.concat(Stream.of(defaultLi), storeInputs.stream().map(StoreInput::getLocation))
+                .filter(Objects::nonNull));
+        Map<Integer, List<Item>> partitions = new LinkedHashMap<>();
+        for (StoreInput sin : storeInputs) {
+            Location location = locationCache.get(coalesce(sin.getLocation(), defaultLi));
+            partitions.computeIfAbsent(location.getId(), k -> new ArrayList<>())
+                    .add(new Item(null, sin.getBarcode(), location, sin.getAddress()));
+        }
+        Map<Integer, Map<Address, String>> occupants = validatePartitions(partitions, barcodes, ForkJoinPool.commonPool());
+        List<List<Item>> chunks = makeChunks(linkPartitions(partitions, occupants),
+                coalesce(chunkSize, DEFAULT_CHUNK_SIZE));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setName("Bulk store chunk");
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        int numStored = 0;
+        int numChunks = 0;
+        for (List<Item> chunk : chunks) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> storeChunk(ctxt, chunk));
+            } catch (RuntimeException e) {
+                log.error("Bulk store by {} failed after storing {} items in {} chunks.", ctxt, numStored, numChunks);
+                throw e;
+            }
+            numStored += chunk.size();
+            ++numChunks;
+        }
+        BulkStoreResult result = new BulkStoreResult(numStored, partitions.size(), numChunks);
+        log.info("Items bulk stored {} by {}.", result, ctxt);
+        return result;
+    }
+
+    /**
+     * Checks the addresses of the items in each partition against each other and against what
+     * is already stored.
+     * The current occupants of the locations are loaded up front, so the partitions can be
+     * checked in parallel without touching the database.
+     * @param partitions map of location id to the items being stored in that location
+     * @param barcodes the barcodes being stored
+     * @param pool the pool to check partitions in
+     * @return map of location id to the barcode of the item currently at each address in that location,
+     *         for the locations where items are being stored at addresses
+     * @exception IllegalArgumentException if any problems are found
+     */
+    Map<Integer, Map<Address, String>> validatePartitions(Map<Integer, List<Item>> partitions, CIStringSet barcodes,
+                                                          ForkJoinPool pool) {
+        List<Integer> addressedLocationIds = partitions.entrySet().stream()
+                .filter(e -> e.getValue().stream().anyMatch(item -> item.getAddress()!=null))
+                .map(Map.Entry::getKey)
+                .collect(toList());
+        if (addressedLocationIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, Map<Address, String>> occupants = new HashMap<>(addressedLocationIds.size());
+        for (Object[] row : findInChunks(addressedLocationIds, db.getItemRepo()::findAddressedItemsInLocations)) {
+            occupants.computeIfAbsent((Integer) row[0], k -> new HashMap<>())
+                    .put(new Address((Integer) row[1], (Integer) row[2]), (String) row[3]);
+        }
+        storeAddressChecker.checkPartitions(partitions.values(), occupants, barcodes, pool);
+        return occupants;
+    }
+
+    /**
+     * Groups together the partitions that have to be committed in the same chunk.
+     * An address whose current occupant is also being stored is only free once the occupant has been moved;
+     * so the partition storing something at that address is linked to the partition the occupant is moving into.
+     * Otherwise, if the chunks were committed separately, both items would be at the address in between
+     * (and for good, if a later chunk failed). Links are followed transitively.
+     * @param partitions map of location id to the items being stored in that location
+     * @param occupants map of location id to the barcode of the item currently at each address in that location
+     * @return the items in each group, with the groups in order of their first partition
+     */
+    static Collection<List<Item>> linkPartitions(Map<Integer, List<Item>> partitions,
+                                                 Map<Integer, Map<Address, String>> occupants) {
+        if (occupants.isEmpty()) {
+            return partitions.values();
+        }
+        Map<String, Integer> destinations = new HashMap<>();
+        partitions.forEach((locationId, items) ->
+                items.forEach(item -> destinations.put(barcodeKey(item.getBarcode()), locationId)));
+        Map<Integer, Integer> links = new HashMap<>();
+        partitions.forEach((locationId, items) -> {
+            Map<Address, String> locationOccupants = occupants.get(locationId);
+            if (locationOccupants==null) {
+                return;
+            }
+            for (Item item : items) {
+                String occupant = (item.getAddress()==null ? null : locationOccupants.get(item.getAddress()));
+                Integer occupantDestination = (occupant==null ? null : destinations.get(barcodeKey(occupant)));
+                if (occupantDestination!=null) {
+                    Integer root = findRoot(links, locationId);
+                    Integer otherRoot = findRoot(links, occupantDestination);
+                    if (!root.equals(otherRoot)) {
+                        links.put(otherRoot, root);
+                    }
+                }
+            }
+        });
+        if (links.isEmpty()) {
+            return partitions.values();
+        }
+        Map<Integer, List<Item>> groups = new LinkedHashMap<>();
+        partitions.forEach((locationId, items) ->
+                groups.computeIfAbsent(findRoot(links, locationId), k -> new ArrayList<>()).addAll(items));
+        return groups.values();
+    }
+
+    /**
+     * Follows the links from the given location id to the id representing its group.
+     */
+    private static Integer findRoot(Map<Integer, Integer> links, Integer id) {
+        Integer next;
+        while ((next = links.get(id))!=null) {
+            id = next;
+        }
+        return id;
+    }
+
+    /**
+     * Groups the partitions into chunks of at least the given size (except possibly the last chunk).
+     * Partitions are never split, so that all the items stored in one location are committed together.
+     * @param partitions the items grouped by location
+     * @param chunkSize the minimum size for a chunk
+     * @return a list of chunks of items
+     */
+    static List<List<Item>> makeChunks(Collection<List<Item>> partitions, int chunkSize) {
+        List<List<Item>> chunks = new ArrayList<>();
+        List<Item> chunk = null;
+        for (List<Item> partition : partitions) {
+            if (chunk==null) {
+                chunk = new ArrayList<>(Math.max(chunkSize, partition.size()));
+            }
+            chunk.addAll(partition);
+            if (chunk.size() >= chunkSize) {
+                chunks.add(chunk);
+                chunk = null;
+            }
+        }
+        if (chunk!=null) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Writes one chunk of items, with their store records.
+     * The saved items are detached afterwards so the persistence context does not keep growing.
+     */
+    void storeChunk(StoreRequestContext ctxt, List<Item> items) {
+        ItemRepo itemRepo = db.getItemRepo();
+        subtreeCountService.recordStores(items);
+        itemRepo.deleteAllByBarcodeIn(items.stream().map(Item::getBarcode).collect(toList()));
+        entityManager.flush();
+        itemRepo.saveAll(items);
+        List<StoreRecord> records = items.stream()
+                .map(item -> new StoreRecord(item.getBarcode(), item.getAddress(), item.getLocation().getId(),
+                        ctxt.getUsername(), ctxt.getApp()))
+                .collect(toList());
+        db.getStoreRecordRepo().saveAll(records);
+        entityManager.flush();
+        items.forEach(entityManager::detach);
+    }
+}
@@ -1,53 +1,95 @@
 package uk.ac.sanger.storelight.service;
 
-import org.springframework.stereotype.Component;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import uk.ac.sanger.storelight.config.ApiKeyConfig;
+import uk.ac.sanger.storelight.config.BarcodeRules;
 import uk.ac.sanger.storelight.model.BarcodeSeed;
-import uk.ac.sanger.storelight.model.Item;
-import uk.ac.sanger.storelight.utils.BasicUtils;
 import uk.ac.sanger.storelight.utils.CIStringSet;
 
 import java.util.*;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
 import static uk.ac.sanger.storelight.utils.BasicUtils.pluralise;
 import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 
 /**
  * Checks a stream of item barcodes and generates an exception listing all the problems it finds.
+ * <p>Each barcode is classified in a single scan of its characters, without allocation.
+ * Large batches are classified in parallel chunks; the problems are then aggregated in order,
+ * so the error message is the same either way.
  * @author dr6
  */
 @Service
 public class ItemBarcodeValidator {
+    /** Batches at least this big are classified in parallel */
+    static final int PARALLEL_THRESHOLD = 10_000;
+    /** The number of barcodes classified in each parallel chunk */
+    static final int CHUNK_SIZE = 4096;
 
+    static final byte VALID = 0, NULL = 1, TOO_SHORT = 2, TOO_LONG = 3, WRONG_PREFIX = 4, UNTRIMMED = 5,
+            INVALID_CHARS = 6;
+
+    private final ApiKeyConfig apiKeyConfig;
+
+    @Autowired
+    public ItemBarcodeValidator(ApiKeyConfig apiKeyConfig) {
+        this.apiKeyConfig = apiKeyConfig;
+    }
+
+    /**
+     * Validates barcodes using the default rules.
+     * @param itemBarcodes the barcodes
+     * @return a case-insensitive set of the barcodes
+     * @exception IllegalArgumentException if there are any problems with the barcodes
+     */
     public CIStringSet validateItemBarcodes(Stream<String> itemBarcodes) {
+        return validateItemBarcodes(itemBarcodes.collect(toList()), BarcodeRules.DEFAULT);
+    }
+
+    /**
+     * Validates barcodes using the rules configured for the given app.
+     * @param itemBarcodes the barcodes
+     * @param app the app storing the barcodes
+     * @return a case-insensitive set of the barcodes
+     * @exception IllegalArgumentException if there are any problems with the barcodes
+     */
+    public CIStringSet validateItemBarcodes(Stream<String> itemBarcodes, String app) {
+        BarcodeRules rules = (apiKeyConfig==null ? BarcodeRules.DEFAULT : apiKeyConfig.getBarcodeRules(app));
+        return validateItemBarcodes(itemBarcodes.collect(toList()), rules);
+    }
+
+    /**
+     * Validates barcodes using the given rules.
+     * @param itemBarcodes the barcodes
+     * @param rules the rules for the barcodes
+     * @return a case-insensitive set of the barcodes
+     * @exception IllegalArgumentException if there are any problems with the barcodes
+     */
+    public CIStringSet validateItemBarcodes(List<String> itemBarcodes, BarcodeRules rules) {
+        final int numBarcodes = itemBarcodes.size();
+        byte[] codes = classifyAll(itemBarcodes, rules);
         boolean anyNull = false;
-        CIStringSet seen = new CIStringSet();
-        Set<String> untrimmed = new CIStringSet();
-        Set<String> tooShort = new CIStringSet();
-        Set<String> tooLong = new CIStringSet();
-        Set<String> wrongPrefix = new CIStringSet();
+        CIStringSet seen = new CIStringSet(numBarcodes);
+        Map<Byte, Set<String>> problems = new HashMap<>();
         Set<String> repeated = new CIStringSet();
-        for (String barcode : (Iterable<String>) itemBarcodes::iterator) {
-            if (barcode==null) {
+        for (int i = 0; i < numBarcodes; ++i) {
+            if (codes[i]==NULL) {
                 anyNull = true;
                 continue;
             }
+            String barcode = itemBarcodes.get(i);
             if (!seen.add(barcode)) {
                 repeated.add(barcode);
                 continue;
             }
-            if (barcode.length() < Item.MIN_BARCODE) {
-                tooShort.add(barcode);
-            } else if (barcode.length() > Item.MAX_BARCODE) {
-                tooLong.add(barcode);
-            } else if (BasicUtils.startsWithIgnoreCase(barcode, BarcodeSeed.STORE_PREFIX)) {
-                wrongPrefix.add(barcode);
-            } else if (!barcode.trim().equals(barcode)) {
-                untrimmed.add(barcode);
+            if (codes[i]!=VALID) {
+                problems.computeIfAbsent(codes[i], k -> new CIStringSet()).add(barcode);
             }
         }
-        if (!anyNull && untrimmed.isEmpty() && tooShort.isEmpty() && tooLong.isEmpty() && wrongPrefix.isEmpty() && repeated.isEmpty()) {
+        if (!anyNull && problems.isEmpty() && repeated.isEmpty()) {
             return seen;
         }
         List<String> errors = new ArrayList<>();
@@ -57,19 +99,84 @@ public class ItemBarcodeValidator {
         if (!repeated.isEmpty()) {
             errors.add(barcodeError("Barcode{s} repeated:", repeated));
         }
-        if (!tooShort.isEmpty()) {
-            errors.add(barcodeError("Barcode{s} too short:", tooShort));
+        addError(errors, problems, TOO_SHORT, "Barcode{s} too short:");
+        addError(errors, problems, TOO_LONG, "Barcode{s} too long:");
+        addError(errors, problems, UNTRIMMED, "Barcode{s} {has|have} surrounding whitespace:");
+        addError(errors, problems, WRONG_PREFIX, "Barcodes cannot start with "+BarcodeSeed.STORE_PREFIX+":");
+        addError(errors, problems, INVALID_CHARS, "Barcode{s} {contains|contain} invalid characters:");
+        throw new IllegalArgumentException(String.join(" ", errors));
+    }
+
+    private static void addError(List<String> errors, Map<Byte, Set<String>> problems, byte code, String template) {
+        Set<String> barcodes = problems.get(code);
+        if (barcodes!=null) {
+            errors.add(barcodeError(template, barcodes));
+        }
+    }
+
+    /**
+     * Classifies every barcode, in parallel chunks if there are enough of them.
+     */
+    byte[] classifyAll(List<String> barcodes, BarcodeRules rules) {
+        final int numBarcodes = barcodes.size();
+        final byte[] codes = new byte[numBarcodes];
+        if (numBarcodes < PARALLEL_THRESHOLD || !(barcodes instanceof RandomAccess)) {
+            int i = 0;
+            for (String barcode : barcodes) {
+                codes[i] = classify(barcode, rules);
+                ++i;
+            }
+            return codes;
+        }
+        final int numChunks = (numBarcodes + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            final int end = Math.min(numBarcodes, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < end; ++i) {
+                codes[i] = classify(barcodes.get(i), rules);
+            }
+        });
+        return codes;
+    }
+
+    /**
+     * Classifies a barcode in a single scan, without allocation.
+     * If a barcode has multiple problems, only the first of
+     * too short, too long, wrong prefix, untrimmed, invalid characters is reported.
+     * @param barcode the barcode
+     * @param rules the rules for the barcode
+     * @return a code indicating the problem with the barcode, or {@link #VALID}
+     */
+    static byte classify(String barcode, BarcodeRules rules) {
+        if (barcode==null) {
+            return NULL;
+        }
+        final int len = barcode.length();
+        if (len < rules.getMinLength()) {
+            return TOO_SHORT;
+        }
+        if (len > rules.getMaxLength()) {
+            return TOO_LONG;
         }
-        if (!tooLong.isEmpty()) {
-            errors.add(barcodeError("Barcode{s} too long:", tooLong));
+        final String prefix = BarcodeSeed.STORE_PREFIX;
+        final int prefixLength = prefix.length();
+        boolean prefixMatch = (len >= prefixLength);
+        boolean invalidChars = false;
+        for (int i = 0; i < len; ++i) {
+            char ch = barcode.charAt(i);
+            if (prefixMatch && i < prefixLength && Character.toUpperCase(ch)!=prefix.charAt(i)) {
+                prefixMatch = false;
+            }
+            if (!invalidChars && !rules.isAllowed(ch)) {
+                invalidChars = true;
+            }
         }
-        if (!untrimmed.isEmpty()) {
-            errors.add(barcodeError("Barcode{s} {has|have} surrounding whitespace:", untrimmed));
+        if (prefixMatch) {
+            return WRONG_PREFIX;
         }
-        if (!wrongPrefix.isEmpty()) {
-            errors.add(barcodeError("Barcodes cannot start with STO-:", wrongPrefix));
+        if (barcode.charAt(0) <= ' ' || barcode.charAt(len-1) <= ' ') {
+            return UNTRIMMED;
         }
-        throw new IllegalArgumentException(String.join(" ", errors));
+        return (invalidChars ? INVALID_CHARS : VALID);
     }
 
     private static String barcodeError(String template, Collection<String> barcodes) {
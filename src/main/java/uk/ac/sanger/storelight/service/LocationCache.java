@@ -10,6 +10,7 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
 import static uk.ac.sanger.storelight.utils.BasicUtils.pluralise;
 
 /**
@@ -27,17 +28,36 @@ public class LocationCache {
 
     public void cache(Location location) {
         idMap.put(location.getId(), location);
-        bcMap.put(location.getBarcode().toUpperCase(), location);
+        bcMap.put(barcodeKey(location.getBarcode()), location);
     }
 
+    /**
+     * Looks up the locations for the given identifiers that are not already cached,
+     * in at most one query by id and one by barcode.
+     * @param lis the identifiers to look up
+     * @exception IllegalArgumentException if any of the locations are not found
+     */
     public void lookUp(Stream<LocationIdentifier> lis) {
+        load(lis, true);
+    }
+
+    /**
+     * Looks up locations as in {@link #lookUp}, but without failing if any of them are not found.
+     * {@link #get} returns null for the identifiers that were not found.
+     * @param lis the identifiers to look up
+     */
+    public void lookUpExisting(Stream<LocationIdentifier> lis) {
+        load(lis, false);
+    }
+
+    private void load(Stream<LocationIdentifier> lis, boolean required) {
         Set<Integer> ids = new HashSet<>();
         Set<String> bcs = new HashSet<>();
         lis.forEach(li -> {
             if (li.getId() != null) {
                 ids.add(li.getId());
             } else if (li.getBarcode() != null) {
-                bcs.add(li.getBarcode().toUpperCase());
+                bcs.add(barcodeKey(li.getBarcode()));
             }
         });
         ids.removeAll(idMap.keySet());
@@ -45,18 +65,18 @@ public class LocationCache {
         Consumer<Location> receive = loc -> {
             cache(loc);
             ids.remove(loc.getId());
-            bcs.remove(loc.getBarcode().toUpperCase());
+            bcs.remove(barcodeKey(loc.getBarcode()));
         };
         if (!ids.isEmpty()) {
             locationRepo.findAllById(ids).forEach(receive);
-            if (!ids.isEmpty()) {
+            if (required && !ids.isEmpty()) {
                 throw new IllegalArgumentException(pluralise("Unknown location id{s}: ", ids.size())
                         + ids);
             }
         }
         if (!bcs.isEmpty()) {
             locationRepo.findAllByBarcodeIn(bcs).forEach(receive);
-            if (!bcs.isEmpty()) {
+            if (required && !bcs.isEmpty()) {
                 List<String> bcReprs = bcs.stream().map(BasicUtils::repr).collect(Collectors.toList());
                 throw new IllegalArgumentException(pluralise("Unknown location barcode{s}: ", bcs.size())
                         + bcReprs);
@@ -69,7 +89,7 @@ public class LocationCache {
             return idMap.get(li.getId());
         }
         if (li.getBarcode()!=null) {
-            return bcMap.get(li.getBarcode().toUpperCase());
+            return bcMap.get(barcodeKey(li.getBarcode()));
         }
         throw new IllegalArgumentException("Missing location identifier.");
     }
@@ -0,0 +1,312 @@
+package uk.ac.sanger.storelight.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.ac.sanger.storelight.model.Location;
+import uk.ac.sanger.storelight.repo.LocationRepo;
+import uk.ac.sanger.storelight.repo.StoreDB;
+import uk.ac.sanger.storelight.requests.LocationIdentifier;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An in-process index of the words in the names and descriptions of locations, used to search for locations.
+ * <p>Each word (in lower case) is mapped to the locations whose name or description contains it, in sorted maps,
+ * so that words can be looked up by prefix. The parent of each location is also recorded, so that a search can
+ * be limited to the inside of a location without querying the database.
+ * <p>The index is built from the database while the application starts, before the web server starts accepting
+ * requests, and {@link LocationService} keeps it up to date as locations are created, edited and deleted. Updates made inside a transaction are applied when the
+ * transaction commits, so changes that are rolled back never reach the index. Changes made by another instance
+ * of the application, or directly in the database, are not seen until the index is {@link #rebuild rebuilt}.
+ * @author dr6
+ */
+@Service
+public class LocationSearchIndex {
+    /** The maximum number of results from one search */
+    public static final int MAX_RESULTS = 100;
+
+    /** The score for each search term, depending on where and how it matches a location */
+    private static final int NAME_WORD = 4, NAME_PREFIX = 3, DESCRIPTION_WORD = 2, DESCRIPTION_PREFIX = 1;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Logger log = LoggerFactory.getLogger(LocationSearchIndex.class);
+
+    private final StoreDB db;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Contents contents = new Contents();
+    /** Updates made while the index is being rebuilt, to be applied again to the rebuilt index */
+    private List<Consumer<Contents>> pendingUpdates;
+
+    @Autowired
+    public LocationSearchIndex(StoreDB db) {
+        this.db = db;
+    }
+
+    /**
+     * Builds the index from scratch from all the locations in the database.
+     * The locations are read as a projection, so they are not loaded as entities.
+     * <p>Searches use the existing index until the new one is swapped in. Updates that arrive once the rebuild
+     * has started are applied to the existing index and also queued, and the queue is applied to the new index
+     * before it is swapped in; so changes committed after the locations are read are not lost.
+     */
+    @PostConstruct
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingUpdates = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Contents newContents = null;
+        try {
+            List<Object[]> rows = db.getLocationRepo().findAllSearchFields();
+            newContents = new Contents();
+            for (Object[] row : rows) {
+                newContents.put(new Entry((Integer) row[0], (Integer) row[1], (String) row[2], (String) row[3]));
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (newContents!=null) {
+                    for (Consumer<Contents> update : pendingUpdates) {
+                        update.accept(newContents);
+                    }
+                    contents = newContents;
+                }
+                pendingUpdates = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        log.info("Location search index built with {} locations.", newContents.entries.size());
+    }
+
+    /**
+     * Adds or updates the given locations in the index, once the current transaction (if any) commits.
+     * The names, descriptions and parents of the locations are read immediately.
+     * @param locations the locations that have been created or changed
+     */
+    public void index(Collection<Location> locations) {
+        List<Entry> newEntries = locations.stream().map(Entry::new).collect(toList());
+        afterCommit(() -> update(c -> newEntries.forEach(c::put)));
+    }
+
+    /**
+     * Removes the given locations from the index, once the current transaction (if any) commits.
+     * @param locationIds the ids of the locations that have been deleted
+     */
+    public void remove(Collection<Integer> locationIds) {
+        List<Integer> ids = List.copyOf(locationIds);
+        afterCommit(() -> update(c -> ids.forEach(c::remove)));
+    }
+
+    /**
+     * Searches for locations matching the given text.
+     * @param text the text to search for
+     * @param under the location to search inside (or null to search everywhere)
+     * @param first the maximum number of locations to return
+     * @return the matching locations, best match first
+     * @exception IllegalArgumentException if the number of results requested is invalid
+     * @see #search(String, Integer, int)
+     */
+    public List<Location> searchLocations(String text, LocationIdentifier under, int first) {
+        if (first < 1 || first > MAX_RESULTS) {
+            throw new IllegalArgumentException("The number of results must be between 1 and "+MAX_RESULTS+".");
+        }
+        LocationRepo locRepo = db.getLocationRepo();
+        Integer underId = (under==null ? null : locRepo.get(under).getId());
+        List<Integer> ids = search(text, underId, first);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Location> idLocations = new HashMap<>(ids.size());
+        locRepo.findAllById(ids).forEach(loc -> idLocations.put(loc.getId(), loc));
+        return ids.stream().map(idLocations::get).filter(Objects::nonNull).collect(toList());
+    }
+
+    /**
+     * Searches the index for locations matching the given text.
+     * Every word in the text must appear at the start of some word in the name or description of a location
+     * for it to match. Matches are ranked by where each word is found: a whole word in the name is best,
+     * then the start of a word in the name, then a whole word in the description, then the start of a word
+     * in the description. Equally good matches are listed in order of id.
+     * @param text the text to search for
+     * @param underId the id of the location to search inside (or null to search everywhere)
+     * @param limit the maximum number of ids to return
+     * @return the ids of the best matching locations, best match first
+     */
+    public List<Integer> search(String text, Integer underId, int limit) {
+        Set<String> terms = words(text);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> scores = null;
+            for (String term : terms) {
+                Map<Integer, Integer> termScores = new HashMap<>();
+                addScores(contents.nameWords, term, NAME_WORD, NAME_PREFIX, termScores);
+                addScores(contents.descriptionWords, term, DESCRIPTION_WORD, DESCRIPTION_PREFIX, termScores);
+                if (scores==null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            final Map<Integer, Integer> totals = scores;
+            final Contents searched = contents;
+            return totals.keySet().stream()
+                    .filter(id -> underId==null || searched.isInside(id, underId))
+                    .sorted(Comparator.<Integer>comparingInt(totals::get).reversed().thenComparing(Function.identity()))
+                    .limit(limit)
+                    .collect(toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void addScores(NavigableMap<String, Set<Integer>> words, String term, int wordScore,
+                                  int prefixScore, Map<Integer, Integer> scores) {
+        for (var entry : words.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            int score = (entry.getKey().equals(term) ? wordScore : prefixScore);
+            for (Integer id : entry.getValue()) {
+                scores.merge(id, score, Math::max);
+            }
+        }
+    }
+
+    /**
+     * Applies an update to the index, and queues it to be applied again if the index is being rebuilt.
+     */
+    private void update(Consumer<Contents> update) {
+        lock.writeLock().lock();
+        try {
+            update.accept(contents);
+            if (pendingUpdates!=null) {
+                pendingUpdates.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Splits the given text into distinct lower-case words, ignoring any punctuation.
+     * @param text the text to split (may be null)
+     * @return the words in the text, in order
+     */
+    static Set<String> words(String text) {
+        if (text==null) {
+            return Set.of();
+        }
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Runs the given action once the current transaction commits; or immediately, if there is no transaction.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * The maps making up the index. These are guarded by the index's lock.
+     */
+    private static class Contents {
+        final Map<Integer, Entry> entries = new HashMap<>();
+        final NavigableMap<String, Set<Integer>> nameWords = new TreeMap<>();
+        final NavigableMap<String, Set<Integer>> descriptionWords = new TreeMap<>();
+
+        void put(Entry entry) {
+            remove(entry.id);
+            entries.put(entry.id, entry);
+            entry.nameWords.forEach(word -> nameWords.computeIfAbsent(word, k -> new HashSet<>()).add(entry.id));
+            entry.descriptionWords.forEach(word -> descriptionWords.computeIfAbsent(word, k -> new HashSet<>()).add(entry.id));
+        }
+
+        void remove(Integer id) {
+            Entry entry = entries.remove(id);
+            if (entry!=null) {
+                entry.nameWords.forEach(word -> removeWord(nameWords, word, id));
+                entry.descriptionWords.forEach(word -> removeWord(descriptionWords, word, id));
+            }
+        }
+
+        private static void removeWord(Map<String, Set<Integer>> words, String word, Integer id) {
+            Set<Integer> ids = words.get(word);
+            if (ids!=null && ids.remove(id) && ids.isEmpty()) {
+                words.remove(word);
+            }
+        }
+
+        /**
+         * Is the indicated location somewhere inside the other indicated location?
+         * This walks up through the parents recorded in the index.
+         */
+        boolean isInside(Integer id, Integer ancestorId) {
+            Entry entry = entries.get(id);
+            for (int depth = 0; entry!=null && entry.parentId!=null && depth < entries.size(); ++depth) {
+                if (entry.parentId.equals(ancestorId)) {
+                    return true;
+                }
+                entry = entries.get(entry.parentId);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The indexed information about one location
+     */
+    private static class Entry {
+        final Integer id;
+        final Integer parentId;
+        final Set<String> nameWords;
+        final Set<String> descriptionWords;
+
+        Entry(Integer id, Integer parentId, String name, String description) {
+            this.id = id;
+            this.parentId = parentId;
+            this.nameWords = words(name);
+            this.descriptionWords = words(description);
+        }
+
+        Entry(Location location) {
+            this(location.getId(), location.getParent()==null ? null : location.getParent().getId(),
+                    location.getName(), location.getDescription());
+        }
+    }
+}
@@ -6,14 +6,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.ac.sanger.storelight.graphql.StoreRequestContext;
 import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.ItemRepo;
+import uk.ac.sanger.storelight.repo.LocationDeletionRecordRepo;
 import uk.ac.sanger.storelight.repo.LocationRepo;
+import uk.ac.sanger.storelight.repo.RepoUtils;
 import uk.ac.sanger.storelight.repo.StoreDB;
+import uk.ac.sanger.storelight.requests.DeleteLocationResult;
+import uk.ac.sanger.storelight.requests.LocationEdit;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
 import uk.ac.sanger.storelight.requests.LocationInput;
+import uk.ac.sanger.storelight.requests.LocationLayout;
+import uk.ac.sanger.storelight.requests.LocationLookupResult;
+import uk.ac.sanger.storelight.requests.LocationMove;
 
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static uk.ac.sanger.storelight.repo.RepoUtils.findInChunks;
+import static uk.ac.sanger.storelight.repo.RepoUtils.runInChunks;
+import static uk.ac.sanger.storelight.repo.RepoUtils.sumInChunks;
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
+import static uk.ac.sanger.storelight.utils.BasicUtils.coalesce;
 import static uk.ac.sanger.storelight.utils.BasicUtils.pluralise;
 import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 
@@ -25,11 +41,60 @@ import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
 public class LocationService {
     private final Logger log = LoggerFactory.getLogger(LocationService.class);
 
+    /** The maximum number of locations that can be created from layouts in one request */
+    static final int MAX_LAYOUT_LOCATIONS = 10_000;
+    /** The maximum number of locations that can be looked up in one request */
+    static final int MAX_LOOKUP_LOCATIONS = RepoUtils.MAX_IN_SIZE;
+
     private final StoreDB db;
+    private final BarcodeAllocator barcodeAllocator;
+    private final UnstoreService unstoreService;
+    private final LocationSearchIndex searchIndex;
+    private final SubtreeCountService subtreeCountService;
 
     @Autowired
-    public LocationService(StoreDB db) {
+    public LocationService(StoreDB db, BarcodeAllocator barcodeAllocator, UnstoreService unstoreService,
+                           LocationSearchIndex searchIndex, SubtreeCountService subtreeCountService) {
         this.db = db;
+        this.barcodeAllocator = barcodeAllocator;
+        this.unstoreService = unstoreService;
+        this.searchIndex = searchIndex;
+        this.subtreeCountService = subtreeCountService;
+    }
+
+    /**
+     * Gets the locations for the given identifiers, in the same order.
+     * All the locations are loaded with at most one query by id and one by barcode.
+     * Identifiers that do not match a location give null in the list of locations, and are reported in the result,
+     * rather than failing the whole lookup.
+     * @param lis the identifiers of the locations
+     * @return the locations found, and the ids and barcodes that were not found
+     * @exception IllegalArgumentException if there are too many identifiers, or any identifier is empty
+     */
+    public LocationLookupResult lookUpLocations(List<LocationIdentifier> lis) {
+        if (lis.size() > MAX_LOOKUP_LOCATIONS) {
+            throw new IllegalArgumentException("Cannot look up more than "+MAX_LOOKUP_LOCATIONS+" locations at once.");
+        }
+        if (lis.stream().anyMatch(li -> li.getId()==null && li.getBarcode()==null)) {
+            throw new IllegalArgumentException("Missing location identifier.");
+        }
+        LocationCache cache = new LocationCache(db.getLocationRepo());
+        cache.lookUpExisting(lis.stream());
+        List<Location> locations = new ArrayList<>(lis.size());
+        Set<Integer> unknownIds = new LinkedHashSet<>();
+        Map<String, String> unknownBarcodes = new LinkedHashMap<>();
+        for (LocationIdentifier li : lis) {
+            Location loc = cache.get(li);
+            locations.add(loc);
+            if (loc==null) {
+                if (li.getId()!=null) {
+                    unknownIds.add(li.getId());
+                } else {
+                    unknownBarcodes.putIfAbsent(barcodeKey(li.getBarcode()), li.getBarcode());
+                }
+            }
+        }
+        return new LocationLookupResult(locations, new ArrayList<>(unknownIds), new ArrayList<>(unknownBarcodes.values()));
     }
 
     /**
@@ -71,13 +136,168 @@ public class LocationService {
                 throw new IllegalArgumentException("Location name is too long (max length: "+Location.MAX_NAME+").");
             }
         }
-        String barcode = db.getBarcodeSeedRepo().createStoreBarcode();
+        String barcode = barcodeAllocator.createStoreBarcode();
         Location loc = new Location(null, barcode, name, desc, parent, address, lin.getSize(), lin.getDirection());
+        loc.updatePathKey();
+        loc.updateQualifiedName();
         Location savedLoc = db.getLocationRepo().save(loc);
+        searchIndex.index(List.of(savedLoc));
         log.info("New location created {} by {}.", savedLoc, context);
         return savedLoc;
     }
 
+    /**
+     * Creates a tree of new locations from the given layouts, inside the given parent (if any).
+     * The whole tree is validated before anything is created, and the barcodes for the new locations
+     * are allocated together.
+     * @param context the request context
+     * @param parentId the id of the existing location to create the new locations in (may be null)
+     * @param layouts the layouts of the locations to create
+     * @return the new top-level locations (the rest are inside them)
+     * @exception IllegalArgumentException if the layouts are invalid
+     */
+    public List<Location> createLocations(StoreRequestContext context, Integer parentId, List<LocationLayout> layouts) {
+        requireNonNull(context, "Request context is null.");
+        if (layouts==null || layouts.isEmpty()) {
+            return List.of();
+        }
+        long numLocations = countLocations(layouts);
+        if (numLocations > MAX_LAYOUT_LOCATIONS) {
+            throw new IllegalArgumentException("Layout specifies too many locations (max "+MAX_LAYOUT_LOCATIONS+").");
+        }
+        Location parent = (parentId==null ? null : db.getLocationRepo().getById(parentId));
+        LayoutProblems problems = new LayoutProblems();
+        List<Location> newLocations = new ArrayList<>((int) numLocations);
+        List<Location> topLocations = planLayouts(parent, layouts, problems, newLocations);
+        problems.check();
+
+        List<String> barcodes = barcodeAllocator.createStoreBarcodes(newLocations.size());
+        for (int i = 0; i < newLocations.size(); ++i) {
+            Location loc = newLocations.get(i);
+            loc.setBarcode(barcodes.get(i));
+            loc.updatePathKey();
+            loc.updateQualifiedName();
+            if (loc.getParent()!=null) {
+                loc.getParent().getChildren().add(loc);
+            }
+        }
+        // Parents are listed before their children, so they are inserted first
+        db.getLocationRepo().saveAll(newLocations);
+        searchIndex.index(newLocations);
+        log.info("{} new locations created in {} by {}.", newLocations.size(),
+                parent==null ? null : parent.getBarcode(), context);
+        return topLocations;
+    }
+
+    /**
+     * Counts the locations specified by some layouts (stopping early if there are too many).
+     * Invalid repeat counts are counted as one.
+     */
+    static long countLocations(List<LocationLayout> layouts) {
+        long total = 0;
+        for (LocationLayout layout : layouts) {
+            long repeat = Math.max(1, coalesce(layout.getRepeat(), 1));
+            long each = 1;
+            if (layout.getChildren()!=null && !layout.getChildren().isEmpty()) {
+                each += countLocations(layout.getChildren());
+            }
+            total += repeat * each;
+            if (total > MAX_LAYOUT_LOCATIONS) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Makes (unsaved) locations for the given layouts inside the given parent, recording any problems.
+     * @param parent the parent of the new locations (may be null, or a new location)
+     * @param layouts the layouts for the new locations
+     * @param problems receptacle for problems
+     * @param newLocations receptacle for all the new locations, listed in order with parents before their children
+     * @return the new locations made directly inside the given parent
+     */
+    private List<Location> planLayouts(Location parent, List<LocationLayout> layouts, LayoutProblems problems,
+                                       List<Location> newLocations) {
+        Set<Address> usedAddresses = new HashSet<>();
+        if (parent!=null && parent.getId()!=null) {
+            for (Location child : parent.getChildren()) {
+                if (child.getAddress()!=null) {
+                    usedAddresses.add(child.getAddress());
+                }
+            }
+        }
+        List<Location> level = new ArrayList<>();
+        for (LocationLayout layout : layouts) {
+            int repeat = coalesce(layout.getRepeat(), 1);
+            if (repeat < 1) {
+                problems.add("Repeat count must be at least 1.");
+                continue;
+            }
+            String name = trimToNull(layout.getName());
+            String desc = trimToNull(layout.getDescription());
+            if (desc!=null && desc.length() > Location.MAX_DESCRIPTION) {
+                problems.add("Location description is too long (max length: "+Location.MAX_DESCRIPTION+").");
+            }
+            Address firstAddress = layout.getAddress();
+            Integer firstIndex = null;
+            if (firstAddress!=null) {
+                if (parent==null) {
+                    problems.add("A location with no parent cannot have an address.");
+                    firstAddress = null;
+                } else if (repeat > 1) {
+                    if (parent.getSize()==null || parent.getDirection()==null) {
+                        problems.add("Locations with an address can only be repeated inside a parent " +
+                                "with a size and direction.");
+                        firstAddress = null;
+                    } else {
+                        firstIndex = parent.addressIndex(firstAddress);
+                    }
+                }
+            }
+            for (int n = 1; n <= repeat; ++n) {
+                Address address = firstAddress;
+                if (n > 1 && firstIndex!=null) {
+                    address = parent.addressAt(firstIndex + n - 1);
+                    if (address==null) {
+                        problems.add("Not enough room in the parent for "+repeat+" locations starting at "
+                                +firstAddress+".");
+                        break;
+                    }
+                }
+                String repeatName = (name==null ? null : name.replace(LocationLayout.NUMBER_PLACEHOLDER, String.valueOf(n)));
+                if (repeatName!=null && repeatName.length() > Location.MAX_NAME) {
+                    problems.add("Location name is too long (max length: "+Location.MAX_NAME+").");
+                }
+                if (address!=null) {
+                    if (parent.getSize()!=null && !parent.getSize().contains(address)) {
+                        problems.outOfBounds.add(address);
+                    } else if (!usedAddresses.add(address)) {
+                        problems.occupied.add(address);
+                    }
+                }
+                Location loc = new Location(null, null, repeatName, desc, parent, address,
+                        layout.getSize(), layout.getDirection());
+                newLocations.add(loc);
+                level.add(loc);
+                if (layout.getChildren()!=null && !layout.getChildren().isEmpty()) {
+                    planLayouts(loc, layout.getChildren(), problems, newLocations);
+                }
+            }
+        }
+        return level;
+    }
+
+    private static String trimToNull(String string) {
+        if (string!=null) {
+            string = string.trim();
+            if (string.isEmpty()) {
+                string = null;
+            }
+        }
+        return string;
+    }
+
     /**
      * Updates some fields in a location.
      * Any fields that are given in the map with null value indicate that the field
@@ -92,6 +312,376 @@ public class LocationService {
         LocationRepo locRepo = db.getLocationRepo();
         Location location = locRepo.get(li);
         validateChanges(location, fields);
+        var ancestry = subtreeCountService.ancestry(fields.containsKey("parentId") ? List.of(location) : List.of());
+        boolean changed = applyChanges(location, fields, locRepo::getById);
+        if (changed) {
+            subtreeCountService.recordMoves(ancestry);
+            updatePaths(List.of(location));
+            location = locRepo.save(location);
+            searchIndex.index(List.of(location));
+            log.info("Location edited {} by {}.", location, context);
+        }
+        return location;
+    }
+
+    /**
+     * Updates several locations together.
+     * The changes are validated as a whole against the state the locations will be in once
+     * every change is made, so (for instance) two locations may swap addresses, or a location
+     * may move into an address that another location in the same request is moving out of.
+     * Nothing is changed if any problem is found.
+     * @param edits the changes to make, each to a different location
+     * @return the locations given, with their changes made, in the order given
+     * @exception IllegalArgumentException the requested changes were invalid
+     */
+    public List<Location> editLocations(StoreRequestContext context, List<LocationEdit> edits) {
+        requireNonNull(context, "Request context is null.");
+        if (edits.isEmpty()) {
+            return List.of();
+        }
+        List<Location> targets = loadDistinctLocations(edits.stream().map(LocationEdit::getLocation));
+        Map<Integer, Map<String, ?>> changes = new HashMap<>(edits.size());
+        for (int i = 0; i < edits.size(); ++i) {
+            Map<String, ?> change = edits.get(i).getChange();
+            changes.put(targets.get(i).getId(), change==null ? Map.of() : change);
+        }
+        makeEdits(context, targets, changes);
+        return targets;
+    }
+
+    /**
+     * Moves some of the locations inside a parent to new addresses inside it.
+     * The moves are validated together against the final layout of the parent, so (for instance) locations
+     * may swap addresses, or move into addresses vacated by other moves.
+     * Nothing is changed if any problem is found.
+     * @param parentLi the identifier of the parent location
+     * @param moves the locations to move, and their new addresses
+     * @return the parent location
+     * @exception IllegalArgumentException the requested moves were invalid
+     */
+    public Location rearrange(StoreRequestContext context, LocationIdentifier parentLi, List<LocationMove> moves) {
+        requireNonNull(context, "Request context is null.");
+        Location parent = db.getLocationRepo().get(parentLi);
+        if (moves.isEmpty()) {
+            return parent;
+        }
+        List<Location> targets = loadDistinctLocations(moves.stream().map(LocationMove::getLocation));
+        Set<String> strangers = new LinkedHashSet<>();
+        Map<Integer, Map<String, ?>> changes = new HashMap<>(moves.size());
+        for (int i = 0; i < moves.size(); ++i) {
+            Location location = targets.get(i);
+            if (location.getParent()==null || !location.getParent().getId().equals(parent.getId())) {
+                strangers.add(location.getBarcode());
+            }
+            changes.put(location.getId(), Collections.singletonMap("address", moves.get(i).getAddress()));
+        }
+        if (!strangers.isEmpty()) {
+            throw new IllegalArgumentException(pluralise("Location{s}", strangers.size()) + " not inside "
+                    + parent.getBarcode() + ": " + strangers + ".");
+        }
+        makeEdits(context, targets, changes);
+        return parent;
+    }
+
+    /**
+     * Looks up the locations for the given identifiers.
+     * @param lis the identifiers of the locations
+     * @return the locations, corresponding to the given identifiers
+     * @exception IllegalArgumentException if any identifier is missing or unknown, or any location is repeated
+     */
+    private List<Location> loadDistinctLocations(Stream<LocationIdentifier> lis) {
+        List<LocationIdentifier> liList = lis.collect(toList());
+        for (LocationIdentifier li : liList) {
+            if (li==null || !li.isSpecified()) {
+                throw new IllegalArgumentException("No identifier given for location.");
+            }
+        }
+        LocationCache cache = new LocationCache(db.getLocationRepo());
+        cache.lookUp(liList.stream());
+        List<Location> locations = new ArrayList<>(liList.size());
+        Set<Integer> ids = new HashSet<>(liList.size());
+        Set<String> repeated = new LinkedHashSet<>();
+        for (LocationIdentifier li : liList) {
+            Location location = cache.get(li);
+            if (!ids.add(location.getId())) {
+                repeated.add(location.getBarcode());
+            }
+            locations.add(location);
+        }
+        if (!repeated.isEmpty()) {
+            throw new IllegalArgumentException(pluralise("Location{s} given more than once: ", repeated.size())
+                    + repeated + ".");
+        }
+        return locations;
+    }
+
+    /**
+     * Validates and makes changes to locations, saving the locations that are changed.
+     * @param targets the locations to change
+     * @param changes the change for each location, mapped from the location id
+     * @exception IllegalArgumentException the requested changes were invalid
+     */
+    private void makeEdits(StoreRequestContext context, List<Location> targets, Map<Integer, Map<String, ?>> changes) {
+        Map<Integer, Location> targetMap = new LinkedHashMap<>(targets.size());
+        targets.forEach(loc -> targetMap.put(loc.getId(), loc));
+        Map<Integer, Location> locations = validateEdits(targetMap, changes);
+        var ancestry = subtreeCountService.ancestry(targets.stream()
+                .filter(loc -> changes.get(loc.getId()).containsKey("parentId"))
+                .collect(toList()));
+        List<Location> changed = new ArrayList<>();
+        for (Location location : targets) {
+            if (applyChanges(location, changes.get(location.getId()), locations::get)) {
+                changed.add(location);
+            }
+        }
+        if (!changed.isEmpty()) {
+            subtreeCountService.recordMoves(ancestry);
+            updatePaths(changed);
+            db.getLocationRepo().saveAll(changed);
+            searchIndex.index(changed);
+            log.info("Locations edited {} by {}.", changed, context);
+        }
+    }
+
+    /**
+     * Updates the path keys and qualified names of the given locations, and of the locations inside any of them
+     * whose path key or qualified name changes.
+     * Only the subtrees whose paths have actually changed are loaded, one level at a time.
+     * @param locations the locations that may have been renamed or moved
+     */
+    private void updatePaths(Collection<Location> locations) {
+        List<Location> level = locations.stream().filter(LocationService::updatePath).collect(toList());
+        while (!level.isEmpty()) {
+            List<Integer> ids = level.stream().map(Location::getId).collect(toList());
+            level = findInChunks(ids, db.getLocationRepo()::findAllByParentIdIn).stream()
+                    .filter(LocationService::updatePath)
+                    .collect(toList());
+        }
+    }
+
+    /**
+     * Updates the path key and qualified name of the given location from its parent.
+     * @return true if either has changed
+     */
+    private static boolean updatePath(Location location) {
+        boolean changed = location.updatePathKey();
+        return location.updateQualifiedName() || changed;
+    }
+
+    /**
+     * Checks a set of requested changes to locations for problems.
+     * Each change is checked in isolation, and then the locations are checked in their final state:
+     * no location may end up inside itself, and no two locations may end up at the same address
+     * in the same parent.
+     * @param targets the locations to change, mapped from their ids
+     * @param changes the change for each location, mapped from the location id
+     * @return a map of all the locations loaded (the targets and their new parents) from their ids
+     * @exception IllegalArgumentException any detected problems
+     */
+    private Map<Integer, Location> validateEdits(Map<Integer, Location> targets, Map<Integer, Map<String, ?>> changes) {
+        Set<String> invalidFields = new TreeSet<>();
+        Set<String> problems = new LinkedHashSet<>();
+        Set<Integer> parentIds = new LinkedHashSet<>();
+        for (Location location : targets.values()) {
+            Set<String> locationProblems = new LinkedHashSet<>();
+            for (var entry : changes.get(location.getId()).entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (key.equals("parentId")) {
+                    if (value instanceof Integer) {
+                        parentIds.add((Integer) value);
+                    } else if (value!=null) {
+                        locationProblems.add(fieldTypeError("parentId", "an integer", value));
+                    }
+                } else if (key.equals("address")) {
+                    if (value!=null && !(value instanceof Address)) {
+                        locationProblems.add(fieldTypeError("address", "an address", value));
+                    }
+                } else if (!checkIndependentField(key, value, locationProblems)) {
+                    invalidFields.add(key);
+                }
+            }
+            for (String problem : locationProblems) {
+                problems.add(location.getBarcode()+": "+problem);
+            }
+        }
+        Map<Integer, Location> locations = new HashMap<>(targets);
+        parentIds.removeAll(locations.keySet());
+        if (!parentIds.isEmpty()) {
+            db.getLocationRepo().findAllById(parentIds).forEach(loc -> locations.put(loc.getId(), loc));
+            parentIds.removeAll(locations.keySet());
+            if (!parentIds.isEmpty()) {
+                problems.add(pluralise("Invalid parent id{s}: ", parentIds.size()) + parentIds + ".");
+            }
+        }
+        checkProblems(invalidFields, problems);
+
+        EditedState state = new EditedState(locations, changes);
+        checkEditedCycles(targets.values(), state, problems);
+        checkEditedAddresses(targets, state, problems);
+        checkProblems(invalidFields, problems);
+        return locations;
+    }
+
+    /**
+     * Checks that no location would end up inside itself.
+     * Each location whose parent is changed is followed up through its final ancestors until it reaches
+     * either a root or a location already visited. Since any cycle must include a location whose
+     * parent is changed, this finds them all, and each location is visited at most once.
+     */
+    private static void checkEditedCycles(Collection<Location> targets, EditedState state, Collection<String> problems) {
+        Set<Integer> reachesRoot = new HashSet<>();
+        Set<Integer> reachesCycle = new HashSet<>();
+        Set<String> cycleBarcodes = new LinkedHashSet<>();
+        for (Location location : targets) {
+            if (!state.changesParent(location)) {
+                continue;
+            }
+            List<Location> path = new ArrayList<>();
+            Map<Integer, Integer> pathIndex = new HashMap<>();
+            Location cur = location;
+            boolean cycle = false;
+            while (cur!=null && !reachesRoot.contains(cur.getId())) {
+                if (reachesCycle.contains(cur.getId())) {
+                    cycle = true;
+                    break;
+                }
+                Integer index = pathIndex.putIfAbsent(cur.getId(), path.size());
+                if (index!=null) {
+                    path.subList(index, path.size()).forEach(loc -> cycleBarcodes.add(loc.getBarcode()));
+                    cycle = true;
+                    break;
+                }
+                path.add(cur);
+                cur = state.parent(cur);
+            }
+            (cycle ? reachesCycle : reachesRoot).addAll(pathIndex.keySet());
+        }
+        if (!cycleBarcodes.isEmpty()) {
+            problems.add(pluralise("Location{s} would be inside {itself|themselves}: ", cycleBarcodes.size())
+                    + cycleBarcodes + ".");
+        }
+    }
+
+    /**
+     * Checks the final addresses of the changed locations.
+     * Every parent that will have a changed location at an address is checked for collisions using
+     * its existing children (loaded in one query) and the final state of the changed locations.
+     */
+    private void checkEditedAddresses(Map<Integer, Location> targets, EditedState state, Collection<String> problems) {
+        Map<Integer, Location> parents = new LinkedHashMap<>();
+        for (Location location : targets.values()) {
+            if (!state.changesParent(location) && !state.changes(location).containsKey("address")) {
+                continue;
+            }
+            Address address = state.address(location);
+            if (address==null) {
+                continue;
+            }
+            Location parent = state.parent(location);
+            if (parent==null) {
+                problems.add(location.getBarcode()+": A location without a parent cannot have an address.");
+            } else {
+                parents.put(parent.getId(), parent);
+            }
+        }
+        if (parents.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<Address, List<Location>>> occupancy = new HashMap<>(parents.size());
+        for (Location child : db.getLocationRepo().findAllByParentIdIn(parents.keySet())) {
+            if (child.getAddress()!=null && !targets.containsKey(child.getId())) {
+                occupancy.computeIfAbsent(child.getParent().getId(), k -> new HashMap<>())
+                        .computeIfAbsent(child.getAddress(), k -> new ArrayList<>())
+                        .add(child);
+            }
+        }
+        for (Location location : targets.values()) {
+            Address address = state.address(location);
+            Location parent = state.parent(location);
+            if (address!=null && parent!=null && parents.containsKey(parent.getId())) {
+                occupancy.computeIfAbsent(parent.getId(), k -> new HashMap<>())
+                        .computeIfAbsent(address, k -> new ArrayList<>())
+                        .add(location);
+            }
+        }
+        for (Location parent : parents.values()) {
+            Size size = state.size(parent);
+            Set<Address> collisions = new TreeSet<>();
+            for (var entry : occupancy.get(parent.getId()).entrySet()) {
+                Address address = entry.getKey();
+                List<Location> occupants = entry.getValue();
+                if (size!=null && !size.contains(address)) {
+                    for (Location occupant : occupants) {
+                        if (targets.containsKey(occupant.getId())) {
+                            problems.add(occupant.getBarcode()+": "+String.format(
+                                    "Address %s is out of bounds for the specified parent.", address));
+                        }
+                    }
+                }
+                if (occupants.size() > 1) {
+                    collisions.add(address);
+                }
+            }
+            if (!collisions.isEmpty()) {
+                problems.add(pluralise("Address{es}", collisions.size()) + " used by more than one location in "
+                        + parent.getBarcode() + ": " + collisions + ".");
+            }
+        }
+    }
+
+    /**
+     * Deletes a location and all the locations inside it, at any depth.
+     * The subtree is found by id a level at a time, and the locations are deleted a level at a time
+     * from the bottom up with set-based statements, so they are never loaded as entities.
+     * If anything is stored anywhere in the subtree, the request is refused unless {@code unstore} is true,
+     * in which case the items are unstored (and the unstores recorded) first.
+     * The deletion of each location is recorded with its id, barcode, name and parent id.
+     * @param context the request context
+     * @param li the identifier of the location at the top of the subtree
+     * @param unstore whether to unstore any items in the subtree, rather than refusing the request
+     * @return a summary of the deletion
+     * @exception IllegalArgumentException if items are stored in the subtree and {@code unstore} is false
+     */
+    public DeleteLocationResult deleteLocation(StoreRequestContext context, LocationIdentifier li, boolean unstore) {
+        requireNonNull(context, "Request context is null.");
+        LocationRepo locRepo = db.getLocationRepo();
+        Location location = locRepo.get(li);
+        List<List<Integer>> levels = locRepo.findSubtreeLevels(location.getId());
+        List<Integer> locationIds = new ArrayList<>();
+        levels.forEach(locationIds::addAll);
+        final int numUnstored;
+        if (unstore) {
+            numUnstored = unstoreService.unstoreInLocations(context, locationIds);
+        } else {
+            ItemRepo itemRepo = db.getItemRepo();
+            int numItems = sumInChunks(locationIds, ids -> (int) itemRepo.countByLocationIdIn(ids));
+            if (numItems > 0) {
+                throw new IllegalArgumentException(String.format("Cannot delete location %s: %s", location.getBarcode(),
+                        pluralise("{an|#} item{s} {is|are} stored inside it.", numItems)));
+            }
+            numUnstored = 0;
+        }
+        subtreeCountService.recordDeleted(locationIds);
+        LocationDeletionRecordRepo deletionRecordRepo = db.getLocationDeletionRecordRepo();
+        runInChunks(locationIds, ids -> deletionRecordRepo.recordDeletions(ids, context.getUsername(), context.getApp()));
+        for (int i = levels.size() - 1; i >= 0; --i) {
+            runInChunks(levels.get(i), locRepo::bulkDeleteByIdIn);
+        }
+        searchIndex.remove(locationIds);
+        log.info("Location {} deleted with {} locations inside it by {}.", location, locationIds.size() - 1, context);
+        return new DeleteLocationResult(locationIds.size(), numUnstored);
+    }
+
+    /**
+     * Applies (already validated) changes to a location.
+     * @param location the location to update
+     * @param fields a map of the fields to update
+     * @param parentLookup function to get a location from its id
+     * @return true if the location was changed
+     */
+    private static boolean applyChanges(Location location, Map<String, ?> fields,
+                                        Function<Integer, Location> parentLookup) {
         boolean changed = false;
         for (var entry : fields.entrySet()) {
             switch (entry.getKey()) {
@@ -131,7 +721,7 @@ public class LocationService {
                         if (parentId==null) {
                             location.setParent(null);
                         } else {
-                            location.setParent(locRepo.getById(parentId));
+                            location.setParent(parentLookup.apply(parentId));
                         }
                     }
                     break;
@@ -172,11 +762,7 @@ public class LocationService {
                 }
             }
         }
-        if (changed) {
-            location = locRepo.save(location);
-            log.info("Location edited {} by {}.", location, context);
-        }
-        return location;
+        return changed;
     }
 
     /**
@@ -200,36 +786,6 @@ public class LocationService {
             String key = entry.getKey();
             Object value = entry.getValue();
             switch (key) {
-                case "description": {
-                    if (value==null) {
-                        break;
-                    }
-                    if (!(value instanceof String)) {
-                        problems.add(fieldTypeError("description", "a string", value));
-                        break;
-                    }
-                    int len = ((String) value).trim().length();
-                    if (len > Location.MAX_DESCRIPTION) {
-                        problems.add(String.format("Description too long (%s). Max length is %s.", len, Location.MAX_DESCRIPTION));
-                    }
-                    break;
-                }
-
-                case "name": {
-                    if (value==null) {
-                        break;
-                    }
-                    if (!(value instanceof String)) {
-                        problems.add(fieldTypeError("name", "a string", value));
-                        break;
-                    }
-                    int len = ((String) value).trim().length();
-                    if (len > Location.MAX_NAME) {
-                        problems.add(String.format("Name too long (%s). Max length is %s.", len, Location.MAX_NAME));
-                    }
-                    break;
-                }
-
                 case "parentId": {
                     newParent = true;
                     if (value==null) {
@@ -270,44 +826,10 @@ public class LocationService {
                     break;
                 }
 
-                case "size": {
-                    if (value==null) {
-                        continue;
-                    }
-                    if (!(value instanceof Map)) {
-                        problems.add(fieldTypeError("size", "a mapping of numRows and numColumns", value));
-                        break;
-                    }
-                    Map<?, ?> map = (Map<?,?>) value;
-                    if (map.size()!=2 || !(map.get("numColumns") instanceof Integer) || !(map.get("numRows") instanceof Integer)) {
-                        problems.add("Received size with invalid contents.");
-                        break;
-                    }
-                    if ((Integer) (map.get("numColumns")) < 1 || (Integer) map.get("numRows") < 1) {
-                        problems.add("Fields in size must be greater than zero.");
-                        break;
-                    }
-                    break;
-                }
-
-                case "direction": {
-                    if (value==null) {
-                        continue;
-                    }
-                    if (value instanceof String) {
-                        try {
-                            GridDirection.valueOf((String) value);
-                        } catch (IllegalArgumentException e) {
-                            problems.add("Invalid grid direction: "+repr(value));
-                        }
-                    } else if (!(value instanceof GridDirection)) {
-                        problems.add(fieldTypeError("direction", "a grid direction", value));
-                    }
-                    break;
-                }
-
                 default:
-                    invalidFields.add(key);
+                    if (!checkIndependentField(key, value, problems)) {
+                        invalidFields.add(key);
+                    }
             }
         }
         if ((newAddress || newParent) && !parentError) {
@@ -329,6 +851,16 @@ public class LocationService {
             }
         }
 
+        checkProblems(invalidFields, problems);
+    }
+
+    /**
+     * Throws an exception describing the given problems, if there are any.
+     * @param invalidFields unrecognised fields found in requested changes
+     * @param problems other problems found
+     * @exception IllegalArgumentException if there are any invalid fields or problems
+     */
+    private static void checkProblems(Collection<String> invalidFields, Collection<String> problems) {
         if (problems.isEmpty() && invalidFields.isEmpty()) {
             return;
         }
@@ -344,6 +876,87 @@ public class LocationService {
         throw new IllegalArgumentException(joinedProblems);
     }
 
+    /**
+     * Checks a change to a field that can be validated without looking at any other location.
+     * @param key the name of the field
+     * @param value the new value for the field
+     * @param problems receptacle for problems found
+     * @return true if the field is one of the independent fields; false if it is not
+     */
+    private static boolean checkIndependentField(String key, Object value, Collection<String> problems) {
+        switch (key) {
+            case "description": {
+                if (value==null) {
+                    break;
+                }
+                if (!(value instanceof String)) {
+                    problems.add(fieldTypeError("description", "a string", value));
+                    break;
+                }
+                int len = ((String) value).trim().length();
+                if (len > Location.MAX_DESCRIPTION) {
+                    problems.add(String.format("Description too long (%s). Max length is %s.", len, Location.MAX_DESCRIPTION));
+                }
+                break;
+            }
+
+            case "name": {
+                if (value==null) {
+                    break;
+                }
+                if (!(value instanceof String)) {
+                    problems.add(fieldTypeError("name", "a string", value));
+                    break;
+                }
+                int len = ((String) value).trim().length();
+                if (len > Location.MAX_NAME) {
+                    problems.add(String.format("Name too long (%s). Max length is %s.", len, Location.MAX_NAME));
+                }
+                break;
+            }
+
+            case "size": {
+                if (value==null) {
+                    break;
+                }
+                if (!(value instanceof Map)) {
+                    problems.add(fieldTypeError("size", "a mapping of numRows and numColumns", value));
+                    break;
+                }
+                Map<?, ?> map = (Map<?,?>) value;
+                if (map.size()!=2 || !(map.get("numColumns") instanceof Integer) || !(map.get("numRows") instanceof Integer)) {
+                    problems.add("Received size with invalid contents.");
+                    break;
+                }
+                if ((Integer) (map.get("numColumns")) < 1 || (Integer) map.get("numRows") < 1) {
+                    problems.add("Fields in size must be greater than zero.");
+                    break;
+                }
+                break;
+            }
+
+            case "direction": {
+                if (value==null) {
+                    break;
+                }
+                if (value instanceof String) {
+                    try {
+                        GridDirection.valueOf((String) value);
+                    } catch (IllegalArgumentException e) {
+                        problems.add("Invalid grid direction: "+repr(value));
+                    }
+                } else if (!(value instanceof GridDirection)) {
+                    problems.add(fieldTypeError("direction", "a grid direction", value));
+                }
+                break;
+            }
+
+            default:
+                return false;
+        }
+        return true;
+    }
+
     private static String fieldTypeError(String name, String expected, Object actual) {
         return String.format("Require %s to be %s, but received %s.", name, expected, actual.getClass().getName());
     }
@@ -389,4 +1002,79 @@ public class LocationService {
         }
         return null;
     }
+
+    /**
+     * Problems found in requested layouts
+     */
+    private static class LayoutProblems {
+        final Set<String> problems = new LinkedHashSet<>();
+        final Set<Address> outOfBounds = new LinkedHashSet<>();
+        final Set<Address> occupied = new LinkedHashSet<>();
+
+        void add(String problem) {
+            problems.add(problem);
+        }
+
+        /**
+         * @exception IllegalArgumentException if any problems have been found
+         */
+        void check() {
+            if (!outOfBounds.isEmpty()) {
+                problems.add(pluralise("Address{es} outside the listed size of the parent: ", outOfBounds.size())
+                        + outOfBounds + ".");
+            }
+            if (!occupied.isEmpty()) {
+                problems.add(pluralise("Address{es} already used in the parent: ", occupied.size())
+                        + occupied + ".");
+            }
+            if (!problems.isEmpty()) {
+                throw new IllegalArgumentException(String.join(" ", problems));
+            }
+        }
+    }
+
+    /**
+     * The state that locations will be in once validated changes are made.
+     */
+    private static class EditedState {
+        final Map<Integer, Location> locations;
+        final Map<Integer, Map<String, ?>> changes;
+
+        EditedState(Map<Integer, Location> locations, Map<Integer, Map<String, ?>> changes) {
+            this.locations = locations;
+            this.changes = changes;
+        }
+
+        Map<String, ?> changes(Location location) {
+            Map<String, ?> change = changes.get(location.getId());
+            return (change==null ? Map.of() : change);
+        }
+
+        boolean changesParent(Location location) {
+            return changes(location).containsKey("parentId");
+        }
+
+        Location parent(Location location) {
+            Map<String, ?> change = changes(location);
+            if (change.containsKey("parentId")) {
+                Integer parentId = (Integer) change.get("parentId");
+                return (parentId==null ? null : locations.get(parentId));
+            }
+            return location.getParent();
+        }
+
+        Address address(Location location) {
+            Map<String, ?> change = changes(location);
+            return (change.containsKey("address") ? (Address) change.get("address") : location.getAddress());
+        }
+
+        Size size(Location location) {
+            Map<String, ?> change = changes(location);
+            if (change.containsKey("size")) {
+                Map<?, ?> sizeMap = (Map<?, ?>) change.get("size");
+                return (sizeMap==null ? null : new Size((Integer) sizeMap.get("numRows"), (Integer) sizeMap.get("numColumns")));
+            }
+            return location.getSize();
+        }
+    }
 }
@@ -0,0 +1,196 @@
+package uk.ac.sanger.storelight.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.*;
+import uk.ac.sanger.storelight.utils.BasicUtils;
+import uk.ac.sanger.storelight.utils.CIStringSet;
+
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+import static uk.ac.sanger.storelight.repo.RepoUtils.findInChunks;
+import static uk.ac.sanger.storelight.utils.BasicUtils.*;
+
+/**
+ * Service for comparing a scan of the contents of a location with what is recorded as stored there.
+ * <p>What is recorded is read with one projection query over the ids of the reconciled locations
+ * (in chunks, if there are very many), so the items are never loaded as entities; only the scanned
+ * items that are not where they were expected are looked up individually.
+ * @author dr6
+ */
+@Service
+public class ReconcileService {
+    private final StoreDB db;
+
+    @Autowired
+    public ReconcileService(StoreDB db) {
+        this.db = db;
+    }
+
+    /**
+     * Compares the scanned items with what is recorded as stored in the indicated location.
+     * <p>Each scanned item may specify the location it was scanned in; if it does not, it was scanned in the
+     * indicated location. If {@code recursive} is true, the items in every location inside the indicated
+     * location (e.g. each box in a rack) are included, and items may be scanned in any of those locations.
+     * <p>An item is matched if it was scanned in the location where it is recorded, and at the same address
+     * (unless no address was given for the scan). Otherwise it is missing (recorded but not scanned),
+     * unexpected (scanned but not recorded in any of the reconciled locations) or misplaced (scanned in a
+     * different location or address from where it is recorded in the reconciled locations).
+     * Barcodes are matched case-insensitively.
+     * @param li the location to reconcile
+     * @param scanned the scanned items
+     * @param recursive whether to include every location inside the indicated location
+     * @return the differences between the scan and what is recorded
+     * @exception javax.persistence.EntityNotFoundException if the location does not exist
+     * @exception IllegalArgumentException if the scanned items are invalid
+     */
+    public ReconcileResult reconcile(LocationIdentifier li, List<StoreInput> scanned, boolean recursive) {
+        LocationRepo locRepo = db.getLocationRepo();
+        Location root = locRepo.get(li);
+        List<Integer> scopeIds = (recursive ? locRepo.findSubtreeIds(root.getId()) : List.of(root.getId()));
+        LocationCache locationCache = new LocationCache(locRepo);
+        locationCache.cache(root);
+        locationCache.lookUp(scanned.stream().map(StoreInput::getLocation).filter(Objects::nonNull));
+        List<Location> scanLocations = scanned.stream()
+                .map(sin -> sin.getLocation()==null ? root : locationCache.get(sin.getLocation()))
+                .collect(toList());
+        checkScan(root, scanned, scanLocations, scopeIds);
+
+        Map<String, StoredPosition> expected = new HashMap<>();
+        for (Object[] row : findInChunks(scopeIds, db.getItemRepo()::findItemPositionsInLocations)) {
+            StoredPosition pos = new StoredPosition((Integer) row[0], (Integer) row[1], (Integer) row[2], (String) row[3]);
+            expected.put(barcodeKey(pos.barcode), pos);
+        }
+        final int numExpected = expected.size();
+        int numMatched = 0;
+        List<StoredPosition> misplacedPositions = new ArrayList<>();
+        List<Integer> misplacedIndexes = new ArrayList<>();
+        List<Integer> unexpectedIndexes = new ArrayList<>();
+        for (int i = 0; i < scanned.size(); ++i) {
+            StoreInput sin = scanned.get(i);
+            StoredPosition pos = expected.remove(barcodeKey(sin.getBarcode()));
+            if (pos==null) {
+                unexpectedIndexes.add(i);
+            } else if (pos.locationId.equals(scanLocations.get(i).getId())
+                    && (sin.getAddress()==null || sin.getAddress().equals(pos.address))) {
+                ++numMatched;
+            } else {
+                misplacedPositions.add(pos);
+                misplacedIndexes.add(i);
+            }
+        }
+        Map<String, Item> storedElsewhere = new HashMap<>();
+        if (!unexpectedIndexes.isEmpty()) {
+            List<String> unexpectedBarcodes = unexpectedIndexes.stream()
+                    .map(i -> scanned.get(i).getBarcode())
+                    .collect(toList());
+            db.getItemRepo().findAllByBarcodeIn(unexpectedBarcodes)
+                    .forEach(item -> storedElsewhere.put(barcodeKey(item.getBarcode()), item));
+        }
+
+        Map<Integer, Integer> scopeOrder = new HashMap<>(scopeIds.size());
+        for (Integer id : scopeIds) {
+            scopeOrder.put(id, scopeOrder.size());
+        }
+        List<StoredPosition> missingPositions = new ArrayList<>(expected.values());
+        missingPositions.sort(Comparator.<StoredPosition>comparingInt(pos -> scopeOrder.get(pos.locationId))
+                .thenComparing(pos -> pos.address, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(pos -> pos.barcode));
+        Map<Integer, Location> expectedLocations = loadLocations(root, missingPositions, misplacedPositions);
+
+        List<ScanDiscrepancy> missing = missingPositions.stream()
+                .map(pos -> new ScanDiscrepancy(pos.barcode, expectedLocations.get(pos.locationId), pos.address, null, null))
+                .collect(toList());
+        List<ScanDiscrepancy> misplaced = new ArrayList<>(misplacedIndexes.size());
+        for (int j = 0; j < misplacedIndexes.size(); ++j) {
+            int i = misplacedIndexes.get(j);
+            StoredPosition pos = misplacedPositions.get(j);
+            StoreInput sin = scanned.get(i);
+            misplaced.add(new ScanDiscrepancy(pos.barcode, expectedLocations.get(pos.locationId), pos.address,
+                    scanLocations.get(i), sin.getAddress()));
+        }
+        List<ScanDiscrepancy> unexpected = new ArrayList<>(unexpectedIndexes.size());
+        for (int i : unexpectedIndexes) {
+            StoreInput sin = scanned.get(i);
+            Item item = storedElsewhere.get(barcodeKey(sin.getBarcode()));
+            if (item==null) {
+                unexpected.add(new ScanDiscrepancy(sin.getBarcode(), null, null, scanLocations.get(i), sin.getAddress()));
+            } else {
+                unexpected.add(new ScanDiscrepancy(item.getBarcode(), item.getLocation(), item.getAddress(),
+                        scanLocations.get(i), sin.getAddress()));
+            }
+        }
+        return new ReconcileResult(scanned.size(), numExpected, numMatched, missing, unexpected, misplaced);
+    }
+
+    /**
+     * Checks that the scanned barcodes are present and distinct, and that they were scanned in locations
+     * being reconciled.
+     * @exception IllegalArgumentException if there is a problem with the scan
+     */
+    private static void checkScan(Location root, List<StoreInput> scanned, List<Location> scanLocations,
+                                  Collection<Integer> scopeIds) {
+        CIStringSet seen = new CIStringSet(scanned.size());
+        Set<String> repeated = new CIStringSet();
+        for (StoreInput sin : scanned) {
+            String barcode = sin.getBarcode();
+            if (barcode==null || barcode.isEmpty()) {
+                throw new IllegalArgumentException("Missing barcode in scan.");
+            }
+            if (!seen.add(barcode)) {
+                repeated.add(barcode);
+            }
+        }
+        if (!repeated.isEmpty()) {
+            throw new IllegalArgumentException(pluralise("Barcode{s} scanned more than once: ", repeated.size())
+                    + repeated.stream().map(BasicUtils::repr).collect(toList()) + ".");
+        }
+        Set<Integer> scope = new HashSet<>(scopeIds);
+        Set<String> outside = new LinkedHashSet<>();
+        for (Location loc : scanLocations) {
+            if (!scope.contains(loc.getId())) {
+                outside.add(loc.getBarcode());
+            }
+        }
+        if (!outside.isEmpty()) {
+            throw new IllegalArgumentException(pluralise("Location{s} not inside "+root.getBarcode()+": ", outside.size())
+                    + outside + ".");
+        }
+    }
+
+    /**
+     * Loads the locations where the given positions are recorded, by id.
+     * The root location is not loaded again.
+     */
+    private Map<Integer, Location> loadLocations(Location root, Collection<StoredPosition> missing,
+                                                 Collection<StoredPosition> misplaced) {
+        Map<Integer, Location> locations = new HashMap<>();
+        locations.put(root.getId(), root);
+        Set<Integer> ids = new HashSet<>();
+        missing.forEach(pos -> ids.add(pos.locationId));
+        misplaced.forEach(pos -> ids.add(pos.locationId));
+        ids.remove(root.getId());
+        if (!ids.isEmpty()) {
+            db.getLocationRepo().findAllById(ids).forEach(loc -> locations.put(loc.getId(), loc));
+        }
+        return locations;
+    }
+
+    /**
+     * Where an item is recorded as stored
+     */
+    private static class StoredPosition {
+        final Integer locationId;
+        final Address address;
+        final String barcode;
+
+        StoredPosition(Integer locationId, Integer row, Integer column, String barcode) {
+            this.locationId = locationId;
+            this.address = (row==null ? null : new Address(row, column));
+            this.barcode = barcode;
+        }
+    }
+}
@@ -5,6 +5,8 @@ import uk.ac.sanger.storelight.model.*;
 import uk.ac.sanger.storelight.utils.CIStringSet;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toMap;
 import static uk.ac.sanger.storelight.utils.BasicUtils.pluralise;
@@ -43,6 +45,71 @@ public class StoreAddressChecker {
                 }
             }
         }
+        checkProblems(repeated, outOfBounds, occupied);
+    }
+
+    /**
+     * Checks items that have already been grouped by location, using a precomputed map of what is stored
+     * at each address in each location. The groups are checked in parallel in the given pool,
+     * and any problems are reported in order.
+     * @param partitions the items to store, grouped by location
+     * @param occupants map from location id to a map of address to the barcode of the item stored there
+     * @param barcodes the barcodes of the items being stored
+     * @param pool the pool used to check the groups
+     * @exception IllegalArgumentException if any problems are found
+     */
+    public void checkPartitions(Collection<? extends List<Item>> partitions,
+                                Map<Integer, Map<Address, String>> occupants,
+                                CIStringSet barcodes, ForkJoinPool pool) {
+        final List<List<Item>> parts = new ArrayList<>(partitions);
+        final PartitionProblems[] results = new PartitionProblems[parts.size()];
+        pool.submit(() -> IntStream.range(0, results.length).parallel().forEach(i -> {
+            List<Item> part = parts.get(i);
+            Map<Address, String> partOccupants = (part.isEmpty() ? null : occupants.get(part.get(0).getLocation().getId()));
+            results[i] = checkPartition(part, partOccupants, barcodes);
+        })).join();
+        Set<Destination> repeated = new LinkedHashSet<>();
+        Set<Destination> outOfBounds = new LinkedHashSet<>();
+        Set<Destination> occupied = new LinkedHashSet<>();
+        for (PartitionProblems result : results) {
+            repeated.addAll(result.repeated);
+            outOfBounds.addAll(result.outOfBounds);
+            occupied.addAll(result.occupied);
+        }
+        checkProblems(repeated, outOfBounds, occupied);
+    }
+
+    /**
+     * Checks items that are all being stored in the same location.
+     * This does not access the database, so it is safe to call from any thread.
+     */
+    private static PartitionProblems checkPartition(List<Item> items, Map<Address, String> occupants,
+                                                    CIStringSet barcodes) {
+        PartitionProblems problems = new PartitionProblems();
+        Set<Address> seen = new HashSet<>();
+        for (Item item : items) {
+            Address address = item.getAddress();
+            if (address==null) {
+                continue;
+            }
+            Location location = item.getLocation();
+            Destination destination = new Destination(location, address);
+            if (!seen.add(address)) {
+                problems.repeated.add(destination);
+            } else if (location.getSize()!=null && !location.getSize().contains(address)) {
+                problems.outOfBounds.add(destination);
+            } else if (occupants!=null) {
+                String occupant = occupants.get(address);
+                if (occupant!=null && !barcodes.contains(occupant)) {
+                    problems.occupied.add(destination);
+                }
+            }
+        }
+        return problems;
+    }
+
+    private static void checkProblems(Set<Destination> repeated, Set<Destination> outOfBounds,
+                                      Set<Destination> occupied) {
         if (repeated.isEmpty() && outOfBounds.isEmpty() && occupied.isEmpty()) {
             return; // everything is fine
         }
@@ -93,6 +160,15 @@ public class StoreAddressChecker {
         return map.get(destination.getAddress());
     }
 
+    /**
+     * The problems found in one group of items
+     */
+    private static class PartitionProblems {
+        final List<Destination> repeated = new ArrayList<>();
+        final List<Destination> outOfBounds = new ArrayList<>();
+        final List<Destination> occupied = new ArrayList<>();
+    }
+
     /**
      * A wrapper for a destination and an address, used for dupe detection
      */
@@ -33,19 +33,21 @@ public class StoreService {
     private final StoreDB db;
     private final ItemBarcodeValidator itemBarcodeValidator;
     private final StoreAddressChecker storeAddressChecker;
+    private final SubtreeCountService subtreeCountService;
 
     @Autowired
     public StoreService(EntityManager entityManager, StoreDB db, ItemBarcodeValidator itemBarcodeValidator,
-                        StoreAddressChecker storeAddressChecker) {
+                        StoreAddressChecker storeAddressChecker, SubtreeCountService subtreeCountService) {
         this.entityManager = entityManager;
         this.db = db;
         this.itemBarcodeValidator = itemBarcodeValidator;
         this.storeAddressChecker = storeAddressChecker;
+        this.subtreeCountService = subtreeCountService;
     }
 
     public Item storeBarcode(StoreRequestContext ctxt, String barcode, LocationIdentifier li, Address address) {
         requireNonNull(ctxt, "Request context is null.");
-        validateItemBarcodes(Stream.of(barcode));
+        validateItemBarcodes(ctxt, Stream.of(barcode));
         Location location = db.getLocationRepo().get(li);
         if (location.getSize()!=null && address!=null && !location.getSize().contains(address)) {
             throw new IllegalArgumentException(String.format("The address %s is outside the listed size %s " +
@@ -60,9 +62,11 @@ public class StoreService {
             }
         }
         final ItemRepo itemRepo = db.getItemRepo();
+        Item newItem = new Item(null, barcode, location, address);
+        subtreeCountService.recordStores(List.of(newItem));
         itemRepo.deleteAllByBarcodeIn(List.of(barcode));
         entityManager.flush();
-        Item item = itemRepo.save(new Item(null, barcode, location, address));
+        Item item = itemRepo.save(newItem);
         db.getStoreRecordRepo().save(new StoreRecord(item.getBarcode(), item.getAddress(), item.getLocation().getId(), ctxt.getUsername(), ctxt.getApp()));
         log.info("Item stored {} by {}.", item, ctxt);
         entityManager.refresh(item.getLocation()); // Sometimes location doesn't have updated contents without this
@@ -71,7 +75,7 @@ public class StoreService {
 
     public Iterable<Item> storeBarcodes(StoreRequestContext ctxt, List<String> barcodes, LocationIdentifier li) {
         requireNonNull(ctxt, "Request context is null.");
-        CIStringSet barcodeSet = validateItemBarcodes(barcodes.stream());
+        CIStringSet barcodeSet = validateItemBarcodes(ctxt, barcodes.stream());
         Location location = db.getLocationRepo().get(li);
         if (barcodes.isEmpty()) {
             return List.of();
@@ -87,7 +91,7 @@ public class StoreService {
         if (storeInputs.isEmpty()) {
             return List.of();
         }
-        CIStringSet barcodeSet = validateItemBarcodes(storeInputs.stream().map(StoreInput::getBarcode));
+        CIStringSet barcodeSet = validateItemBarcodes(ctxt, storeInputs.stream().map(StoreInput::getBarcode));
         LocationCache locationCache = makeLocationCache();
         if (defaultLi==null && storeInputs.stream().anyMatch(sin -> sin.getLocation()==null)) {
             throw new IllegalArgumentException("A location must be specified for each item.");
@@ -107,6 +111,7 @@ public class StoreService {
 
     Iterable<Item> storeItems(StoreRequestContext ctxt, Collection<Item> items, Collection<String> barcodes) {
         ItemRepo itemRepo = db.getItemRepo();
+        subtreeCountService.recordStores(items);
         itemRepo.deleteAllByBarcodeIn(barcodes);
         entityManager.flush();
         Iterable<Item> saved = itemRepo.saveAll(items);
@@ -130,7 +135,7 @@ public class StoreService {
         return saved;
     }
 
-    private CIStringSet validateItemBarcodes(Stream<String> barcodes) {
-        return itemBarcodeValidator.validateItemBarcodes(barcodes);
+    private CIStringSet validateItemBarcodes(StoreRequestContext ctxt, Stream<String> barcodes) {
+        return itemBarcodeValidator.validateItemBarcodes(barcodes, ctxt.getApp());
     }
 }
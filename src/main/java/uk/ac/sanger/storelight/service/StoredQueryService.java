@@ -0,0 +1,299 @@
+package uk.ac.sanger.storelight.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.LocationIdentifier;
+import uk.ac.sanger.storelight.requests.ResultPage;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static uk.ac.sanger.storelight.utils.BasicUtils.barcodeKey;
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
+
+/**
+ * Service for paginated queries of stored items and of the contents of locations.
+ * Pages use keyset pagination: each page starts after the last thing in the previous page,
+ * so getting a page is an indexed range scan however far through the results it is.
+ * @author dr6
+ */
+@Service
+public class StoredQueryService {
+    /** The maximum number of results in one page */
+    public static final int MAX_PAGE_SIZE = 1000;
+    /** The escape character used in like patterns */
+    static final char LIKE_ESCAPE = '!';
+
+    private final StoreDB db;
+
+    @Autowired
+    public StoredQueryService(StoreDB db) {
+        this.db = db;
+    }
+
+    /**
+     * Gets a page of the stored items whose barcodes start with the given prefix (case insensitive),
+     * in order of barcode.
+     * @param prefix the start of the barcodes
+     * @param first the maximum number of items to return
+     * @param after the barcode of the item before the page (or null for the first page)
+     * @return a page of matching items; the end cursor is the barcode of the last item in the page
+     * @exception IllegalArgumentException if the prefix is empty or the page size is invalid
+     */
+    public ResultPage<Item> storedByPrefix(String prefix, int first, String after) {
+        if (prefix==null || prefix.isBlank()) {
+            throw new IllegalArgumentException("No barcode prefix given.");
+        }
+        checkPageSize(first);
+        String pattern = escapeLike(barcodeKey(prefix.trim())) + "%";
+        String afterKey = (after==null ? "" : barcodeKey(after));
+        List<Item> items = db.getItemRepo().findPageByBarcodeKeyLike(pattern, afterKey, PageRequest.of(0, first + 1));
+        boolean hasNextPage = (items.size() > first);
+        if (hasNextPage) {
+            items = items.subList(0, first);
+        }
+        String endCursor = (items.isEmpty() ? null : items.get(items.size() - 1).getBarcode());
+        return new ResultPage<>(items, endCursor, hasNextPage);
+    }
+
+    /**
+     * Gets a page of the items stored anywhere inside the indicated location (including in the location itself),
+     * in order of the id of the location they are in, and then of their own id.
+     * The subtree of locations is found one level at a time, without loading the locations; the items are then read
+     * with a range query over the location ids after the cursor, in chunks if there are very many locations.
+     * @param li the location at the top of the subtree
+     * @param first the maximum number of items to return
+     * @param after the end cursor of the previous page (or null for the first page)
+     * @return a page of items, with their locations; the total count is not included
+     * @exception javax.persistence.EntityNotFoundException if the location does not exist
+     * @exception IllegalArgumentException if the page size or cursor is invalid
+     */
+    public ResultPage<Item> storedUnder(LocationIdentifier li, int first, String after) {
+        checkPageSize(first);
+        int[] cursor = parseIdCursor(after);
+        LocationRepo locRepo = db.getLocationRepo();
+        Location root = locRepo.get(li);
+        List<Integer> locationIds = new ArrayList<>(locRepo.findSubtreeIds(root.getId()));
+        locationIds.sort(null);
+        int start = Collections.binarySearch(locationIds, cursor[0]);
+        if (start < 0) {
+            start = -start - 1;
+        }
+        ItemRepo itemRepo = db.getItemRepo();
+        List<Item> items = new ArrayList<>(first + 1);
+        for (int i = start; i < locationIds.size() && items.size() <= first; i += RepoUtils.MAX_IN_SIZE) {
+            List<Integer> chunk = locationIds.subList(i, Math.min(i + RepoUtils.MAX_IN_SIZE, locationIds.size()));
+            items.addAll(itemRepo.findPageInLocations(chunk, cursor[0], cursor[1],
+                    PageRequest.of(0, first + 1 - items.size())));
+        }
+        boolean hasNextPage = (items.size() > first);
+        if (hasNextPage) {
+            items = items.subList(0, first);
+        }
+        String endCursor = null;
+        if (!items.isEmpty()) {
+            Item last = items.get(items.size() - 1);
+            endCursor = last.getLocation().getId() + ":" + last.getId();
+        }
+        return new ResultPage<>(items, endCursor, hasNextPage);
+    }
+
+    /**
+     * Gets a page of the items stored directly in the given location, without loading the rest.
+     * Items with an address come first, in order of address; then items without an address, in order of id.
+     * @param location the location
+     * @param first the maximum number of items to return
+     * @param after the end cursor of the previous page (or null for the first page)
+     * @return a page of items, including the total number of items in the location
+     * @exception IllegalArgumentException if the page size or cursor is invalid
+     */
+    public ResultPage<Item> storedPage(Location location, int first, String after) {
+        checkPageSize(first);
+        ItemRepo itemRepo = db.getItemRepo();
+        Integer locationId = location.getId();
+        return addressPage(first, PageCursor.parse(after), Item::getAddress, Item::getId,
+                (cursor, limit) -> itemRepo.findAddressedPage(locationId, cursor.row, cursor.column, cursor.id, limit),
+                (afterId, limit) -> itemRepo.findUnaddressedPage(locationId, afterId, limit),
+                itemRepo.countByLocationId(locationId));
+    }
+
+    /**
+     * Gets a page of the locations directly inside the given location, without loading the rest.
+     * Locations with an address come first, in order of address; then locations without an address, in order of id.
+     * @param location the parent location
+     * @param first the maximum number of locations to return
+     * @param after the end cursor of the previous page (or null for the first page)
+     * @return a page of locations, including the total number of locations inside the parent
+     * @exception IllegalArgumentException if the page size or cursor is invalid
+     */
+    public ResultPage<Location> childrenPage(Location location, int first, String after) {
+        checkPageSize(first);
+        LocationRepo locRepo = db.getLocationRepo();
+        Integer parentId = location.getId();
+        return addressPage(first, PageCursor.parse(after), Location::getAddress, Location::getId,
+                (cursor, limit) -> locRepo.findAddressedPage(parentId, cursor.row, cursor.column, cursor.id, limit),
+                (afterId, limit) -> locRepo.findUnaddressedPage(parentId, afterId, limit),
+                locRepo.countByParentId(parentId));
+    }
+
+    /**
+     * Gets a page of things ordered by address, and then (for things without an address) by id.
+     * The things with an address are read first; if there are not enough of them to fill the page,
+     * the page is filled with things without an address.
+     * @param first the maximum number of things to return
+     * @param cursor the position to start after
+     * @param addressFunction function to get the address of a thing
+     * @param idFunction function to get the id of a thing
+     * @param addressedQuery query for things with an address after the given cursor
+     * @param unaddressedQuery query for things without an address after the given id
+     * @param totalCount the total number of things
+     * @return a page of things
+     */
+    private static <E> ResultPage<E> addressPage(int first, PageCursor cursor,
+                                                 Function<E, Address> addressFunction, Function<E, Integer> idFunction,
+                                                 BiFunction<PageCursor, Pageable, List<E>> addressedQuery,
+                                                 BiFunction<Integer, Pageable, List<E>> unaddressedQuery,
+                                                 long totalCount) {
+        List<E> results = new ArrayList<>(first + 1);
+        if (cursor.isAddressed()) {
+            results.addAll(addressedQuery.apply(cursor, PageRequest.of(0, first + 1)));
+        }
+        if (results.size() <= first) {
+            int afterId = (cursor.isAddressed() ? 0 : cursor.id);
+            results.addAll(unaddressedQuery.apply(afterId, PageRequest.of(0, first + 1 - results.size())));
+        }
+        boolean hasNextPage = (results.size() > first);
+        if (hasNextPage) {
+            results = results.subList(0, first);
+        }
+        String endCursor = null;
+        if (!results.isEmpty()) {
+            E last = results.get(results.size() - 1);
+            endCursor = new PageCursor(addressFunction.apply(last), idFunction.apply(last)).toString();
+        }
+        return new ResultPage<>(results, endCursor, hasNextPage, (int) totalCount);
+    }
+
+    /**
+     * Checks that a requested page size is allowed.
+     * @exception IllegalArgumentException if the page size is invalid
+     */
+    static void checkPageSize(int first) {
+        if (first < 1 || first > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("The number of results must be between 1 and "+MAX_PAGE_SIZE+".");
+        }
+    }
+
+    /**
+     * Parses a cursor of the form {@code locationId:itemId}.
+     * @param string the string to parse (may be null)
+     * @return an array of the location id and item id; zeroes if the string is null
+     * @exception IllegalArgumentException if the string is not a valid cursor
+     */
+    static int[] parseIdCursor(String string) {
+        if (string==null) {
+            return new int[] { 0, 0 };
+        }
+        String[] parts = string.split(":", -1);
+        if (parts.length==2) {
+            try {
+                return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new IllegalArgumentException("Invalid cursor: "+repr(string));
+    }
+
+    /**
+     * Escapes the special characters in the given string, so it can be used in a like pattern
+     * with {@link #LIKE_ESCAPE} as the escape character.
+     */
+    static String escapeLike(String string) {
+        StringBuilder sb = new StringBuilder(string.length());
+        for (int i = 0; i < string.length(); ++i) {
+            char ch = string.charAt(i);
+            if (ch=='%' || ch=='_' || ch==LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A position in a list of things ordered by address and id.
+     * As a string, this is {@code row:column:id} for a thing with an address, or just the id for a thing without.
+     */
+    static class PageCursor {
+        /** The cursor before everything */
+        static final PageCursor START = new PageCursor(0, 0, 0);
+
+        final Integer row, column;
+        final int id;
+
+        PageCursor(Integer row, Integer column, int id) {
+            this.row = row;
+            this.column = column;
+            this.id = id;
+        }
+
+        PageCursor(Address address, int id) {
+            this(address==null ? null : address.getRow(), address==null ? null : address.getColumn(), id);
+        }
+
+        /** Is this the position of a thing with an address? */
+        boolean isAddressed() {
+            return (row!=null);
+        }
+
+        /**
+         * Parses a cursor from a string.
+         * @param string the string to parse (may be null)
+         * @return the parsed cursor; or {@link #START} if the string is null
+         * @exception IllegalArgumentException if the string is not a valid cursor
+         */
+        static PageCursor parse(String string) {
+            if (string==null) {
+                return START;
+            }
+            String[] parts = string.split(":", -1);
+            try {
+                if (parts.length==3) {
+                    return new PageCursor(Integer.valueOf(parts[0]), Integer.valueOf(parts[1]), Integer.parseInt(parts[2]));
+                }
+                if (parts.length==1) {
+                    return new PageCursor(null, null, Integer.parseInt(parts[0]));
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            throw new IllegalArgumentException("Invalid cursor: "+repr(string));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PageCursor that = (PageCursor) o;
+            return (this.id == that.id
+                    && Objects.equals(this.row, that.row)
+                    && Objects.equals(this.column, that.column));
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(row, column, id);
+        }
+
+        @Override
+        public String toString() {
+            return (row==null ? String.valueOf(id) : row+":"+column+":"+id);
+        }
+    }
+}
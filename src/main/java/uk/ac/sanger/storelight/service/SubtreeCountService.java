@@ -0,0 +1,326 @@
+package uk.ac.sanger.storelight.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+import static uk.ac.sanger.storelight.repo.RepoUtils.*;
+
+/**
+ * Service maintaining the number of items stored in each location and all the locations inside it.
+ * <p>Each count is kept in {@link SubtreeCount stripes}, which are summed when the count is read.
+ * A change to the items in a location is added to that location and to each location above it,
+ * always in the stripe chosen by the location where the items changed; so concurrent stores into
+ * different boxes in the same freezer mostly update different rows, rather than all queuing for
+ * the freezer's row. Rows are updated in order of location id and stripe, so that transactions
+ * touching the same rows do not deadlock.
+ * <p>The services that store, unstore and move things call this service in the same transaction as
+ * their changes. Changes in the item table must be reported before the items are deleted (so that
+ * their locations can still be found).
+ * @author dr6
+ */
+@Service
+public class SubtreeCountService {
+    /** The number of stripes each count is spread over. This can be changed without rebuilding the counts. */
+    public static final int NUM_STRIPES = 16;
+    /**
+     * The location id of the row recording that the counts have been built.
+     * No location has this id, so the row is never read or changed as a count.
+     */
+    static final int REBUILT_MARKER_ID = 0;
+
+    private final Logger log = LoggerFactory.getLogger(SubtreeCountService.class);
+
+    private final StoreDB db;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Whether to rebuild the counts at startup even if they have already been built,
+     * to correct counts that have drifted.
+     */
+    @Value("${uk.ac.sanger.storelight.rebuildcounts:false}")
+    boolean forceRebuild;
+
+    @Autowired
+    public SubtreeCountService(StoreDB db, PlatformTransactionManager transactionManager) {
+        this.db = db;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setName("Rebuild subtree counts");
+    }
+
+    /**
+     * Gets the number of items stored in the given location and all the locations inside it.
+     * @param locationId the id of the location
+     * @return the number of items in the subtree
+     */
+    public int countUnder(Integer locationId) {
+        return (int) db.getSubtreeCountRepo().sumByLocationId(locationId);
+    }
+
+    /**
+     * Records that the given items are about to be stored.
+     * Any of the barcodes that are already stored are counted out of their current locations,
+     * so this must be called before the existing items are deleted.
+     * @param items the new items
+     */
+    public void recordStores(Collection<Item> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> deltas = new HashMap<>();
+        Map<Integer, Location> locations = new HashMap<>();
+        List<String> keys = barcodeKeys(items.stream().map(Item::getBarcode).collect(toList()));
+        for (Object[] row : findInChunks(keys, db.getItemRepo()::countByLocationOfBarcodeKeyIn)) {
+            deltas.merge((Integer) row[0], -((Number) row[1]).intValue(), Integer::sum);
+        }
+        for (Item item : items) {
+            Location location = item.getLocation();
+            locations.put(location.getId(), location);
+            deltas.merge(location.getId(), 1, Integer::sum);
+        }
+        adjust(deltas, locations);
+    }
+
+    /**
+     * Records that the given items are being unstored.
+     * @param items the items, with their locations
+     */
+    public void recordUnstores(Collection<Item> items) {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        Map<Integer, Location> locations = new HashMap<>();
+        for (Item item : items) {
+            Location location = item.getLocation();
+            locations.put(location.getId(), location);
+            deltas.merge(location.getId(), -1, Integer::sum);
+        }
+        adjust(deltas, locations);
+    }
+
+    /**
+     * Records that everything in the given locations is about to be unstored.
+     * The items are counted in the database, so this must be called before they are deleted.
+     * @param locationIds the ids of the locations being emptied
+     */
+    public void recordEmptied(List<Integer> locationIds) {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        for (Object[] row : findInChunks(locationIds, db.getItemRepo()::countByLocationIdInGrouped)) {
+            deltas.put((Integer) row[0], -((Number) row[1]).intValue());
+        }
+        adjust(deltas, Map.of());
+    }
+
+    /**
+     * Records that items have been moved from one location to another.
+     * @param source the location the items were moved out of
+     * @param destination the location the items were moved into
+     * @param numItems the number of items moved
+     */
+    public void recordTransfer(Location source, Location destination, int numItems) {
+        if (numItems==0 || source.getId().equals(destination.getId())) {
+            return;
+        }
+        Map<Integer, Integer> deltas = Map.of(source.getId(), -numItems, destination.getId(), numItems);
+        adjust(deltas, Map.of(source.getId(), source, destination.getId(), destination));
+    }
+
+    /**
+     * Records which locations are above each of the given locations, before any of them are moved.
+     * The result should be passed to {@link #recordMoves} once the moves have been made.
+     * @param locations the locations that may be moved
+     * @return a map of each location to the ids of the locations above it, nearest first
+     */
+    public Map<Location, List<Integer>> ancestry(Collection<Location> locations) {
+        Map<Location, List<Integer>> ancestry = new IdentityHashMap<>(locations.size());
+        for (Location location : locations) {
+            ancestry.put(location, ancestorIds(location));
+        }
+        return ancestry;
+    }
+
+    /**
+     * Updates the counts for locations that have been moved to new parents.
+     * The items in the subtree of a moved location are counted out of the locations that used to be above it,
+     * and into the locations that are now above it. Where one moved location used to be inside another,
+     * its items are only counted as moving with it, and not with the other.
+     * <p>The counts of the moved locations are read with a locking read. That waits for any transaction
+     * that has already added to them (so their items are moved too), and reads the latest committed counts
+     * rather than the transaction's snapshot.
+     * @param oldAncestry the result of {@link #ancestry} from before the moves
+     */
+    public void recordMoves(Map<Location, List<Integer>> oldAncestry) {
+        Map<Integer, Location> moved = new LinkedHashMap<>();
+        Map<Integer, List<Integer>> newAncestry = new HashMap<>();
+        for (var entry : oldAncestry.entrySet()) {
+            Location location = entry.getKey();
+            List<Integer> ancestors = ancestorIds(location);
+            if (!ancestors.equals(entry.getValue())) {
+                moved.put(location.getId(), location);
+                newAncestry.put(location.getId(), ancestors);
+            }
+        }
+        if (moved.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> totals = new HashMap<>(moved.size());
+        List<Integer> movedIds = moved.keySet().stream().sorted().collect(toList());
+        for (SubtreeCount count : findInChunks(movedIds, db.getSubtreeCountRepo()::findAllForUpdateByLocationIdIn)) {
+            totals.merge(count.getLocationId(), count.getNumItems(), Integer::sum);
+        }
+        Map<Integer, Integer> exclusive = new HashMap<>(totals);
+        for (Location location : moved.values()) {
+            int total = totals.getOrDefault(location.getId(), 0);
+            for (Integer ancestorId : oldAncestry.get(location)) {
+                if (moved.containsKey(ancestorId)) {
+                    exclusive.merge(ancestorId, -total, Integer::sum);
+                    break;
+                }
+            }
+        }
+        SortedMap<SubtreeCount.Key, Integer> changes = new TreeMap<>();
+        for (Location location : moved.values()) {
+            int numItems = exclusive.getOrDefault(location.getId(), 0);
+            if (numItems!=0) {
+                int stripe = stripeFor(location.getId());
+                for (Integer id : oldAncestry.get(location)) {
+                    changes.merge(new SubtreeCount.Key(id, stripe), -numItems, Integer::sum);
+                }
+                for (Integer id : newAncestry.get(location.getId())) {
+                    changes.merge(new SubtreeCount.Key(id, stripe), numItems, Integer::sum);
+                }
+            }
+        }
+        apply(changes);
+    }
+
+    /**
+     * Removes the counts for locations that are being deleted.
+     * The locations should be empty, so the locations above them are not affected.
+     * @param locationIds the ids of the locations
+     */
+    public void recordDeleted(List<Integer> locationIds) {
+        runInChunks(locationIds, db.getSubtreeCountRepo()::deleteAllByLocationIdIn);
+    }
+
+    /**
+     * Adds the given changes in the number of items in each location to that location and every location above it.
+     * @param deltas map of location id to the change in the number of items directly in that location
+     * @param knownLocations any of the locations already loaded, by id; any others are loaded
+     */
+    void adjust(Map<Integer, Integer> deltas, Map<Integer, Location> knownLocations) {
+        Map<Integer, Location> locations = new HashMap<>(knownLocations);
+        Set<Integer> missing = new HashSet<>();
+        deltas.forEach((id, delta) -> {
+            if (delta!=0 && !locations.containsKey(id)) {
+                missing.add(id);
+            }
+        });
+        if (!missing.isEmpty()) {
+            db.getLocationRepo().findAllById(missing).forEach(loc -> locations.put(loc.getId(), loc));
+        }
+        SortedMap<SubtreeCount.Key, Integer> changes = new TreeMap<>();
+        for (var entry : deltas.entrySet()) {
+            int delta = entry.getValue();
+            if (delta==0) {
+                continue;
+            }
+            int stripe = stripeFor(entry.getKey());
+            changes.merge(new SubtreeCount.Key(entry.getKey(), stripe), delta, Integer::sum);
+            Location location = locations.get(entry.getKey());
+            if (location!=null) {
+                for (Integer id : ancestorIds(location)) {
+                    changes.merge(new SubtreeCount.Key(id, stripe), delta, Integer::sum);
+                }
+            }
+        }
+        apply(changes);
+    }
+
+    /**
+     * Applies the given changes to the counts, in order of key.
+     */
+    private void apply(SortedMap<SubtreeCount.Key, Integer> changes) {
+        SubtreeCountRepo countRepo = db.getSubtreeCountRepo();
+        for (var entry : changes.entrySet()) {
+            if (entry.getValue()!=0) {
+                countRepo.addItems(entry.getKey().getLocationId(), entry.getKey().getStripe(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Rebuilds every count from the items and locations in the database, unless that has already been done
+     * (as recorded by the {@link #REBUILT_MARKER_ID marker row}) and {@link #forceRebuild} is not set.
+     * This runs while the application context is being initialised, before the web server starts accepting
+     * requests. The marker is read with a locking read, so that it does not fix the snapshot that the
+     * rebuild reads the items from.
+     */
+    @PostConstruct
+    public void rebuildIfNeeded() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (db.getSubtreeCountRepo().findForUpdate(REBUILT_MARKER_ID, 0).isEmpty() || forceRebuild) {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Replaces every count with one calculated from the items and locations in the database.
+     * The new counts are all put in stripe 0, along with the {@link #REBUILT_MARKER_ID marker row}.
+     * <p>The existing counts are deleted before the items are counted. That locks the whole table,
+     * so any transaction that has already added to a count is waited for (and its items included in the
+     * new counts), and any transaction that tries to add to a count waits until the new counts are committed
+     * (and then adds to them). Either way, no change is lost.
+     * This should be run in a transaction.
+     */
+    public void rebuild() {
+        SubtreeCountRepo countRepo = db.getSubtreeCountRepo();
+        countRepo.deleteAllCounts();
+        Map<Integer, Integer> parents = new HashMap<>();
+        for (Object[] row : db.getLocationRepo().findAllParentIds()) {
+            parents.put((Integer) row[0], (Integer) row[1]);
+        }
+        Map<Integer, Integer> totals = new HashMap<>();
+        for (Object[] row : db.getItemRepo().countAllByLocation()) {
+            int numItems = ((Number) row[1]).intValue();
+            Integer id = (Integer) row[0];
+            for (int depth = 0; id!=null && depth <= parents.size(); ++depth) {
+                totals.merge(id, numItems, Integer::sum);
+                id = parents.get(id);
+            }
+        }
+        List<SubtreeCount> counts = totals.entrySet().stream()
+                .map(e -> new SubtreeCount(e.getKey(), 0, e.getValue()))
+                .collect(toList());
+        counts.add(new SubtreeCount(REBUILT_MARKER_ID, 0, 0));
+        countRepo.saveAll(counts);
+        log.info("Subtree counts rebuilt for {} locations.", totals.size());
+    }
+
+    /**
+     * The ids of the locations above the given location, nearest first.
+     */
+    private static List<Integer> ancestorIds(Location location) {
+        List<Integer> ids = new ArrayList<>();
+        for (Location parent = location.getParent(); parent!=null; parent = parent.getParent()) {
+            ids.add(parent.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * The stripe used for changes to the items in the given location.
+     */
+    static int stripeFor(Integer locationId) {
+        return Math.floorMod(locationId, NUM_STRIPES);
+    }
+}
@@ -0,0 +1,245 @@
+package uk.ac.sanger.storelight.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.storelight.graphql.StoreRequestContext;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.*;
+
+import java.util.*;
+
+import static java.util.Objects.requireNonNull;
+import static uk.ac.sanger.storelight.utils.BasicUtils.pluralise;
+import static uk.ac.sanger.storelight.utils.BasicUtils.repr;
+
+/**
+ * Service for moving the contents of locations into another location.
+ * <p>Each mapping is an affine transform of addresses ({@code row*scale + rowShift}, {@code column*scale + columnShift})
+ * for each source location, so the move of each source is a single set-based update, and the store records
+ * are written with a single insert-select. The items are validated first using projections of their barcodes
+ * and addresses, so they are never loaded as entities.
+ * @author dr6
+ */
+@Service
+public class TransferService {
+    /** The maximum number of sources for a {@link TransferMapping#Quadrant quadrant} transfer */
+    static final int MAX_QUADRANTS = 4;
+
+    private final Logger log = LoggerFactory.getLogger(TransferService.class);
+
+    private final StoreDB db;
+    private final SubtreeCountService subtreeCountService;
+
+    @Autowired
+    public TransferService(StoreDB db, SubtreeCountService subtreeCountService) {
+        this.db = db;
+        this.subtreeCountService = subtreeCountService;
+    }
+
+    /**
+     * Moves everything stored in the source locations into the destination location.
+     * @param ctxt the request context
+     * @param sourceLis the identifiers of the locations to move the items out of
+     * @param destLi the identifier of the location to move the items into
+     * @param mapping how to map the items' addresses (null for {@link TransferMapping#Identity identity})
+     * @param rowOffset the number of rows to move each item by (only for {@link TransferMapping#Offset})
+     * @param columnOffset the number of columns to move each item by (only for {@link TransferMapping#Offset})
+     * @return a summary of the transfer
+     * @exception IllegalArgumentException if the request is invalid; in which case nothing is moved
+     */
+    public TransferResult transfer(StoreRequestContext ctxt, List<LocationIdentifier> sourceLis, LocationIdentifier destLi,
+                                   TransferMapping mapping, Integer rowOffset, Integer columnOffset) {
+        requireNonNull(ctxt, "Request context is null.");
+        if (mapping==null) {
+            mapping = TransferMapping.Identity;
+        }
+        if (sourceLis.isEmpty()) {
+            throw new IllegalArgumentException("No source locations given.");
+        }
+        if (mapping!=TransferMapping.Offset && (rowOffset!=null || columnOffset!=null)) {
+            throw new IllegalArgumentException("Offsets can only be given for an Offset mapping.");
+        }
+        if (mapping==TransferMapping.Quadrant && sourceLis.size() > MAX_QUADRANTS) {
+            throw new IllegalArgumentException("A Quadrant mapping cannot have more than "+MAX_QUADRANTS+" sources.");
+        }
+        LocationRepo locRepo = db.getLocationRepo();
+        Location destination = locRepo.get(destLi);
+        List<Location> sources = loadSources(locRepo, sourceLis, destination);
+        List<Transform> transforms = transforms(mapping, sources.size(), rowOffset, columnOffset);
+
+        validate(sources, transforms, destination);
+
+        ItemRepo itemRepo = db.getItemRepo();
+        StoreRecordRepo recordRepo = db.getStoreRecordRepo();
+        int numTransferred = 0;
+        for (int i = 0; i < sources.size(); ++i) {
+            Location source = sources.get(i);
+            Transform tr = transforms.get(i);
+            recordRepo.recordTransfer(source.getId(), tr.scale, tr.rowShift, tr.columnShift, destination.getId(),
+                    ctxt.getUsername(), ctxt.getApp());
+            int numMoved = itemRepo.transfer(source.getId(), destination, tr.scale, tr.rowShift, tr.columnShift);
+            subtreeCountService.recordTransfer(source, destination, numMoved);
+            numTransferred += numMoved;
+        }
+        if (numTransferred > 0) {
+            log.info("Items transferred from {} to {} ({}) by {}: {} items.", sources, destination, mapping,
+                    ctxt, numTransferred);
+        }
+        return new TransferResult(numTransferred, destination);
+    }
+
+    private static List<Location> loadSources(LocationRepo locRepo, List<LocationIdentifier> sourceLis,
+                                              Location destination) {
+        LocationCache cache = new LocationCache(locRepo);
+        cache.lookUp(sourceLis.stream());
+        List<Location> sources = new ArrayList<>(sourceLis.size());
+        Set<Integer> ids = new HashSet<>(sourceLis.size());
+        Set<String> repeated = new LinkedHashSet<>();
+        for (LocationIdentifier li : sourceLis) {
+            Location source = cache.get(li);
+            if (source.getId().equals(destination.getId())) {
+                throw new IllegalArgumentException("The destination cannot also be a source.");
+            }
+            if (!ids.add(source.getId())) {
+                repeated.add(source.getBarcode());
+            }
+            sources.add(source);
+        }
+        if (!repeated.isEmpty()) {
+            throw new IllegalArgumentException(pluralise("Source location{s} given more than once: ", repeated.size())
+                    + repeated + ".");
+        }
+        return sources;
+    }
+
+    /**
+     * Gets the transform for each source location.
+     */
+    static List<Transform> transforms(TransferMapping mapping, int numSources, Integer rowOffset, Integer columnOffset) {
+        List<Transform> transforms = new ArrayList<>(numSources);
+        for (int i = 0; i < numSources; ++i) {
+            switch (mapping) {
+                case Identity:
+                    transforms.add(Transform.IDENTITY);
+                    break;
+                case Offset:
+                    transforms.add(new Transform(1, rowOffset==null ? 0 : rowOffset,
+                            columnOffset==null ? 0 : columnOffset));
+                    break;
+                case Quadrant:
+                    transforms.add(new Transform(2, i / 2 - 1, i % 2 - 1));
+                    break;
+            }
+        }
+        return transforms;
+    }
+
+    /**
+     * Checks that every item in the sources can be moved to its mapped address in the destination.
+     * @exception IllegalArgumentException if any problems are found
+     */
+    private void validate(List<Location> sources, List<Transform> transforms, Location destination) {
+        Map<Integer, Transform> sourceTransforms = new HashMap<>(sources.size());
+        for (int i = 0; i < sources.size(); ++i) {
+            sourceTransforms.put(sources.get(i).getId(), transforms.get(i));
+        }
+        ItemRepo itemRepo = db.getItemRepo();
+        Map<Address, String> occupants = new HashMap<>();
+        for (Object[] row : itemRepo.findAddressedItemsInLocations(List.of(destination.getId()))) {
+            occupants.put(new Address((Integer) row[1], (Integer) row[2]), (String) row[3]);
+        }
+        Size size = destination.getSize();
+        Set<String> unaddressed = new LinkedHashSet<>();
+        Set<String> outOfBounds = new LinkedHashSet<>();
+        Set<Address> occupied = new TreeSet<>();
+        Set<Address> repeated = new TreeSet<>();
+        Set<Address> seen = new HashSet<>();
+        for (Object[] row : itemRepo.findItemPositionsInLocations(sourceTransforms.keySet())) {
+            Transform tr = sourceTransforms.get((Integer) row[0]);
+            String barcode = (String) row[3];
+            if (row[1]==null) {
+                if (!tr.equals(Transform.IDENTITY)) {
+                    unaddressed.add(repr(barcode));
+                }
+                continue;
+            }
+            int newRow = tr.row((Integer) row[1]), newColumn = tr.column((Integer) row[2]);
+            if (newRow < 1 || newColumn < 1 || size!=null && (newRow > size.getNumRows() || newColumn > size.getNumColumns())) {
+                outOfBounds.add(repr(barcode));
+                continue;
+            }
+            Address address = new Address(newRow, newColumn);
+            if (!seen.add(address)) {
+                repeated.add(address);
+            } else if (occupants.containsKey(address)) {
+                occupied.add(address);
+            }
+        }
+        List<String> problems = new ArrayList<>(4);
+        if (!unaddressed.isEmpty()) {
+            problems.add(pluralise("Item{s} without an address cannot be mapped: ", unaddressed.size())
+                    + unaddressed + ".");
+        }
+        if (!outOfBounds.isEmpty()) {
+            problems.add(pluralise("Item{s} would be mapped outside the destination: ", outOfBounds.size())
+                    + outOfBounds + ".");
+        }
+        if (!occupied.isEmpty()) {
+            problems.add(pluralise("Address{es} already occupied in the destination: ", occupied.size())
+                    + occupied + ".");
+        }
+        if (!repeated.isEmpty()) {
+            problems.add(pluralise("Address{es} mapped to by more than one item: ", repeated.size())
+                    + repeated + ".");
+        }
+        if (!problems.isEmpty()) {
+            throw new IllegalArgumentException(String.join(" ", problems));
+        }
+    }
+
+    /**
+     * The mapping of addresses from one source: {@code (row*scale + rowShift, column*scale + columnShift)}
+     */
+    static class Transform {
+        static final Transform IDENTITY = new Transform(1, 0, 0);
+
+        final int scale, rowShift, columnShift;
+
+        Transform(int scale, int rowShift, int columnShift) {
+            this.scale = scale;
+            this.rowShift = rowShift;
+            this.columnShift = columnShift;
+        }
+
+        int row(int row) {
+            return row * scale + rowShift;
+        }
+
+        int column(int column) {
+            return column * scale + columnShift;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Transform that = (Transform) o;
+            return (this.scale == that.scale
+                    && this.rowShift == that.rowShift
+                    && this.columnShift == that.columnShift);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(scale, rowShift, columnShift);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(scale=%s, rowShift=%s, columnShift=%s)", scale, rowShift, columnShift);
+        }
+    }
+}
@@ -7,12 +7,18 @@ import uk.ac.sanger.storelight.graphql.StoreRequestContext;
 import uk.ac.sanger.storelight.model.*;
 import uk.ac.sanger.storelight.repo.ItemRepo;
 import uk.ac.sanger.storelight.repo.StoreDB;
+import uk.ac.sanger.storelight.repo.StoreRecordRepo;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
+import uk.ac.sanger.storelight.requests.RecursiveUnstoreResult;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static uk.ac.sanger.storelight.repo.RepoUtils.findInChunks;
+import static uk.ac.sanger.storelight.repo.RepoUtils.runInChunks;
+import static uk.ac.sanger.storelight.repo.RepoUtils.sumInChunks;
 import static uk.ac.sanger.storelight.utils.BasicUtils.iterableToString;
 
 /**
@@ -24,9 +30,11 @@ public class UnstoreService {
     private final Logger log = LoggerFactory.getLogger(UnstoreService.class);
 
     private final StoreDB db;
+    private final SubtreeCountService subtreeCountService;
 
-    public UnstoreService(StoreDB db) {
+    public UnstoreService(StoreDB db, SubtreeCountService subtreeCountService) {
         this.db = db;
+        this.subtreeCountService = subtreeCountService;
     }
 
     public Item unstoreBarcode(StoreRequestContext ctxt, String barcode) {
@@ -34,6 +42,7 @@ public class UnstoreService {
         ItemRepo itemRepo = db.getItemRepo();
         Item item = itemRepo.findByBarcode(barcode).orElse(null);
         if (item!=null) {
+            subtreeCountService.recordUnstores(List.of(item));
             itemRepo.delete(item);
             recordUnstores(ctxt, List.of(item));
             log.info("Stored item deleted {} by {}.", item, ctxt);
@@ -41,13 +50,26 @@ public class UnstoreService {
         return item;
     }
 
+    /**
+     * Removes the items with the given barcodes from storage.
+     * The items are read (with their locations) once, to return their former storage information;
+     * then, in chunks, the unstore records are inserted and the items deleted with set-based statements.
+     * @param ctxt the request context
+     * @param barcodes the barcodes of the items to unstore
+     * @return the items that were unstored
+     */
     public List<Item> unstoreBarcodes(StoreRequestContext ctxt, List<String> barcodes) {
         requireNonNull(ctxt, "Request context is null");
         ItemRepo itemRepo = db.getItemRepo();
         List<Item> items = itemRepo.findAllByBarcodeIn(barcodes);
         if (!items.isEmpty()) {
-            itemRepo.deleteAll(items);
-            recordUnstores(ctxt, items);
+            List<String> barcodeKeys = items.stream().map(Item::getBarcodeKey).collect(toList());
+            StoreRecordRepo recordRepo = db.getStoreRecordRepo();
+            subtreeCountService.recordUnstores(items);
+            runInChunks(barcodeKeys, keys -> {
+                recordRepo.recordUnstoresOfBarcodeKeys(keys, ctxt.getUsername(), ctxt.getApp());
+                itemRepo.bulkDeleteByBarcodeKeyIn(keys);
+            });
             log.info("Stored items deleted {} by {}.", iterableToString(items), ctxt);
         }
         return items;
@@ -60,12 +82,51 @@ public class UnstoreService {
             return List.of();
         }
         List<Item> items = List.copyOf(location.getStored());
+        subtreeCountService.recordUnstores(items);
         db.getItemRepo().deleteAll(items);
         recordUnstores(ctxt, items);
         log.info("Stored items deleted {} by {}.", iterableToString(items), ctxt);
         return items;
     }
 
+    /**
+     * Removes everything stored in a location and in all the locations inside it, at any depth.
+     * The locations in the subtree are found by id, a level at a time; the unstore records are inserted
+     * and the items deleted with set-based statements, so neither the locations nor (unless they are
+     * requested) the items are loaded.
+     * @param ctxt the request context
+     * @param li the identifier of the location at the top of the subtree
+     * @param includeItems whether to load and return the items that are unstored
+     * @return the numbers of locations emptied and items unstored, and the items if requested
+     */
+    public RecursiveUnstoreResult emptyRecursive(StoreRequestContext ctxt, LocationIdentifier li, boolean includeItems) {
+        requireNonNull(ctxt, "Request context is null");
+        Location location = db.getLocationRepo().get(li);
+        List<Integer> locationIds = db.getLocationRepo().findSubtreeIds(location.getId());
+        ItemRepo itemRepo = db.getItemRepo();
+        List<Item> items = (includeItems ? findInChunks(locationIds, itemRepo::findAllByLocationIdIn) : null);
+        int numUnstored = unstoreInLocations(ctxt, locationIds);
+        if (numUnstored > 0) {
+            log.info("Stored items deleted from {} ({} locations) by {}: {} items.", location.getBarcode(),
+                    locationIds.size(), ctxt, numUnstored);
+        }
+        return new RecursiveUnstoreResult(locationIds.size(), numUnstored, items);
+    }
+
+    /**
+     * Removes everything stored in the given locations, recording the unstores,
+     * using set-based statements (in chunks).
+     * @param ctxt the request context
+     * @param locationIds the ids of the locations to empty
+     * @return the number of items unstored
+     */
+    public int unstoreInLocations(StoreRequestContext ctxt, List<Integer> locationIds) {
+        StoreRecordRepo recordRepo = db.getStoreRecordRepo();
+        subtreeCountService.recordEmptied(locationIds);
+        sumInChunks(locationIds, ids -> recordRepo.recordUnstoresInLocations(ids, ctxt.getUsername(), ctxt.getApp()));
+        return sumInChunks(locationIds, db.getItemRepo()::deleteAllByLocationIdIn);
+    }
+
     private Iterable<StoreRecord> recordUnstores(StoreRequestContext ctxt, List<Item> items) {
         List<StoreRecord> records = new ArrayList<>(items.size());
         for (Item item : items) {
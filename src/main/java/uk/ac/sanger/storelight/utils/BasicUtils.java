@@ -18,6 +18,16 @@ public class BasicUtils {
         return (a==null ? b : a);
     }
 
+    /**
+     * The normalised form of a barcode used for case-insensitive lookups.
+     * This is what is stored in the {@code barcode_key} columns.
+     * @param barcode a barcode (may be null)
+     * @return the upper-case form of the barcode, or null if the barcode is null
+     */
+    public static String barcodeKey(String barcode) {
+        return (barcode==null ? null : barcode.toUpperCase(Locale.ROOT));
+    }
+
     /**
      * Returns a string representation of the given object.
      * If it is a string it will be in quote marks and unprintable
@@ -3,26 +3,40 @@ package uk.ac.sanger.storelight.utils;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * A case-preserving collection of strings distinct by case.
- * Lacking any perfect canonical way to case-fold strings in Java,
- * just {@link String#toUpperCase} is used, and we hope for no weird Turkish characters.
+ * Strings are compared by folding each char through {@link Character#toUpperCase(char)}
+ * and {@link Character#toLowerCase(char)}, so no upper-cased copies are ever allocated.
+ * (Lacking any perfect canonical way to case-fold strings in Java, we hope for no weird Turkish characters.)
+ * <p>The strings are kept in insertion order in an array, indexed by an open-addressing hash table,
+ * so {@code add}, {@code contains} and {@code remove} are all O(1).
+ * Removed entries leave gaps in the array that are compacted away the next time the set grows.
  * @author dr6
  */
 public class CIStringSet implements Set<String> {
-    private Set<String> set;
-    private List<String> list;
+    private static final int EMPTY = 0, DELETED = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    /** The strings in insertion order, with null for removed entries */
+    private String[] elements;
+    /** The folded hash for each entry in {@link #elements} */
+    private int[] hashes;
+    /** Open-addressing table: {@link #EMPTY}, {@link #DELETED}, or (index into {@link #elements}) + 1 */
+    private int[] table;
+    /** The number of strings in the set */
+    private int size;
+    /** The number of positions used in {@link #elements} (including removed entries) */
+    private int used;
+    /** The number of positions in {@link #table} that are not {@link #EMPTY} */
+    private int occupied;
 
     public CIStringSet() {
-        set = new HashSet<>();
-        list = new ArrayList<>();
+        this(MIN_CAPACITY);
     }
 
     public CIStringSet(int capacity) {
-        set = new HashSet<>(capacity);
-        list = new ArrayList<>(capacity);
+        init(Math.max(capacity, MIN_CAPACITY));
     }
 
     public CIStringSet(Collection<String> strings) {
@@ -30,19 +44,146 @@ public class CIStringSet implements Set<String> {
         this.addAll(strings);
     }
 
+    private void init(int capacity) {
+        elements = new String[capacity];
+        hashes = new int[capacity];
+        table = new int[tableSizeFor(capacity)];
+        size = used = occupied = 0;
+    }
+
+    /** A power of two table size that keeps the load factor at or below 1/2 for the given capacity */
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, MIN_CAPACITY) * 2 - 1) << 1;
+    }
+
+    private static char fold(char ch) {
+        return Character.toLowerCase(Character.toUpperCase(ch));
+    }
+
+    /**
+     * Case-insensitive hash of the given string, consistent with {@link #foldEquals}.
+     */
+    static int foldHash(String s) {
+        int h = 0;
+        final int len = s.length();
+        for (int i = 0; i < len; ++i) {
+            h = 31 * h + fold(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Are the given strings equal after folding each of their characters?
+     */
+    static boolean foldEquals(String a, String b) {
+        if (a==b) {
+            return true;
+        }
+        final int len = a.length();
+        if (len!=b.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            char ca = a.charAt(i), cb = b.charAt(i);
+            if (ca!=cb && fold(ca)!=fold(cb)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the table slot containing the given string.
+     * @return the slot, or -1 if the string is not in the set
+     */
+    private int findSlot(String s, int hash) {
+        final int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int v = table[slot];
+            if (v==EMPTY) {
+                return -1;
+            }
+            if (v!=DELETED && hashes[v-1]==hash && foldEquals(elements[v-1], s)) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Finds the table slot referring to the given index in {@link #elements}.
+     */
+    private int findSlotForIndex(int index) {
+        final int mask = table.length - 1;
+        for (int slot = hashes[index] & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot]==index+1) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Puts the given index into the first free slot for its hash.
+     */
+    private void place(int index) {
+        final int mask = table.length - 1;
+        int slot = hashes[index] & mask;
+        while (table[slot]!=EMPTY && table[slot]!=DELETED) {
+            slot = (slot + 1) & mask;
+        }
+        if (table[slot]==EMPTY) {
+            ++occupied;
+        }
+        table[slot] = index + 1;
+    }
+
+    /**
+     * Rebuilds the arrays (dropping removed entries) so that there is room for at least one more string.
+     */
+    private void rebuild() {
+        String[] oldElements = elements;
+        int[] oldHashes = hashes;
+        int oldUsed = used;
+        int capacity = Math.max(size + 1, MIN_CAPACITY);
+        if (capacity > oldElements.length / 2) {
+            capacity = Math.max(capacity, oldElements.length * 2);
+        } else {
+            capacity = oldElements.length;
+        }
+        init(capacity);
+        for (int i = 0; i < oldUsed; ++i) {
+            if (oldElements[i]!=null) {
+                elements[used] = oldElements[i];
+                hashes[used] = oldHashes[i];
+                place(used);
+                ++used;
+                ++size;
+            }
+        }
+    }
+
+    private void removeIndex(int index) {
+        table[findSlotForIndex(index)] = DELETED;
+        elements[index] = null;
+        --size;
+    }
+
     @Override
     public int size() {
-        return list.size();
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return list.isEmpty();
+        return (size==0);
     }
 
     @Override
     public boolean contains(Object o) {
-        return (o instanceof String && set.contains(((String) o).toUpperCase()));
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String s = (String) o;
+        return (findSlot(s, foldHash(s)) >= 0);
     }
 
     @NotNull
@@ -54,32 +195,53 @@ public class CIStringSet implements Set<String> {
     @NotNull
     @Override
     public Object[] toArray() {
-        return list.toArray();
+        return toList().toArray();
     }
 
     @SuppressWarnings("SuspiciousToArrayCall")
     @NotNull
     @Override
     public <T> T[] toArray(@NotNull T[] a) {
-        return list.toArray(a);
+        return toList().toArray(a);
+    }
+
+    private List<String> toList() {
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < used; ++i) {
+            if (elements[i]!=null) {
+                list.add(elements[i]);
+            }
+        }
+        return list;
     }
 
     @Override
     public boolean add(String s) {
-        if (!set.add(s.toUpperCase())) {
+        final int hash = foldHash(s);
+        if (findSlot(s, hash) >= 0) {
             return false;
         }
-        list.add(s);
+        if (used >= elements.length || (occupied + 1) * 2 > table.length) {
+            rebuild();
+        }
+        elements[used] = s;
+        hashes[used] = hash;
+        place(used);
+        ++used;
+        ++size;
         return true;
     }
 
-    // This is O(N) if the string is found; O(1) if it is not found.
     @Override
     public boolean remove(Object o) {
         if (o instanceof String) {
             String s = (String) o;
-            if (set.remove(s.toUpperCase())) {
-                list.removeIf(s::equalsIgnoreCase);
+            int slot = findSlot(s, foldHash(s));
+            if (slot >= 0) {
+                int index = table[slot] - 1;
+                table[slot] = DELETED;
+                elements[index] = null;
+                --size;
                 return true;
             }
         }
@@ -88,10 +250,12 @@ public class CIStringSet implements Set<String> {
 
     @Override
     public boolean containsAll(@NotNull Collection<?> c) {
-        if (c instanceof CIStringSet) {
-            return this.set.containsAll(((CIStringSet) c).set);
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
         }
-        return c.stream().allMatch(this::contains);
+        return true;
     }
 
     @Override
@@ -131,36 +295,33 @@ public class CIStringSet implements Set<String> {
     }
 
     private boolean removeOrRetain(Collection<?> c, boolean retain) {
-        Set<String> uc;
+        final CIStringSet other;
         if (c instanceof CIStringSet) {
-            uc = ((CIStringSet) c).set;
+            other = (CIStringSet) c;
         } else {
-            uc = c.stream()
-                    .filter(x -> x instanceof String)
-                    .map(x -> ((String) x).toUpperCase())
-                    .collect(Collectors.toSet());
-        }
-        Set<String> newSet = new HashSet<>();
-        List<String> newList = new ArrayList<>();
-        for (String s : list) {
-            String su = s.toUpperCase();
-            if (uc.contains(su)==retain) {
-                newSet.add(su);
-                newList.add(s);
+            other = new CIStringSet(c.size());
+            for (Object o : c) {
+                if (o instanceof String) {
+                    other.add((String) o);
+                }
             }
         }
-        if (newSet.size()==set.size()) {
-            return false;
+        boolean any = false;
+        for (int i = 0; i < used; ++i) {
+            String s = elements[i];
+            if (s!=null && other.findSlot(s, hashes[i]) >= 0 != retain) {
+                removeIndex(i);
+                any = true;
+            }
         }
-        this.set = newSet;
-        this.list = newList;
-        return true;
+        return any;
     }
 
     @Override
     public void clear() {
-        set.clear();
-        list.clear();
+        Arrays.fill(elements, 0, used, null);
+        Arrays.fill(table, EMPTY);
+        size = used = occupied = 0;
     }
 
     @Override
@@ -168,7 +329,16 @@ public class CIStringSet implements Set<String> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CIStringSet that = (CIStringSet) o;
-        return this.set.equals(that.set);
+        if (this.size!=that.size) {
+            return false;
+        }
+        for (int i = 0; i < that.used; ++i) {
+            String s = that.elements[i];
+            if (s!=null && this.findSlot(s, that.hashes[i]) < 0) {
+                return false;
+            }
+        }
+        return true;
         // Note that this set is not equal to any other implementation of set,
         // so it breaks the symmetry of equals with sets that think they can be equal
         // to any other set
@@ -176,7 +346,13 @@ public class CIStringSet implements Set<String> {
 
     @Override
     public int hashCode() {
-        return set.hashCode();
+        int h = 0;
+        for (int i = 0; i < used; ++i) {
+            if (elements[i]!=null) {
+                h += hashes[i];
+            }
+        }
+        return h;
     }
 
     public static CIStringSet of(String... strings) {
@@ -185,35 +361,39 @@ public class CIStringSet implements Set<String> {
 
     @Override
     public String toString() {
-        return "CIStringSet{"+String.join(", ", list)+"}";
+        return "CIStringSet{"+String.join(", ", toList())+"}";
     }
 
     private class Iter implements Iterator<String> {
-        int nextIndex = 0;   // index of next element to return
-        int lastIndex = -1;  // index of last element returned, or -1
+        int nextIndex = advance(0); // index of next element to return
+        int lastIndex = -1;         // index of last element returned, or -1
+
+        private int advance(int i) {
+            while (i < used && elements[i]==null) {
+                ++i;
+            }
+            return i;
+        }
 
         public boolean hasNext() {
-            return (nextIndex < size());
+            return (nextIndex < used);
         }
 
         public String next() {
             int i = nextIndex;
-            if (i < 0 || i >= size()) {
+            if (i >= used) {
                 throw new NoSuchElementException();
             }
-            nextIndex = i + 1;
+            nextIndex = advance(i + 1);
             lastIndex = i;
-            return list.get(i);
+            return elements[i];
         }
 
         public void remove() {
             if (lastIndex < 0) {
                 throw new IllegalStateException();
             }
-
-            String s = list.remove(lastIndex);
-            set.remove(s.toUpperCase());
-            nextIndex = lastIndex;
+            removeIndex(lastIndex);
             lastIndex = -1;
         }
     }
@@ -5,13 +5,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import uk.ac.sanger.storelight.model.Address;
 import uk.ac.sanger.storelight.model.GridDirection;
+import uk.ac.sanger.storelight.model.Item;
+import uk.ac.sanger.storelight.model.LocationDeletionRecord;
+import uk.ac.sanger.storelight.model.SubtreeCount;
 import uk.ac.sanger.storelight.repo.StoreDB;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
+import uk.ac.sanger.storelight.service.LocationSearchIndex;
+import uk.ac.sanger.storelight.service.SubtreeCountService;
 
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,6 +38,10 @@ public class IntegrationTests {
     private EntityManager entityManager;
     @Autowired
     private StoreDB db;
+    @Autowired
+    private LocationSearchIndex searchIndex;
+    @Autowired
+    private SubtreeCountService subtreeCountService;
 
     @Test
     @Transactional
@@ -91,6 +103,36 @@ public class IntegrationTests {
         assertMap(results.get(1), "barcode", barcode, "name", null, "description", null, "address", "A2");
     }
 
+    @Test
+    @Transactional
+    public void testAddLocations() throws Exception {
+        Object response = tester.post(tester.readResource("graphql/addfreezerlayout.graphql"));
+        List<Map<String, ?>> freezers = chainGetList(response, "data", "addLocations");
+        assertThat(freezers).hasSize(1);
+        Map<String, ?> freezerData = freezers.get(0);
+        assertEquals("Freezer Beta", freezerData.get("name"));
+        assertThat((String) freezerData.get("barcode")).startsWith("STO-");
+        assertEquals(5, freezerData.get("numChildren"));
+        List<Map<String, ?>> shelves = chainGetList(freezerData, "children");
+        assertThat(shelves.stream().map(sh -> (Object) sh.get("address"))).containsExactly("A1", "B1", "C1", "D1", "E1");
+        Map<String, ?> shelf = shelves.get(4);
+        assertEquals("Shelf 5", shelf.get("name"));
+        List<Map<String, ?>> racks = chainGetList(shelf, "children");
+        assertThat(racks).hasSize(8);
+        assertEquals(Map.of("name", "Rack 8", "address", "A8", "numChildren", 13), racks.get(7));
+
+        entityManager.flush();
+        Integer freezerId = (Integer) freezerData.get("id");
+        response = tester.post("{ location(location: {id:"+freezerId+"}) { children { children { children { barcode }}}}}");
+        List<Map<String, ?>> boxes = chainGetList(response, "data", "location", "children", 0, "children", 0, "children");
+        assertThat(boxes).hasSize(13);
+        assertThat(boxes.stream().map(b -> (Object) b.get("barcode")).distinct()).hasSize(13);
+
+        response = tester.post("mutation { addLocations(parentId: "+freezerId+", layout: [{address: \"F1\"}]) { id }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("Address outside the listed size of the parent: [F1].");
+    }
+
     private void assertMap(Map<String, String> map, String... kvs) {
         final int len = kvs.length;
         for (int i = 0; i < len; i += 2) {
@@ -128,6 +170,122 @@ public class IntegrationTests {
         assertEquals(GridDirection.DownRight.name(), chainGet(info, "direction"));
     }
 
+    @Test
+    @Transactional
+    public void testLocationByPath() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Path freezer\", size: {numRows: 2, numColumns: 2}," +
+                " children: [{name: \"Shelf {n}\", repeat: 2, children: [{address: \"A1\"}]}, {address: \"B2\"}]}])" +
+                " { id, children { id, children { id }}}}");
+        Map<String, ?> freezer = chainGet(response, "data", "addLocations", 0);
+        Integer shelf2Id = chainGet(freezer, "children", 1, "id");
+        Integer boxId = chainGet(freezer, "children", 1, "children", 0, "id");
+        Integer rackId = chainGet(freezer, "children", 2, "id");
+
+        response = tester.post("{ locationByPath(path: \"path freezer/shelf 2 / A1\") { id }}");
+        assertEquals(boxId, chainGet(response, "data", "locationByPath", "id"));
+        response = tester.post("{ locationByPath(path: \"Path freezer / B2\") { id }}");
+        assertEquals(rackId, chainGet(response, "data", "locationByPath", "id"));
+        response = tester.post("{ locationByPath(path: \"Path freezer / Shelf 3\") { id }}");
+        assertNull(chainGet(response, "data", "locationByPath"));
+
+        tester.post("mutation { editLocation(location: {id:"+shelf2Id+"}, change: {name: \"Top shelf\"}) { id }}");
+        tester.post("mutation { editLocation(location: {id:"+rackId+"}, change: {parentId: "+shelf2Id+"}) { id }}");
+        response = tester.post("{ locationByPath(path: \"Path freezer / Top shelf / A1\") { id }}");
+        assertEquals(boxId, chainGet(response, "data", "locationByPath", "id"));
+        response = tester.post("{ locationByPath(path: \"Path freezer / Top shelf / B2\") { id }}");
+        assertEquals(rackId, chainGet(response, "data", "locationByPath", "id"));
+        response = tester.post("{ locationByPath(path: \"Path freezer / Shelf 2 / A1\") { id }}");
+        assertNull(chainGet(response, "data", "locationByPath"));
+
+        tester.post("mutation { editLocation(location: {id:"+shelf2Id+"}, change: {name: \"Shelf 1\"}) { id }}");
+        response = tester.post("{ locationByPath(path: \"Path freezer / Shelf 1\") { id }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("matches more than one location");
+    }
+
+    @Test
+    @Transactional
+    public void testStoredQualifiedName() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Name freezer\"," +
+                " children: [{name: \"Shelf {n}\", repeat: 2, children: [{name: \"Box\"}]}]}])" +
+                " { id, barcode, children { id, children { id }}}}");
+        Map<String, ?> freezer = chainGet(response, "data", "addLocations", 0);
+        String freezerBarcode = (String) freezer.get("barcode");
+        Integer freezerId = (Integer) freezer.get("id");
+        Integer shelf1Id = chainGet(freezer, "children", 0, "id");
+        Integer shelf2Id = chainGet(freezer, "children", 1, "id");
+        Integer boxId = chainGet(freezer, "children", 0, "children", 0, "id");
+        assertEquals(freezerBarcode+" Name freezer / Shelf 1 / Box", storedQualifiedName(boxId));
+
+        tester.post("mutation { editLocation(location: {id:"+freezerId+"}, change: {name: \"Old freezer\"}) { id }}");
+        tester.post("mutation { editLocation(location: {id:"+shelf1Id+"}, change: {parentId: "+shelf2Id+"}) { id }}");
+        assertEquals(freezerBarcode+" Old freezer / Shelf 2 / Shelf 1 / Box", storedQualifiedName(boxId));
+        response = tester.post("{ location(location: {id:"+boxId+"}) { qualifiedNameWithFirstBarcode }}");
+        assertEquals(freezerBarcode+" Old freezer / Shelf 2 / Shelf 1 / Box",
+                chainGet(response, "data", "location", "qualifiedNameWithFirstBarcode"));
+    }
+
+    private String storedQualifiedName(Integer locationId) {
+        entityManager.flush();
+        return entityManager.createQuery("select l.qualifiedName from Location l where l.id = ?1", String.class)
+                .setParameter(1, locationId)
+                .getSingleResult();
+    }
+
+    @Test
+    @Transactional
+    public void testSearchLocations() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Search freezer\"," +
+                " children: [{name: \"Shelf {n}\", repeat: 2, children: [{name: \"Box\", description: \"Smith RNA\"}]}]}," +
+                " {name: \"Smith RNA box\"}]) { id, children { id, children { id }}}}");
+        Integer freezerId = chainGet(response, "data", "addLocations", 0, "id");
+        Integer box1Id = chainGet(response, "data", "addLocations", 0, "children", 0, "children", 0, "id");
+        Integer box2Id = chainGet(response, "data", "addLocations", 0, "children", 1, "children", 0, "id");
+        Integer otherId = chainGet(response, "data", "addLocations", 1, "id");
+        entityManager.flush();
+        // Changes to the index wait for the transaction to commit, which never happens in this test
+        searchIndex.rebuild();
+
+        response = tester.post("{ searchLocations(text: \"smith rna\") { id }}");
+        assertThat(chainGetList(response, "data", "searchLocations")).containsExactly(
+                Map.of("id", otherId), Map.of("id", box1Id), Map.of("id", box2Id)
+        );
+        response = tester.post("{ searchLocations(text: \"smi\", under: {id:"+freezerId+"}, first: 1) { id }}");
+        assertThat(chainGetList(response, "data", "searchLocations")).containsExactly(Map.of("id", box1Id));
+        response = tester.post("{ searchLocations(text: \"smith\", first: 0) { id }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("The number of results must be between 1 and");
+    }
+
+    @Test
+    @Transactional
+    public void testEditLocations() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Rack\", size: {numRows: 2, numColumns: 2}," +
+                " direction: RightDown, children: [{name: \"Box {n}\", address: \"A1\", repeat: 2}]}])" +
+                " { id, children { id, barcode }}}");
+        Integer rackId = chainGet(response, "data", "addLocations", 0, "id");
+        List<Map<String, ?>> boxes = chainGetList(response, "data", "addLocations", 0, "children");
+        Integer box1Id = (Integer) boxes.get(0).get("id");
+        String box2Barcode = (String) boxes.get(1).get("barcode");
+        entityManager.flush();
+
+        String mutation = "mutation { editLocations(edits: [" +
+                "{location: {id: "+box1Id+"}, change: {address: \"A2\", name: \"Box A\"}}," +
+                "{location: {barcode: \""+box2Barcode+"\"}, change: {address: \"A1\"}}" +
+                "]) { id, name, address, parent { id }}}";
+        response = tester.post(mutation);
+        List<Map<String, ?>> edited = chainGetList(response, "data", "editLocations");
+        assertThat(edited).hasSize(2);
+        assertEquals(Map.of("id", box1Id, "name", "Box A", "address", "A2", "parent", Map.of("id", rackId)), edited.get(0));
+        assertEquals("A1", edited.get(1).get("address"));
+
+        entityManager.flush();
+        response = tester.post("mutation { editLocations(edits: [{location: {id: "+rackId+"}, change: {parentId: "+box1Id+"}}])" +
+                " { id }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("Locations would be inside themselves:");
+    }
+
     @Test
     @Transactional
     public void testAddressIndex() throws Exception {
@@ -146,6 +304,16 @@ public class IntegrationTests {
         assertEquals(addressIndex, result.get("addressIndex"));
     }
 
+    @Test
+    @Transactional
+    public void testAddressAt() throws Exception {
+        LocationIdentifier li = makeFreezer("graphql/addsizedfreezer.graphql");
+        String query = "{ location(location: {id: "+li.getId()+"}) { addressAt(index: 6), addresses(from: 2, count: 3) }}";
+        Object response = tester.post(query);
+        assertEquals("B3", chainGet(response, "data", "location", "addressAt"));
+        assertEquals(List.of("A2", "A3", "B1"), chainGet(response, "data", "location", "addresses"));
+    }
+
     @Test
     @Transactional
     public void testStoreUnstoreBarcode() throws Exception {
@@ -262,6 +430,54 @@ public class IntegrationTests {
         assertThat(storedList).containsOnly(storedItems);
     }
 
+    @Test
+    @Transactional
+    public void testBulkStore() throws Exception {
+        LocationIdentifier li1 = makeFreezer("graphql/addsizedfreezer.graphql");
+        LocationIdentifier li2 = makeFreezer();
+        String toStore = "[{barcode:\"ITEM-1\", address:\"A1\"}, {barcode:\"ITEM-2\", address:\"B3\"}," +
+                " {barcode:\"ITEM-3\", location:{barcode:\""+li2.getBarcode()+"\"}}]";
+        String mutation = "mutation { bulkStore(store:"+toStore+", location:{id:"+li1.getId()+"}, chunkSize:1) " +
+                "{ numStored, numLocations, numChunks }}";
+        Object response = tester.post(mutation);
+        assertEquals(Map.of("numStored", 3, "numLocations", 2, "numChunks", 2),
+                chainGet(response, "data", "bulkStore"));
+
+        String getStoredQuery = tester.readResource("graphql/getstored.graphql")
+                .replace("[]", "[\"ITEM-1\",\"ITEM-2\",\"ITEM-3\"]");
+        response = tester.post(getStoredQuery);
+        assertThat(chainGetList(response, "data", "stored")).containsOnly(
+                storedMap("ITEM-1", Map.of("id", li1.getId()), "A1", 1),
+                storedMap("ITEM-2", Map.of("id", li1.getId()), "B3", 6),
+                storedMap("ITEM-3", Map.of("id", li2.getId()), null, null)
+        );
+
+        response = tester.post(mutation.replace("ITEM-1", "ITEM-4"));
+        assertThat(chainGet(response, "errors", 0, "message").toString()).contains("Address already occupied: A1");
+    }
+
+    @Test
+    @Transactional
+    public void testBulkStoreIntoAddressOfMovedItem() throws Exception {
+        LocationIdentifier li1 = makeFreezer("graphql/addsizedfreezer.graphql");
+        LocationIdentifier li2 = makeFreezer();
+        tester.post("mutation { storeBarcode(barcode: \"ITEM-X\", location: {id:"+li1.getId()+"}, address: \"A1\") { barcode }}");
+        String toStore = "[{barcode:\"ITEM-Y\", address:\"A1\"}, {barcode:\"ITEM-X\", location:{id:"+li2.getId()+"}}]";
+        Object response = tester.post("mutation { bulkStore(store:"+toStore+", location:{id:"+li1.getId()+"}, chunkSize:1) " +
+                "{ numStored, numLocations, numChunks }}");
+        assertEquals(Map.of("numStored", 2, "numLocations", 2, "numChunks", 1),
+                chainGet(response, "data", "bulkStore"));
+
+        entityManager.flush();
+        entityManager.clear();
+        Item itemY = db.getItemRepo().findByBarcode("ITEM-Y").orElseThrow();
+        assertEquals(li1.getId(), itemY.getLocation().getId());
+        assertEquals(new Address(1, 1), itemY.getAddress());
+        Item itemX = db.getItemRepo().findByBarcode("ITEM-X").orElseThrow();
+        assertEquals(li2.getId(), itemX.getLocation().getId());
+        assertNull(itemX.getAddress());
+    }
+
     @Test
     @Transactional
     public void testEmpty() throws Exception {
@@ -292,6 +508,433 @@ public class IntegrationTests {
         assertThat(chainGetList(response, "data", "location", "stored")).isEmpty();
     }
 
+    @Test
+    @Transactional
+    public void testRearrange() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Rack\", size: {numRows: 1, numColumns: 3}," +
+                " direction: RightDown, children: [{name: \"Box {n}\", address: \"A1\", repeat: 3}]}])" +
+                " { id, children { id }}}");
+        Integer rackId = chainGet(response, "data", "addLocations", 0, "id");
+        List<Integer> boxIds = chainGetList(response, "data", "addLocations", 0, "children").stream()
+                .map(box -> (Integer) ((Map<?, ?>) box).get("id"))
+                .collect(Collectors.toList());
+        entityManager.flush();
+
+        // rotate the three boxes
+        String mutation = "mutation { rearrange(parent: {id: "+rackId+"}, moves: [" +
+                "{location: {id: "+boxIds.get(0)+"}, address: \"A2\"}," +
+                "{location: {id: "+boxIds.get(1)+"}, address: \"A3\"}," +
+                "{location: {id: "+boxIds.get(2)+"}, address: \"A1\"}" +
+                "]) { id, children { name, address }}}";
+        response = tester.post(mutation);
+        assertEquals(rackId, chainGet(response, "data", "rearrange", "id"));
+        assertThat(chainGetList(response, "data", "rearrange", "children")).containsExactlyInAnyOrder(
+                Map.of("name", "Box 1", "address", "A2"),
+                Map.of("name", "Box 2", "address", "A3"),
+                Map.of("name", "Box 3", "address", "A1")
+        );
+
+        entityManager.flush();
+        response = tester.post("mutation { rearrange(parent: {id: "+rackId+"}, moves: [" +
+                "{location: {id: "+boxIds.get(0)+"}, address: \"A1\"}]) { id }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("Address used by more than one location in");
+    }
+
+    @Test
+    @Transactional
+    public void testEmptyRecursive() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Freezer\"," +
+                " children: [{name: \"Shelf {n}\", repeat: 2, children: [{name: \"Box\"}]}]}])" +
+                " { id, barcode, children { id, children { id }}}}");
+        Map<String, ?> freezer = chainGet(response, "data", "addLocations", 0);
+        Integer shelfId = chainGet(freezer, "children", 0, "id");
+        Integer boxId = chainGet(freezer, "children", 1, "children", 0, "id");
+        LocationIdentifier other = makeFreezer();
+        String toStore = "[{barcode:\"ITEM-1\", location:{id:"+shelfId+"}}, {barcode:\"ITEM-2\", location:{id:"+boxId+"}}," +
+                " {barcode:\"ITEM-3\", location:{id:"+boxId+"}}, {barcode:\"ITEM-4\", location:{id:"+other.getId()+"}}]";
+        tester.post("mutation { store(store:"+toStore+", location:{id:"+shelfId+"}) { numStored }}");
+        entityManager.flush();
+
+        response = tester.post("mutation { emptyRecursive(location:{barcode:\""+freezer.get("barcode")+"\"}," +
+                " includeItems: true) { numLocations, numUnstored, unstored { barcode, location { id }}}}");
+        Map<String, ?> result = chainGet(response, "data", "emptyRecursive");
+        assertEquals(5, result.get("numLocations"));
+        assertEquals(3, result.get("numUnstored"));
+        assertThat(chainGetList(result, "unstored")).containsExactlyInAnyOrder(
+                Map.of("barcode", "ITEM-1", "location", Map.of("id", shelfId)),
+                Map.of("barcode", "ITEM-2", "location", Map.of("id", boxId)),
+                Map.of("barcode", "ITEM-3", "location", Map.of("id", boxId))
+        );
+
+        entityManager.flush();
+        entityManager.clear();
+        String getStoredQuery = tester.readResource("graphql/getstored.graphql")
+                .replace("[]", "[\"ITEM-1\",\"ITEM-2\",\"ITEM-3\",\"ITEM-4\"]");
+        response = tester.post(getStoredQuery);
+        assertThat(chainGetList(response, "data", "stored")).hasSize(1);
+        long numUnstoreRecords = StreamSupport.stream(db.getStoreRecordRepo().findAll().spliterator(), false)
+                .filter(record -> record.getLocationId()==null)
+                .count();
+        assertEquals(3, numUnstoreRecords);
+        response = tester.post("mutation { emptyRecursive(location:{id:"+other.getId()+"}) { numUnstored, unstored { barcode }}}");
+        assertEquals((Integer) 1, chainGet(response, "data", "emptyRecursive", "numUnstored"));
+        assertNull(chainGet(response, "data", "emptyRecursive", "unstored"));
+    }
+
+    @Test
+    @Transactional
+    public void testDeleteLocation() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Freezer\"," +
+                " children: [{name: \"Shelf {n}\", repeat: 3, children: [{name: \"Box {n}\", repeat: 2}]}]}])" +
+                " { id, children { id, children { id }}}}");
+        Map<String, ?> freezer = chainGet(response, "data", "addLocations", 0);
+        Integer freezerId = (Integer) freezer.get("id");
+        Integer shelfId = chainGet(freezer, "children", 0, "id");
+        Integer boxId = chainGet(freezer, "children", 1, "children", 0, "id");
+        tester.post("mutation { storeBarcode(barcode: \"ITEM-1\", location: {id:"+boxId+"}) { barcode }}");
+        entityManager.flush();
+
+        response = tester.post("mutation { deleteLocation(location: {id:"+freezerId+"}) { numLocations }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("an item is stored inside it.");
+
+        response = tester.post("mutation { deleteLocation(location: {id:"+shelfId+"}) { numLocations, numUnstored }}");
+        assertEquals(Map.of("numLocations", 3, "numUnstored", 0), chainGet(response, "data", "deleteLocation"));
+
+        response = tester.post("mutation { deleteLocation(location: {id:"+freezerId+"}, unstore: true) { numLocations, numUnstored }}");
+        assertEquals(Map.of("numLocations", 7, "numUnstored", 1), chainGet(response, "data", "deleteLocation"));
+
+        entityManager.flush();
+        entityManager.clear();
+        assertFalse(db.getLocationRepo().findById(freezerId).isPresent());
+        assertFalse(db.getLocationRepo().findById(boxId).isPresent());
+        assertFalse(db.getItemRepo().findByBarcode("ITEM-1").isPresent());
+
+        List<LocationDeletionRecord> records = new ArrayList<>();
+        db.getLocationDeletionRecordRepo().findAll().forEach(records::add);
+        assertThat(records).hasSize(10);
+        LocationDeletionRecord shelfRecord = records.stream()
+                .filter(rec -> rec.getLocationId().equals(shelfId))
+                .findAny().orElseThrow();
+        assertEquals("Shelf 1", shelfRecord.getName());
+        assertEquals(freezerId, shelfRecord.getParentId());
+        assertThat(shelfRecord.getBarcode()).startsWith("STO-");
+        assertThat(records.stream().map(LocationDeletionRecord::getLocationId)).contains(freezerId, boxId);
+    }
+
+    @Test
+    @Transactional
+    public void testTransfer() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [" +
+                "{name: \"Plate {n}\", repeat: 2, size: {numRows: 1, numColumns: 2}}," +
+                "{name: \"Big plate\", size: {numRows: 2, numColumns: 4}}]) { id }}");
+        List<Integer> ids = chainGetList(response, "data", "addLocations").stream()
+                .map(loc -> (Integer) ((Map<?,?>) loc).get("id"))
+                .collect(Collectors.toList());
+        String toStore = "[{barcode:\"ITEM-1\", location:{id:"+ids.get(0)+"}, address:\"A1\"}," +
+                " {barcode:\"ITEM-2\", location:{id:"+ids.get(0)+"}, address:\"A2\"}," +
+                " {barcode:\"ITEM-3\", location:{id:"+ids.get(1)+"}, address:\"A2\"}]";
+        tester.post("mutation { store(store:"+toStore+", location:{id:"+ids.get(0)+"}) { numStored }}");
+        entityManager.flush();
+
+        response = tester.post("mutation { transfer(sources: [{id:"+ids.get(0)+"}, {id:"+ids.get(1)+"}]," +
+                " destination: {id:"+ids.get(2)+"}, mapping: Identity) { numTransferred }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString())
+                .contains("Address mapped to by more than one item: [A2].");
+
+        response = tester.post("mutation { transfer(sources: [{id:"+ids.get(0)+"}, {id:"+ids.get(1)+"}]," +
+                " destination: {id:"+ids.get(2)+"}, mapping: Quadrant) { numTransferred, destination { id }}}");
+        assertEquals(Map.of("numTransferred", 3, "destination", Map.of("id", ids.get(2))),
+                chainGet(response, "data", "transfer"));
+
+        entityManager.flush();
+        entityManager.clear();
+        String getStoredQuery = tester.readResource("graphql/getstored.graphql")
+                .replace("[]", "[\"ITEM-1\",\"ITEM-2\",\"ITEM-3\"]")
+                .replace("addressIndex", "");
+        response = tester.post(getStoredQuery);
+        Map<String, Integer> destLocation = Map.of("id", ids.get(2));
+        assertThat(chainGetList(response, "data", "stored")).containsExactlyInAnyOrder(
+                Map.of("barcode", "ITEM-1", "address", "A1", "location", destLocation),
+                Map.of("barcode", "ITEM-2", "address", "A3", "location", destLocation),
+                Map.of("barcode", "ITEM-3", "address", "A4", "location", destLocation)
+        );
+        long numTransferRecords = StreamSupport.stream(db.getStoreRecordRepo().findAll().spliterator(), false)
+                .filter(record -> ids.get(2).equals(record.getLocationId()))
+                .count();
+        assertEquals(3, numTransferRecords);
+    }
+
+    @Test
+    @Transactional
+    public void testStoredByPrefix() throws Exception {
+        LocationIdentifier freezer = makeFreezer();
+        String toStore = "[{barcode:\"PFX-3\"}, {barcode:\"pfx-1\"}, {barcode:\"PFX-2\"}, {barcode:\"PFY-1\"}]";
+        tester.post("mutation { store(store:"+toStore+", location:{id:"+freezer.getId()+"}) { numStored }}");
+        entityManager.flush();
+
+        String query = "{ storedByPrefix(prefix: \"pfx\", first: 2AFTER) { items { barcode, location { id }}, endCursor, hasNextPage }}";
+        Object response = tester.post(query.replace("AFTER", ""));
+        Map<String, ?> page = chainGet(response, "data", "storedByPrefix");
+        assertThat(chainGetList(page, "items")).containsExactly(
+                Map.of("barcode", "pfx-1", "location", Map.of("id", freezer.getId())),
+                Map.of("barcode", "PFX-2", "location", Map.of("id", freezer.getId()))
+        );
+        assertEquals("PFX-2", page.get("endCursor"));
+        assertEquals(true, page.get("hasNextPage"));
+
+        response = tester.post(query.replace("AFTER", ", after: \"PFX-2\""));
+        page = chainGet(response, "data", "storedByPrefix");
+        assertThat(chainGetList(page, "items")).containsExactly(Map.of("barcode", "PFX-3", "location", Map.of("id", freezer.getId())));
+        assertEquals(false, page.get("hasNextPage"));
+
+        response = tester.post("{ storedByPrefix(prefix: \" \") { endCursor }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString()).contains("No barcode prefix given.");
+    }
+
+    @Test
+    @Transactional
+    public void testPaginatedContents() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Rack\", size: {numRows: 2, numColumns: 2}," +
+                " children: [{address: \"B1\"}, {address: \"A2\"}, {name: \"Loose\"}]}]) { id }}");
+        Integer rackId = chainGet(response, "data", "addLocations", 0, "id");
+        String toStore = "[{barcode:\"ITEM-1\", address:\"B2\"}, {barcode:\"ITEM-2\"}, {barcode:\"ITEM-3\", address:\"A1\"}]";
+        tester.post("mutation { store(store:"+toStore+", location:{id:"+rackId+"}) { numStored }}");
+        entityManager.flush();
+        entityManager.clear();
+
+        String query = "{ location(location: {id:"+rackId+"}) { numStored, numChildren," +
+                " storedPage(first: 2AFTER) { items { barcode }, endCursor, hasNextPage, totalCount }," +
+                " childrenPage(first: 2) { items { address, name }, hasNextPage, totalCount }}}";
+        response = tester.post(query.replace("AFTER", ""));
+        Map<String, ?> loc = chainGet(response, "data", "location");
+        assertEquals(3, loc.get("numStored"));
+        assertEquals(3, loc.get("numChildren"));
+        Map<String, ?> page = chainGet(loc, "storedPage");
+        assertThat(chainGetList(page, "items")).containsExactly(Map.of("barcode", "ITEM-3"), Map.of("barcode", "ITEM-1"));
+        assertEquals(true, page.get("hasNextPage"));
+        assertEquals(3, page.get("totalCount"));
+        Map<String, ?> childPage = chainGet(loc, "childrenPage");
+        assertThat(chainGetList(childPage, "items").stream().map(child -> (Object) ((Map<?,?>) child).get("address")))
+                .containsExactly("A2", "B1");
+        assertEquals(true, childPage.get("hasNextPage"));
+        assertEquals(3, childPage.get("totalCount"));
+
+        response = tester.post(query.replace("AFTER", ", after: \""+page.get("endCursor")+"\""));
+        page = chainGet(response, "data", "location", "storedPage");
+        assertThat(chainGetList(page, "items")).containsExactly(Map.of("barcode", "ITEM-2"));
+        assertEquals(false, page.get("hasNextPage"));
+    }
+
+    @Test
+    @Transactional
+    public void testRegionQueries() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Region rack\", size: {numRows: 3, numColumns: 3}," +
+                " children: [{address: \"C3\"}, {address: \"A2\"}, {name: \"Loose\"}]}]) { id }}");
+        Integer rackId = chainGet(response, "data", "addLocations", 0, "id");
+        String toStore = "[{barcode:\"ITEM-1\", address:\"B2\"}, {barcode:\"ITEM-2\"}, {barcode:\"ITEM-3\", address:\"A1\"}," +
+                " {barcode:\"ITEM-4\", address:\"C1\"}]";
+        tester.post("mutation { store(store:"+toStore+", location:{id:"+rackId+"}) { numStored }}");
+        entityManager.flush();
+        entityManager.clear();
+
+        response = tester.post("{ location(location: {id:"+rackId+"}) { stored(region: \"B2:A1\") { barcode }," +
+                " children(region: \"A1:C2\") { address }}}");
+        Map<String, ?> loc = chainGet(response, "data", "location");
+        assertThat(chainGetList(loc, "stored")).containsExactly(Map.of("barcode", "ITEM-3"), Map.of("barcode", "ITEM-1"));
+        assertThat(chainGetList(loc, "children")).containsExactly(Map.of("address", "A2"));
+
+        response = tester.post("{ location(location: {id:"+rackId+"}) { stored { barcode }, children { address }}}");
+        loc = chainGet(response, "data", "location");
+        assertThat(chainGetList(loc, "stored")).hasSize(4);
+        assertThat(chainGetList(loc, "children")).hasSize(3);
+
+        response = tester.post("{ location(location: {id:"+rackId+"}) { stored(region: \"A1-B2\") { barcode }}}");
+        assertEquals("Exception while fetching data (/location/stored) : Invalid region string: A1-B2",
+                chainGet(response, "errors", 0, "message"));
+    }
+
+    @Test
+    @Transactional
+    public void testReconcile() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Audit rack\"," +
+                " children: [{name: \"Box {n}\", repeat: 2, size: {numRows: 2, numColumns: 2}}]}])" +
+                " { id, children { id, barcode }}}");
+        Map<String, ?> rack = chainGet(response, "data", "addLocations", 0);
+        Integer rackId = (Integer) rack.get("id");
+        Integer box1Id = chainGet(rack, "children", 0, "id");
+        Integer box2Id = chainGet(rack, "children", 1, "id");
+        String box2Barcode = chainGet(rack, "children", 1, "barcode");
+        tester.post("mutation { store(store: [{barcode:\"ITEM-1\", address:\"A1\"}, {barcode:\"ITEM-2\", address:\"A2\"}," +
+                " {barcode:\"ITEM-3\", location:{id:"+box2Id+"}, address:\"B2\"}], location:{id:"+box1Id+"}) { numStored }}");
+        entityManager.flush();
+
+        String scanned = "[{barcode:\"item-1\", address:\"A1\"}, {barcode:\"ITEM-2\", address:\"B1\"}," +
+                " {barcode:\"ITEM-4\"}]";
+        response = tester.post("{ reconcile(location:{id:"+box1Id+"}, scanned:"+scanned+") { numScanned, numExpected," +
+                " numMatched, missing { barcode }, unexpected { barcode, expectedLocation { id }, scannedLocation { id }}," +
+                " misplaced { barcode, expectedAddress, scannedAddress }}}");
+        Map<String, ?> result = chainGet(response, "data", "reconcile");
+        assertEquals(3, result.get("numScanned"));
+        assertEquals(2, result.get("numExpected"));
+        assertEquals(1, result.get("numMatched"));
+        assertThat(chainGetList(result, "missing")).isEmpty();
+        assertThat(chainGetList(result, "unexpected")).hasSize(1);
+        assertEquals("ITEM-4", chainGet(result, "unexpected", 0, "barcode"));
+        assertNull(chainGet(result, "unexpected", 0, "expectedLocation"));
+        assertEquals(box1Id, chainGet(result, "unexpected", 0, "scannedLocation", "id"));
+        assertThat(chainGetList(result, "misplaced")).containsExactly(
+                Map.of("barcode", "ITEM-2", "expectedAddress", "A2", "scannedAddress", "B1"));
+
+        scanned = "[{barcode:\"ITEM-1\", location:{id:"+box1Id+"}}, {barcode:\"ITEM-2\", location:{barcode:\""
+                + box2Barcode+"\"}}]";
+        response = tester.post("{ reconcile(location:{id:"+rackId+"}, scanned:"+scanned+", recursive: true) { numMatched," +
+                " missing { barcode, expectedLocation { id }, expectedAddress }, misplaced { barcode, scannedLocation { id }}}}");
+        result = chainGet(response, "data", "reconcile");
+        assertEquals(1, result.get("numMatched"));
+        assertThat(chainGetList(result, "missing")).containsExactly(
+                Map.of("barcode", "ITEM-3", "expectedLocation", Map.of("id", box2Id), "expectedAddress", "B2"));
+        assertThat(chainGetList(result, "misplaced")).containsExactly(
+                Map.of("barcode", "ITEM-2", "scannedLocation", Map.of("id", box2Id)));
+
+        response = tester.post("{ reconcile(location:{id:"+rackId+"}, scanned:"+scanned+") { numMatched }}");
+        assertThat(chainGet(response, "errors", 0, "message").toString()).contains("Locations not inside");
+    }
+
+    @Test
+    @Transactional
+    public void testOccupancy() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Occupancy rack\"," +
+                " children: [{name: \"Box\", size: {numRows: 2, numColumns: 3}, direction: RightDown}, {name: \"Bag\"}]}])" +
+                " { children { id }}}");
+        Integer boxId = chainGet(response, "data", "addLocations", 0, "children", 0, "id");
+        Integer bagId = chainGet(response, "data", "addLocations", 0, "children", 1, "id");
+        tester.post("mutation { store(store: [{barcode:\"ITEM-1\", address:\"A2\"}, {barcode:\"ITEM-2\", address:\"B3\"}," +
+                " {barcode:\"ITEM-3\"}], location:{id:"+boxId+"}) { numStored }}");
+        entityManager.flush();
+        entityManager.clear();
+
+        response = tester.post("{ location(location:{id:"+boxId+"}) { occupancy }}");
+        assertEquals(Base64.getEncoder().encodeToString(new byte[] { 0x44 }), chainGet(response, "data", "location", "occupancy"));
+        response = tester.post("{ location(location:{id:"+bagId+"}) { occupancy }}");
+        assertNull(chainGet(response, "data", "location", "occupancy"));
+    }
+
+    @Test
+    @Transactional
+    public void testStoredUnder() throws Exception {
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Under freezer\"," +
+                " children: [{name: \"Shelf\", children: [{name: \"Box\"}]}]}]) { id, children { id, children { id }}}}");
+        Map<String, ?> freezer = chainGet(response, "data", "addLocations", 0);
+        Integer freezerId = (Integer) freezer.get("id");
+        Integer shelfId = chainGet(freezer, "children", 0, "id");
+        Integer boxId = chainGet(freezer, "children", 0, "children", 0, "id");
+        tester.post("mutation { store(store: [{barcode:\"ITEM-1\"}, {barcode:\"ITEM-2\", location:{id:"+shelfId+"}}," +
+                " {barcode:\"ITEM-3\", address:\"A1\"}], location:{id:"+boxId+"}) { numStored }}");
+        entityManager.flush();
+        entityManager.clear();
+
+        String query = "{ storedUnder(location:{id:"+freezerId+"}, first: 2AFTER) { items { barcode, location { id }, address }," +
+                " endCursor, hasNextPage }}";
+        response = tester.post(query.replace("AFTER", ""));
+        Map<String, ?> page = chainGet(response, "data", "storedUnder");
+        assertThat(chainGetList(page, "items").stream().map(item -> (Object) ((Map<?,?>) item).get("barcode")))
+                .containsExactly("ITEM-2", "ITEM-1");
+        assertEquals(true, page.get("hasNextPage"));
+        assertEquals(shelfId, chainGet(page, "items", 0, "location", "id"));
+
+        response = tester.post(query.replace("AFTER", ", after: \""+page.get("endCursor")+"\""));
+        page = chainGet(response, "data", "storedUnder");
+        assertThat(chainGetList(page, "items")).containsExactly(
+                Map.of("barcode", "ITEM-3", "location", Map.of("id", boxId), "address", "A1"));
+        assertEquals(false, page.get("hasNextPage"));
+
+        response = tester.post("{ storedUnder(location:{id:"+boxId+"}) { items { barcode }}}");
+        assertThat(chainGetList(response, "data", "storedUnder", "items")).containsExactly(
+                Map.of("barcode", "ITEM-1"), Map.of("barcode", "ITEM-3"));
+    }
+
+    @Test
+    @Transactional
+    public void testNumStoredUnder() throws Exception {
+        // The counts were built when the application started
+        assertTrue(db.getSubtreeCountRepo().findById(new SubtreeCount.Key(0, 0)).isPresent());
+        Object response = tester.post("mutation { addLocations(layout: [{name: \"Count freezer\"," +
+                " children: [{name: \"Shelf {n}\", repeat: 2, children: [{name: \"Box\"}]}]}])" +
+                " { id, children { id, children { id }}}}");
+        Map<String, ?> freezer = chainGet(response, "data", "addLocations", 0);
+        Integer freezerId = (Integer) freezer.get("id");
+        Integer shelf1Id = chainGet(freezer, "children", 0, "id");
+        Integer box1Id = chainGet(freezer, "children", 0, "children", 0, "id");
+        Integer shelf2Id = chainGet(freezer, "children", 1, "id");
+        Integer box2Id = chainGet(freezer, "children", 1, "children", 0, "id");
+        Integer otherId = makeFreezer().getId();
+        List<Integer> ids = List.of(freezerId, shelf1Id, box1Id, shelf2Id, box2Id, otherId);
+
+        String toStore = "[{barcode:\"ITEM-1\"}, {barcode:\"ITEM-2\"}, {barcode:\"ITEM-3\", location:{id:"+box2Id+"}}," +
+                " {barcode:\"ITEM-4\", location:{id:"+shelf1Id+"}}]";
+        tester.post("mutation { store(store:"+toStore+", location:{id:"+box1Id+"}) { numStored }}");
+        assertThat(numStoredUnder(ids)).containsExactly(4, 3, 2, 1, 1, 0);
+
+        tester.post("mutation { storeBarcode(barcode: \"ITEM-1\", location: {id:"+box2Id+"}) { barcode }}");
+        assertThat(numStoredUnder(ids)).containsExactly(4, 2, 1, 2, 2, 0);
+
+        tester.post("mutation { unstoreBarcode(barcode: \"ITEM-2\") { barcode }}");
+        assertThat(numStoredUnder(ids)).containsExactly(3, 1, 0, 2, 2, 0);
+
+        tester.post("mutation { editLocation(location: {id:"+box2Id+"}, change: {parentId: "+otherId+"}) { id }}");
+        assertThat(numStoredUnder(ids)).containsExactly(1, 1, 0, 0, 2, 2);
+
+        tester.post("mutation { transfer(sources: [{id:"+box2Id+"}], destination: {id:"+box1Id+"}) { numTransferred }}");
+        entityManager.flush();
+        entityManager.clear(); // the transfer is a bulk update, so any items already loaded are out of date
+        assertThat(numStoredUnder(ids)).containsExactly(3, 3, 2, 0, 0, 0);
+
+        subtreeCountService.rebuild();
+        assertThat(numStoredUnder(ids)).containsExactly(3, 3, 2, 0, 0, 0);
+
+        tester.post("mutation { unstoreBarcodes(barcodes: [\"ITEM-3\"]) { numUnstored }}");
+        assertThat(numStoredUnder(ids)).containsExactly(2, 2, 1, 0, 0, 0);
+
+        tester.post("mutation { emptyRecursive(location: {id:"+shelf1Id+"}) { numUnstored }}");
+        assertThat(numStoredUnder(ids)).containsExactly(0, 0, 0, 0, 0, 0);
+
+        tester.post("mutation { storeBarcode(barcode: \"ITEM-5\", location: {id:"+box2Id+"}) { barcode }}");
+        assertThat(numStoredUnder(ids)).containsExactly(0, 0, 0, 0, 1, 1);
+        tester.post("mutation { deleteLocation(location: {id:"+otherId+"}, unstore: true) { numUnstored }}");
+        assertThat(db.getSubtreeCountRepo().sumByLocationIdIn(List.of(otherId, box2Id))).isEmpty();
+    }
+
+    private List<Integer> numStoredUnder(List<Integer> locationIds) throws Exception {
+        List<Integer> counts = new ArrayList<>(locationIds.size());
+        for (Integer id : locationIds) {
+            Object response = tester.post("{ location(location: {id:"+id+"}) { numStoredUnder }}");
+            counts.add(chainGet(response, "data", "location", "numStoredUnder"));
+        }
+        return counts;
+    }
+
+    @Test
+    @Transactional
+    public void testLocations() throws Exception {
+        LocationIdentifier freezer1 = makeFreezer();
+        LocationIdentifier freezer2 = makeFreezer();
+        Object response = tester.post("{ locations(identifiers: [{barcode: \""+freezer2.getBarcode().toLowerCase()+"\"}," +
+                " {id: -1}, {id: "+freezer1.getId()+"}, {barcode: \"STO-NOPE\"}, {id: "+freezer2.getId()+"}])" +
+                " { locations { id, barcode }, unknownIds, unknownBarcodes }}");
+        Map<String, ?> result = chainGet(response, "data", "locations");
+        List<Map<String, ?>> locations = chainGet(result, "locations");
+        assertThat(locations).hasSize(5);
+        assertEquals(freezer2.getId(), chainGet(locations, 0, "id"));
+        assertNull(locations.get(1));
+        assertEquals(freezer1.getBarcode(), chainGet(locations, 2, "barcode"));
+        assertNull(locations.get(3));
+        assertEquals(freezer2.getBarcode(), chainGet(locations, 4, "barcode"));
+        assertEquals(List.of(-1), result.get("unknownIds"));
+        assertEquals(List.of("STO-NOPE"), result.get("unknownBarcodes"));
+    }
+
     @Test
     @Transactional
     public void testStoreAtAddressAndGetStored() throws Exception {
@@ -353,6 +996,13 @@ public class IntegrationTests {
         return map;
     }
 
+    private static Map<String, Object> storedMap(String barcode, Map<String, ?> location, String address,
+                                                 Integer addressIndex) {
+        Map<String, Object> map = storedMap(barcode, location, address);
+        map.put("addressIndex", addressIndex);
+        return map;
+    }
+
     private LocationIdentifier makeFreezer() throws Exception {
         return makeFreezer("graphql/addfreezer.graphql");
     }
@@ -0,0 +1,46 @@
+package uk.ac.sanger.storelight.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link BarcodeSeed}
+ * @author dr6
+ */
+public class TestBarcodeSeed {
+    @Test
+    public void testToBarcode() {
+        assertEquals("STO-001F", BarcodeSeed.toBarcode("STO-", 1));
+        assertEquals("STO-0219", BarcodeSeed.toBarcode("STO-", 0x21));
+        BarcodeSeed seed = new BarcodeSeed();
+        seed.setId(0x21);
+        assertEquals("STO-0219", seed.toBarcode("STO-"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints={0, 1, 0x21, 0xFFF, 0x1000, 0xABCDE, Integer.MAX_VALUE})
+    public void testDecodeRoundTrip(int seed) {
+        String barcode = BarcodeSeed.toBarcode(BarcodeSeed.STORE_PREFIX, seed);
+        assertEquals(seed, BarcodeSeed.decodeStoreBarcode(barcode));
+        assertEquals(seed, BarcodeSeed.decodeStoreBarcode(barcode.toLowerCase()));
+        assertEquals(seed, BarcodeSeed.decode("X-", "X-"+barcode.substring(4)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings={"STO-001E", "STO-01F", "STO-0001F", "STO-00G0", "STO-", "STO-1", "ST-001F", "001F",
+            "STO-001F ", "STO-FFFFFFFFF0", "STO-80000000A"})
+    public void testDecodeInvalid(String barcode) {
+        assertNull(BarcodeSeed.decodeStoreBarcode(barcode));
+    }
+
+    @Test
+    public void testHasStorePrefix() {
+        assertTrue(BarcodeSeed.hasStorePrefix("STO-1"));
+        assertTrue(BarcodeSeed.hasStorePrefix("sto-"));
+        assertFalse(BarcodeSeed.hasStorePrefix("ST-1"));
+        assertFalse(BarcodeSeed.hasStorePrefix(null));
+    }
+}
@@ -1,13 +1,14 @@
 package uk.ac.sanger.storelight.model;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.*;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
 import java.util.function.BiPredicate;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -40,6 +41,115 @@ public class TestLocation {
         }).map(Arguments::of);
     }
 
+    @ParameterizedTest
+    @MethodSource("pathKeyData")
+    public void testUpdatePathKey(Location loc, String expectedKey) {
+        for (Location ancestor : loc.getHierarchy()) {
+            ancestor.updatePathKey();
+        }
+        assertEquals(expectedKey, loc.getPathKey());
+        assertFalse(loc.updatePathKey());
+    }
+
+    static Stream<Arguments> pathKeyData() {
+        Location freezer = makeLoc(1, null, "Freezer", null);
+        Location shelf = makeLoc(2, freezer, "Shelf 1", null);
+        Location box = makeLoc(3, shelf, null, new Address(2,3));
+        Location folder = makeLoc(4, shelf, null, null);
+        Location cupboard = makeLoc(5, null, null, null);
+        Location drawer = makeLoc(6, cupboard, null, new Address(1,4));
+        Location longRoot = makeLoc(7, null, "X".repeat(Location.MAX_PATH_KEY), null);
+        Location longChild = makeLoc(8, longRoot, "Y", null);
+
+        return Arrays.stream(new Object[][] {
+                { freezer, "FREEZER" },
+                { shelf, "FREEZER/SHELF 1" },
+                { box, "FREEZER/SHELF 1/B3" },
+                { folder, "FREEZER/SHELF 1/STO-4" },
+                { cupboard, "STO-5" },
+                { drawer, "STO-5/A4" },
+                { longRoot, "X".repeat(Location.MAX_PATH_KEY) },
+                { longChild, null },
+        }).map(Arguments::of);
+    }
+
+    @Test
+    public void testUpdatePathKeyAfterChange() {
+        Location freezer = makeLoc(1, null, "Freezer", null);
+        Location shelf = makeLoc(2, freezer, "Shelf 1", null);
+        freezer.updatePathKey();
+        shelf.updatePathKey();
+        shelf.setName(null);
+        shelf.setAddress(new Address(1,2));
+        assertTrue(shelf.updatePathKey());
+        assertEquals("FREEZER/A2", shelf.getPathKey());
+        freezer.setName("Old freezer");
+        assertTrue(freezer.updatePathKey());
+        assertTrue(shelf.updatePathKey());
+        assertEquals("OLD FREEZER/A2", shelf.getPathKey());
+    }
+
+    @Test
+    public void testUpdateQualifiedName() {
+        Location freezer = makeLoc(1, null, "Freezer", null);
+        Location shelf = makeLoc(2, freezer, "Shelf 1", null);
+        Location box = makeLoc(3, shelf, null, new Address(2,3));
+        assertTrue(freezer.updateQualifiedName());
+        assertTrue(shelf.updateQualifiedName());
+        assertFalse(shelf.updateQualifiedName());
+        assertEquals("STO-1 Freezer / Shelf 1 / B3", box.getQualifiedNameWithFirstBarcode());
+
+        freezer.setName(null);
+        shelf.setName("Top shelf");
+        // The stored names are used until they are updated
+        assertEquals("STO-1 Freezer / Shelf 1 / B3", box.getQualifiedNameWithFirstBarcode());
+        assertTrue(freezer.updateQualifiedName());
+        assertTrue(shelf.updateQualifiedName());
+        assertTrue(box.updateQualifiedName());
+        assertEquals("STO-1 / Top shelf / B3", box.getQualifiedNameWithFirstBarcode());
+    }
+
+    @Test
+    public void testUpdateQualifiedNameWithoutPathKey() {
+        Location longRoot = makeLoc(7, null, "X".repeat(Location.MAX_PATH_KEY), null);
+        Location longChild = makeLoc(8, longRoot, "Y", null);
+        for (Location loc : List.of(longRoot, longChild)) {
+            loc.updatePathKey();
+            loc.updateQualifiedName();
+        }
+        longRoot.setName("Z".repeat(Location.MAX_PATH_KEY));
+        assertTrue(longRoot.updatePathKey());
+        assertTrue(longRoot.updateQualifiedName());
+        assertFalse(longChild.updatePathKey());
+        assertTrue(longChild.updateQualifiedName());
+        assertEquals("STO-7 "+"Z".repeat(Location.MAX_PATH_KEY)+" / Y", longChild.getQualifiedNameWithFirstBarcode());
+    }
+
+    @ParameterizedTest
+    @CsvSource(value={
+            "Freezer 3 / Shelf 2 / Rack B, FREEZER 3/SHELF 2/RACK B",
+            "'  freezer 3/shelf 2 /b1 ', FREEZER 3/SHELF 2/B1",
+            "sto-5, STO-5",
+            "Freezer // Shelf,",
+            "Freezer /,",
+            "'  ',",
+            ",",
+    })
+    public void testPathKey(String path, String expected) {
+        assertEquals(expected, Location.pathKey(path));
+    }
+
+    @Test
+    public void testPathKeyIgnoresDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals("FRIDGE/SHELF I", Location.pathKey("fridge / shelf i"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("getHierarchyArgs")
     public void testGetHierarchy(List<Location> expected) {
@@ -75,6 +185,58 @@ public class TestLocation {
         }
     }
 
+    @ParameterizedTest
+    @EnumSource(GridDirection.class)
+    public void testAddressAt(GridDirection direction) {
+        Location loc = new Location();
+        loc.setSize(new Size(3, 4));
+        loc.setDirection(direction);
+        for (int i = 1; i <= 12; ++i) {
+            Address address = loc.addressAt(i);
+            assertNotNull(address);
+            assertEquals(i, loc.addressIndex(address));
+        }
+        assertNull(loc.addressAt(0));
+        assertNull(loc.addressAt(13));
+        assertThat(loc.addresses(1, 20)).containsExactlyElementsOf(loc.getSize().addresses(direction).collect(toList()));
+        assertThat(loc.addresses(5, 3)).containsExactly(loc.addressAt(5), loc.addressAt(6), loc.addressAt(7));
+        assertThat(loc.addresses(11, 5)).containsExactly(loc.addressAt(11), loc.addressAt(12));
+        assertThat(loc.addresses(13, 5)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @EnumSource(GridDirection.class)
+    public void testFreeAddresses(GridDirection direction) {
+        Location loc = new Location(1, "STO-1", null, null, null, null, new Size(2, 2), direction);
+        loc.getStored().add(new Item(10, "ITEM-10", loc, loc.addressAt(1)));
+        loc.getStored().add(new Item(11, "ITEM-11", loc, loc.addressAt(3)));
+        loc.getStored().add(new Item(12, "ITEM-12", loc, null));
+        List<Address> free = new ArrayList<>();
+        loc.freeAddresses().forEachRemaining(free::add);
+        assertThat(free).containsExactly(loc.addressAt(2), loc.addressAt(4));
+
+        loc.setDirection(null);
+        assertFalse(loc.freeAddresses().hasNext());
+        assertThat(loc.addresses(1, 4)).isEmpty();
+        assertNull(loc.addressAt(1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(GridDirection.class)
+    public void testOccupancy(GridDirection direction) {
+        Location loc = new Location(1, "STO-1", null, null, null, null, new Size(3, 4), direction);
+        List<Address> addresses = Arrays.asList(loc.addressAt(12), loc.addressAt(1), null, new Address(4, 1),
+                new Address(1, 5), loc.addressAt(9), loc.addressAt(1));
+        assertArrayEquals(new byte[] { (byte) 0x80, (byte) 0x90 }, loc.occupancy(addresses));
+        assertArrayEquals(new byte[2], loc.occupancy(List.of()));
+
+        loc.setSize(new Size(2, 4));
+        assertArrayEquals(new byte[] { (byte) 0xff }, loc.occupancy(loc.addresses(1, 8)));
+
+        loc.setDirection(null);
+        assertNull(loc.occupancy(addresses));
+    }
+
     private static BiPredicate<Address, Address> addressOrderPredicate(GridDirection direction) {
         switch (direction) {
             case RightDown:
@@ -0,0 +1,51 @@
+package uk.ac.sanger.storelight.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests {@link Region}
+ * @author dr6
+ */
+public class TestRegion {
+    @ParameterizedTest
+    @CsvSource({
+            "A1:D24, A1, D24",
+            "D24:A1, A1, D24",
+            "A24:D1, A1, D24",
+            "' B3 ', B3, B3",
+            "'2,3:4,1', B1, D3",
+    })
+    public void testValueOf(String string, String topLeft, String bottomRight) {
+        Region region = Region.valueOf(string);
+        assertEquals(Address.valueOf(topLeft), region.getTopLeft());
+        assertEquals(Address.valueOf(bottomRight), region.getBottomRight());
+        assertEquals(new Region(Address.valueOf(bottomRight), Address.valueOf(topLeft)), region);
+        assertEquals(topLeft+":"+bottomRight, region.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings={"", ":", "A1:", "A1:B2:C3", "A1-B2", "Z"})
+    public void testValueOfInvalid(String string) {
+        assertThat(assertThrows(IllegalArgumentException.class, () -> Region.valueOf(string)))
+                .hasMessage("Invalid region string: "+string);
+    }
+
+    @Test
+    public void testContains() {
+        Region region = Region.valueOf("B2:C4");
+        assertThat(region.contains(new Address(2, 2))).isTrue();
+        assertThat(region.contains(new Address(3, 4))).isTrue();
+        assertThat(region.contains(new Address(2, 3))).isTrue();
+        assertThat(region.contains(new Address(1, 3))).isFalse();
+        assertThat(region.contains(new Address(4, 3))).isFalse();
+        assertThat(region.contains(new Address(3, 1))).isFalse();
+        assertThat(region.contains(new Address(3, 5))).isFalse();
+    }
+}
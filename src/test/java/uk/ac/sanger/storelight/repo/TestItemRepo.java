@@ -0,0 +1,184 @@
+package uk.ac.sanger.storelight.repo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import uk.ac.sanger.storelight.model.Address;
+import uk.ac.sanger.storelight.model.Item;
+import uk.ac.sanger.storelight.model.Location;
+import uk.ac.sanger.storelight.model.Region;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link ItemRepo}
+ * @author dr6
+ */
+@SpringBootTest
+public class TestItemRepo {
+    @Autowired
+    ItemRepo itemRepo;
+    @Autowired
+    LocationRepo locationRepo;
+    @Autowired
+    EntityManager entityManager;
+
+    @Test
+    @Transactional
+    public void testFindByBarcodeIgnoresCase() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        Item item = itemRepo.save(new Item("Item-1", loc));
+        assertEquals("ITEM-1", item.getBarcodeKey());
+        assertEquals(item, itemRepo.findByBarcode("iTEM-1").orElseThrow());
+        assertThat(itemRepo.findAllByBarcodeIn(List.of("item-1", "ITEM-1", "ITEM-2"))).containsExactly(item);
+        assertFalse(itemRepo.findByBarcode("ITEM-2").isPresent());
+
+        assertThrows(DataIntegrityViolationException.class, () -> itemRepo.save(new Item("ITEM-1", loc)));
+    }
+
+    @Test
+    @Transactional
+    public void testFindAndDeleteInChunks() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        final int numItems = RepoUtils.MAX_IN_SIZE * 2 + 500;
+        List<String> barcodes = IntStream.range(0, numItems).mapToObj(i -> "item-"+i).collect(toList());
+        itemRepo.saveAll(barcodes.stream().map(bc -> new Item(bc, loc)).collect(toList()));
+        entityManager.flush();
+
+        List<String> upperBarcodes = barcodes.stream().map(String::toUpperCase).collect(toList());
+        assertThat(itemRepo.findAllByBarcodeIn(upperBarcodes)).hasSize(numItems);
+
+        itemRepo.deleteAllByBarcodeIn(upperBarcodes.subList(0, numItems - 1));
+        entityManager.flush();
+        assertThat(itemRepo.findAllByBarcodeIn(barcodes)).extracting(Item::getBarcode)
+                .containsExactly(barcodes.get(numItems - 1));
+    }
+
+    @Test
+    @Transactional
+    public void testBulkDeleteByBarcodeKeyIn() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        itemRepo.saveAll(List.of(new Item("item-1", loc), new Item("item-2", loc), new Item("item-3", loc)));
+        entityManager.flush();
+        assertEquals(2, itemRepo.bulkDeleteByBarcodeKeyIn(List.of("ITEM-1", "ITEM-3", "ITEM-4")));
+        entityManager.clear();
+        assertThat(itemRepo.findAllByBarcodeIn(List.of("item-1", "item-2", "item-3"))).extracting(Item::getBarcode)
+                .containsExactly("item-2");
+    }
+
+    @Test
+    @Transactional
+    public void testFindPageByBarcodeKeyLike() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        itemRepo.saveAll(Stream.of("AB-3", "ab-1", "AB-2", "ABC", "A%B", "AXB", "B-1")
+                .map(bc -> new Item(bc, loc)).collect(toList()));
+        entityManager.flush();
+
+        assertThat(itemRepo.findPageByBarcodeKeyLike("AB%", "", PageRequest.of(0, 10)))
+                .extracting(Item::getBarcode).containsExactly("ab-1", "AB-2", "AB-3", "ABC");
+        assertThat(itemRepo.findPageByBarcodeKeyLike("AB%", "AB-1", PageRequest.of(0, 2)))
+                .extracting(Item::getBarcode).containsExactly("AB-2", "AB-3");
+        assertThat(itemRepo.findPageByBarcodeKeyLike("A!%%", "", PageRequest.of(0, 10)))
+                .extracting(Item::getBarcode).containsExactly("A%B");
+        assertThat(itemRepo.findPageByBarcodeKeyLike("C%", "", PageRequest.of(0, 10))).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    public void testFindAddressedAndUnaddressedPages() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        Location other = locationRepo.save(new Location(null, "STO-002E"));
+        Item b1 = itemRepo.save(new Item(null, "ITEM-B1", loc, new Address(2, 1)));
+        Item a2 = itemRepo.save(new Item(null, "ITEM-A2", loc, new Address(1, 2)));
+        Item none1 = itemRepo.save(new Item(null, "ITEM-N1", loc, null));
+        Item a1 = itemRepo.save(new Item(null, "ITEM-A1", loc, new Address(1, 1)));
+        Item a2again = itemRepo.save(new Item(null, "ITEM-A2X", loc, new Address(1, 2)));
+        Item none2 = itemRepo.save(new Item(null, "ITEM-N2", loc, null));
+        itemRepo.save(new Item(null, "ITEM-OTHER", other, new Address(1, 1)));
+        entityManager.flush();
+
+        final Integer locId = loc.getId();
+        assertThat(itemRepo.findAddressedPage(locId, 0, 0, 0, PageRequest.of(0, 10)))
+                .containsExactly(a1, a2, a2again, b1);
+        assertThat(itemRepo.findAddressedPage(locId, 1, 2, a2.getId(), PageRequest.of(0, 10)))
+                .containsExactly(a2again, b1);
+        assertThat(itemRepo.findAddressedPage(locId, 1, 1, a1.getId(), PageRequest.of(0, 2)))
+                .containsExactly(a2, a2again);
+        assertThat(itemRepo.findUnaddressedPage(locId, 0, PageRequest.of(0, 10))).containsExactly(none1, none2);
+        assertThat(itemRepo.findUnaddressedPage(locId, none1.getId(), PageRequest.of(0, 10))).containsExactly(none2);
+        assertEquals(6, itemRepo.countByLocationId(locId));
+    }
+
+    @Test
+    @Transactional
+    public void testFindAllInRegion() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        Location other = locationRepo.save(new Location(null, "STO-002E"));
+        Item b2 = itemRepo.save(new Item(null, "ITEM-B2", loc, new Address(2, 2)));
+        Item a1 = itemRepo.save(new Item(null, "ITEM-A1", loc, new Address(1, 1)));
+        Item a3 = itemRepo.save(new Item(null, "ITEM-A3", loc, new Address(1, 3)));
+        Item c2 = itemRepo.save(new Item(null, "ITEM-C2", loc, new Address(3, 2)));
+        itemRepo.save(new Item(null, "ITEM-N", loc, null));
+        itemRepo.save(new Item(null, "ITEM-OTHER", other, new Address(1, 1)));
+        entityManager.flush();
+
+        assertThat(itemRepo.findAllInRegion(loc.getId(), Region.valueOf("A1:B2"))).containsExactly(a1, b2);
+        assertThat(itemRepo.findAllInRegion(loc.getId(), Region.valueOf("C2:A2"))).containsExactly(b2, c2);
+        assertThat(itemRepo.findAllInRegion(loc.getId(), Region.valueOf("A1:C3"))).containsExactly(a1, a3, b2, c2);
+        assertThat(itemRepo.findAllInRegion(loc.getId(), Region.valueOf("D1:E3"))).isEmpty();
+
+        @SuppressWarnings("unchecked")
+        List<String> indexColumns = entityManager.createNativeQuery("select column_name from information_schema.indexes" +
+                " where table_name='ITEM' and index_name in (select index_name from information_schema.indexes" +
+                " where table_name='ITEM' and column_name='ROW_INDEX') order by ordinal_position").getResultList();
+        assertThat(indexColumns).containsExactly("LOCATION_ID", "ROW_INDEX", "COL_INDEX");
+    }
+
+    @Test
+    @Transactional
+    public void testFindAddressesByLocationId() {
+        Location loc = locationRepo.save(new Location(null, "STO-001F"));
+        Location other = locationRepo.save(new Location(null, "STO-002E"));
+        itemRepo.save(new Item(null, "ITEM-B2", loc, new Address(2, 2)));
+        itemRepo.save(new Item(null, "ITEM-A1", loc, new Address(1, 1)));
+        itemRepo.save(new Item(null, "ITEM-N", loc, null));
+        itemRepo.save(new Item(null, "ITEM-OTHER", other, new Address(1, 3)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(itemRepo.findAddressesByLocationId(loc.getId())).containsExactlyInAnyOrder(new Address(1, 1), new Address(2, 2));
+        assertThat(itemRepo.findAddressesByLocationId(-1)).isEmpty();
+    }
+
+    @Test
+    @Transactional
+    public void testFindPageInLocations() {
+        Location loc1 = locationRepo.save(new Location(null, "STO-001F"));
+        Location loc2 = locationRepo.save(new Location(null, "STO-002E"));
+        Location other = locationRepo.save(new Location(null, "STO-003D"));
+        Item item2a = itemRepo.save(new Item(null, "ITEM-2A", loc2, null));
+        Item item1a = itemRepo.save(new Item(null, "ITEM-1A", loc1, new Address(1, 1)));
+        Item item2b = itemRepo.save(new Item(null, "ITEM-2B", loc2, new Address(1, 1)));
+        Item item1b = itemRepo.save(new Item(null, "ITEM-1B", loc1, null));
+        itemRepo.save(new Item(null, "ITEM-OTHER", other, null));
+        entityManager.flush();
+
+        List<Integer> ids = List.of(loc1.getId(), loc2.getId());
+        assertThat(itemRepo.findPageInLocations(ids, 0, 0, PageRequest.of(0, 10))).containsExactly(item1a, item1b, item2a, item2b);
+        assertThat(itemRepo.findPageInLocations(ids, 0, 0, PageRequest.of(0, 3))).containsExactly(item1a, item1b, item2a);
+        assertThat(itemRepo.findPageInLocations(ids, loc1.getId(), item1a.getId(), PageRequest.of(0, 10)))
+                .containsExactly(item1b, item2a, item2b);
+        assertThat(itemRepo.findPageInLocations(ids, loc2.getId(), item2a.getId(), PageRequest.of(0, 10)))
+                .containsExactly(item2b);
+    }
+}
@@ -6,7 +6,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import uk.ac.sanger.storelight.model.*;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
 import javax.transaction.Transactional;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -50,6 +52,82 @@ public class TestLocationRepo {
         assertThat(parent.getChildren()).containsOnly(loc1);
     }
 
+    @Test
+    @Transactional
+    public void testFindByBarcodeIgnoresCase() {
+        Location loc = locationRepo.save(new Location(null, "sto-001f"));
+        assertEquals("STO-001F", loc.getBarcodeKey());
+        assertEquals(loc, locationRepo.getByBarcode("STO-001F"));
+        assertThat(locationRepo.findAllByBarcodeIn(List.of("Sto-001F", "STO-002E"))).containsExactly(loc);
+        assertThrows(EntityNotFoundException.class, () -> locationRepo.getByBarcode("STO-002E"));
+    }
+
+    @Test
+    @Transactional
+    public void testFindByBarcodeUsesSeed() {
+        Location loc = locationRepo.save(new Location(null, "STO-0219"));
+        Location other = locationRepo.save(new Location(null, "OTHER-1"));
+        assertEquals(0x21, loc.getSeed());
+        assertNull(other.getSeed());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertEquals(loc.getId(), locationRepo.getByBarcode("sto-0219").getId());
+        assertEquals(other.getId(), locationRepo.getByBarcode("other-1").getId());
+        assertFalse(locationRepo.findByBarcode("STO-0218").isPresent()); // bad checksum
+        assertFalse(locationRepo.findByBarcode("STO-021").isPresent()); // malformed
+        assertThat(locationRepo.findAllByBarcodeIn(List.of("Other-1", "STO-0219", "STO-0218", "STO-")))
+                .extracting(Location::getId)
+                .containsExactlyInAnyOrder(loc.getId(), other.getId());
+    }
+
+    @Test
+    @Transactional
+    public void testFindSubtreeIds() {
+        Location root = locationRepo.save(new Location(null, "STO-ROOT"));
+        Location a = locationRepo.save(new Location(null, "STO-A", null, null, root, null, null, null));
+        Location b = locationRepo.save(new Location(null, "STO-B", null, null, root, null, null, null));
+        Location a1 = locationRepo.save(new Location(null, "STO-A1", null, null, a, null, null, null));
+        Location a1x = locationRepo.save(new Location(null, "STO-A1X", null, null, a1, null, null, null));
+        locationRepo.save(new Location(null, "STO-OTHER"));
+
+        List<Integer> ids = locationRepo.findSubtreeIds(root.getId());
+        assertThat(ids).hasSize(5);
+        assertEquals(root.getId(), ids.get(0));
+        assertThat(ids.subList(1, 3)).containsExactlyInAnyOrder(a.getId(), b.getId());
+        assertThat(ids.subList(3, 5)).containsExactly(a1.getId(), a1x.getId());
+        assertThat(locationRepo.findSubtreeIds(b.getId())).containsExactly(b.getId());
+
+        List<List<Integer>> levels = locationRepo.findSubtreeLevels(root.getId());
+        assertThat(levels).hasSize(4);
+        assertThat(levels.get(1)).containsExactlyInAnyOrder(a.getId(), b.getId());
+        assertThat(levels.get(3)).containsExactly(a1x.getId());
+    }
+
+    @Test
+    @Transactional
+    public void testFindAllByPath() {
+        Location freezer = new Location(null, "STO-F", "Freezer 1", null, null, null, null, null);
+        freezer.updatePathKey();
+        freezer = locationRepo.save(freezer);
+        Location box = new Location(null, "STO-B", null, null, freezer, new Address(2, 3), null, null);
+        box.updatePathKey();
+        box = locationRepo.save(box);
+        Location other = new Location(null, "STO-O", "Freezer 1", null, null, null, null, null);
+        other.updatePathKey();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(locationRepo.findAllByPath(" freezer 1 /b3")).extracting(Location::getId).containsExactly(box.getId());
+        assertThat(locationRepo.findAllByPath("Freezer 1 / B4")).isEmpty();
+        assertThat(locationRepo.findAllByPath("Freezer 1 // B3")).isEmpty();
+        assertThat(locationRepo.findAllByPath("Freezer 1")).extracting(Location::getId).containsExactly(freezer.getId());
+
+        locationRepo.save(other);
+        assertThat(locationRepo.findAllByPath("FREEZER 1")).extracting(Location::getId)
+                .containsExactlyInAnyOrder(freezer.getId(), other.getId());
+    }
+
     private void checkLocation(Location location, Integer id, String barcode, String description, Integer parentId,
                                Address address, Size size, GridDirection direction) {
         if (id == null) {
@@ -0,0 +1,80 @@
+package uk.ac.sanger.storelight.service;
+
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.utils.CIStringSet;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark for the parallel validation used by {@link BulkStoreService}.
+ * This is not run as part of the test suite. Run it with something like:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=uk.ac.sanger.storelight.service.BulkStoreBenchmark -Dexec.args="100000 96"
+ * </pre>
+ * The arguments are the number of items and the number of items per location.
+ * It reports the time taken to check the address partitions using pools of 1, 2, 4... threads
+ * up to the number of available processors.
+ * @author dr6
+ */
+public class BulkStoreBenchmark {
+    private static final int WARMUP = 5, REPEATS = 20;
+
+    public static void main(String[] args) {
+        int numItems = (args.length > 0 ? Integer.parseInt(args[0]) : 100_000);
+        int perLocation = (args.length > 1 ? Integer.parseInt(args[1]) : 96);
+        int numRows = 8, numColumns = (perLocation + numRows - 1) / numRows;
+        Size size = new Size(numRows, numColumns);
+
+        Map<Integer, List<Item>> partitions = new LinkedHashMap<>();
+        Map<Integer, Map<Address, String>> occupants = new HashMap<>();
+        CIStringSet barcodes = new CIStringSet(numItems);
+        Location location = null;
+        for (int i = 0; i < numItems; ++i) {
+            int index = i % perLocation;
+            if (index==0) {
+                int id = i / perLocation + 1;
+                location = new Location(id, "STO-"+id, null, null, null, null, size, GridDirection.RightDown);
+                // Half the locations already have something in the last slot, which is being moved
+                if (id % 2 == 0) {
+                    String occupant = "ITEM-"+Math.min(i + perLocation - 1, numItems - 1);
+                    occupants.put(id, Map.of(new Address(numRows, numColumns), occupant));
+                }
+            }
+            String barcode = "ITEM-"+i;
+            barcodes.add(barcode);
+            Address address = location.addressAt(index + 1);
+            partitions.computeIfAbsent(location.getId(), k -> new ArrayList<>())
+                    .add(new Item(null, barcode, location, address));
+        }
+
+        StoreAddressChecker checker = new StoreAddressChecker();
+        System.out.printf("%d items in %d locations%n", numItems, partitions.size());
+        System.out.printf("%8s %12s %8s%n", "threads", "ms/check", "speedup");
+        final int maxThreads = Runtime.getRuntime().availableProcessors();
+        double baseline = 0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int i = 0; i < WARMUP; ++i) {
+                    checker.checkPartitions(partitions.values(), occupants, barcodes, pool);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < REPEATS; ++i) {
+                    checker.checkPartitions(partitions.values(), occupants, barcodes, pool);
+                }
+                double ms = (System.nanoTime() - start) / 1e6 / REPEATS;
+                if (threads==1) {
+                    baseline = ms;
+                }
+                System.out.printf("%8d %12.2f %8.2f%n", threads, ms, baseline / ms);
+            } finally {
+                pool.shutdown();
+            }
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+}
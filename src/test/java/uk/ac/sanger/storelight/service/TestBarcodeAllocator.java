@@ -0,0 +1,104 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.ac.sanger.storelight.model.BarcodeSeed;
+import uk.ac.sanger.storelight.repo.BarcodeSeedRepo;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link BarcodeAllocator}
+ * @author dr6
+ */
+public class TestBarcodeAllocator {
+    private static final int B = BarcodeAllocator.BLOCK_SIZE;
+
+    private BarcodeSeedRepo mockBarcodeSeedRepo;
+    private BarcodeAllocator allocator;
+    private int nextHi;
+
+    @BeforeEach
+    void setup() {
+        nextHi = 10;
+        mockBarcodeSeedRepo = mock(BarcodeSeedRepo.class);
+        when(mockBarcodeSeedRepo.saveAll(any())).then(invocation -> {
+            Iterable<BarcodeSeed> seeds = invocation.getArgument(0);
+            for (BarcodeSeed seed : seeds) {
+                seed.setId(nextHi++);
+            }
+            return seeds;
+        });
+        allocator = new BarcodeAllocator(mockBarcodeSeedRepo, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    public void testAllocateSeed() {
+        assertEquals(10 * B, allocator.allocateSeed());
+        assertEquals(10 * B + 1, allocator.allocateSeed());
+        verify(mockBarcodeSeedRepo, times(1)).saveAll(any());
+        for (int i = 2; i < B; ++i) {
+            assertEquals(10 * B + i, allocator.allocateSeed());
+        }
+        verify(mockBarcodeSeedRepo, times(1)).saveAll(any());
+        assertEquals(11 * B, allocator.allocateSeed());
+        verify(mockBarcodeSeedRepo, times(2)).saveAll(any());
+    }
+
+    @Test
+    public void testAllocateSeeds() {
+        assertEquals(10 * B, allocator.allocateSeed());
+        int[] seeds = allocator.allocateSeeds(2 * B + 3);
+        verify(mockBarcodeSeedRepo, times(2)).saveAll(any());
+        // the rest of block 10, then blocks 11 and 12 reserved together
+        assertArrayEquals(IntStream.range(10 * B + 1, 12 * B + 4).toArray(), seeds);
+        assertEquals(12 * B + 4, allocator.allocateSeed());
+        assertThat(allocator.allocateSeeds(0)).isEmpty();
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocateSeeds(-1));
+    }
+
+    @Test
+    public void testCreateStoreBarcodes() {
+        nextHi = 1;
+        assertEquals(BarcodeSeed.toBarcode(BarcodeSeed.STORE_PREFIX, B), allocator.createStoreBarcode());
+        assertEquals("STO-0219", allocator.createStoreBarcode());
+        assertThat(allocator.createStoreBarcodes(2))
+                .containsExactly(BarcodeSeed.toBarcode("STO-", B + 2), BarcodeSeed.toBarcode("STO-", B + 3));
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        final int numThreads = 4, perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>(numThreads);
+            for (int t = 0; t < numThreads; ++t) {
+                futures.add(executor.submit(() -> {
+                    int[] seeds = new int[perThread];
+                    for (int i = 0; i < perThread; ++i) {
+                        seeds[i] = (i % 2 == 0 ? allocator.allocateSeed() : allocator.allocateSeeds(1)[0]);
+                    }
+                    return seeds;
+                }));
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (Future<int[]> future : futures) {
+                for (int seed : future.get()) {
+                    assertTrue(seen.add(seed), "Repeated seed: "+seed);
+                }
+            }
+            assertThat(seen.stream().sorted().collect(toList())).hasSize(numThreads * perThread);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.ac.sanger.storelight.graphql.StoreRequestContext;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.*;
+import uk.ac.sanger.storelight.utils.CIStringSet;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link BulkStoreService}
+ * @author dr6
+ */
+public class TestBulkStoreService {
+    private EntityManager mockEntityManager;
+    private LocationRepo mockLocationRepo;
+    private ItemRepo mockItemRepo;
+    private StoreRecordRepo mockRecordRepo;
+    private ItemBarcodeValidator mockItemBarcodeValidator;
+    private BulkStoreService service;
+    private StoreRequestContext ctxt;
+
+    @BeforeEach
+    void setup() {
+        mockEntityManager = mock(EntityManager.class);
+        mockLocationRepo = mock(LocationRepo.class);
+        mockItemRepo = mock(ItemRepo.class);
+        mockRecordRepo = mock(StoreRecordRepo.class);
+        mockItemBarcodeValidator = mock(ItemBarcodeValidator.class);
+        StoreDB mockDb = mock(StoreDB.class);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockDb.getStoreRecordRepo()).thenReturn(mockRecordRepo);
+        service = new BulkStoreService(mockEntityManager, mock(PlatformTransactionManager.class),
+                mockDb, mockItemBarcodeValidator, new StoreAddressChecker(), mock(SubtreeCountService.class));
+        ctxt = new StoreRequestContext("apikey", "test", "tester");
+    }
+
+    @Test
+    public void testStore() {
+        Location loc1 = new Location(1, "STO-1", null, null, null, null, new Size(2, 2), null);
+        Location loc2 = new Location(2, "STO-2");
+        when(mockLocationRepo.findAllById(any())).thenReturn(List.of(loc1, loc2));
+        Address A1 = new Address(1, 1), A2 = new Address(1, 2);
+        List<StoreInput> sins = List.of(
+                new StoreInput("ITEM-1", new LocationIdentifier(1), A1),
+                new StoreInput("ITEM-2", null, null),
+                new StoreInput("ITEM-3", new LocationIdentifier(1), A2)
+        );
+        when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString()))
+                .thenReturn(CIStringSet.of("ITEM-1", "ITEM-2", "ITEM-3"));
+        when(mockItemRepo.findAddressedItemsInLocations(any())).thenReturn(List.of());
+
+        BulkStoreResult result = service.store(ctxt, sins, new LocationIdentifier(2), 2);
+        assertEquals(new BulkStoreResult(3, 2, 2), result);
+
+        verify(mockItemRepo).findAddressedItemsInLocations(List.of(1));
+        ArgumentCaptor<List<Item>> itemCaptor = genericCaptor();
+        verify(mockItemRepo, times(2)).saveAll(itemCaptor.capture());
+        List<List<Item>> chunks = itemCaptor.getAllValues();
+        assertThat(chunks.get(0).stream().map(Item::getBarcode)).containsExactly("ITEM-1", "ITEM-3");
+        assertThat(chunks.get(1).stream().map(Item::getBarcode)).containsExactly("ITEM-2");
+        assertSame(loc2, chunks.get(1).get(0).getLocation());
+        verify(mockItemRepo).deleteAllByBarcodeIn(List.of("ITEM-1", "ITEM-3"));
+        verify(mockItemRepo).deleteAllByBarcodeIn(List.of("ITEM-2"));
+        verify(mockRecordRepo, times(2)).saveAll(any());
+        verify(mockEntityManager, times(3)).detach(any(Item.class));
+    }
+
+    @Test
+    public void testStoreInvalid() {
+        Location loc1 = new Location(1, "STO-1", null, null, null, null, new Size(2, 2), null);
+        when(mockLocationRepo.findAllById(any())).thenReturn(List.of(loc1));
+        when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString()))
+                .thenReturn(CIStringSet.of("ITEM-1", "ITEM-2"));
+        Object[] occupant = { 1, 1, 1, "ITEM-0" };
+        when(mockItemRepo.findAddressedItemsInLocations(any())).thenReturn(List.<Object[]>of(occupant));
+        List<StoreInput> sins = List.of(
+                new StoreInput("ITEM-1", new LocationIdentifier(1), new Address(1, 1)),
+                new StoreInput("ITEM-2", new LocationIdentifier(1), new Address(1, 2))
+        );
+        assertThat(assertThrows(IllegalArgumentException.class, () -> service.store(ctxt, sins, null, null)))
+                .hasMessage("Address already occupied: A1 in location (id=1, barcode=\"STO-1\").");
+        verify(mockItemRepo, never()).saveAll(any());
+        verifyNoInteractions(mockRecordRepo);
+    }
+
+    @Test
+    public void testStoreMissingLocation() {
+        when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString())).thenReturn(CIStringSet.of("ITEM-1"));
+        List<StoreInput> sins = List.of(new StoreInput("ITEM-1", null, null));
+        assertThat(assertThrows(IllegalArgumentException.class, () -> service.store(ctxt, sins, null, null)))
+                .hasMessage("A location must be specified for each item.");
+        assertThat(assertThrows(IllegalArgumentException.class,
+                () -> service.store(ctxt, sins, new LocationIdentifier(1), 0)))
+                .hasMessage("Chunk size must be between 1 and "+BulkStoreService.MAX_CHUNK_SIZE+".");
+        verifyNoInteractions(mockItemRepo);
+    }
+
+    @Test
+    public void testStoreIntoAddressOfMovedItem() {
+        Location loc1 = new Location(1, "STO-1", null, null, null, null, new Size(2, 2), null);
+        Location loc2 = new Location(2, "STO-2");
+        Location loc3 = new Location(3, "STO-3");
+        when(mockLocationRepo.findAllById(any())).thenReturn(List.of(loc1, loc2, loc3));
+        when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString()))
+                .thenReturn(CIStringSet.of("ITEM-X", "ITEM-Y", "ITEM-Z"));
+        // ITEM-X is at A1 in loc1, and is being moved to loc2; ITEM-Y is being stored in its place
+        Object[] occupant = { 1, 1, 1, "item-x" };
+        when(mockItemRepo.findAddressedItemsInLocations(any())).thenReturn(List.<Object[]>of(occupant));
+        List<StoreInput> sins = List.of(
+                new StoreInput("ITEM-Y", new LocationIdentifier(1), new Address(1, 1)),
+                new StoreInput("ITEM-Z", new LocationIdentifier(3), null),
+                new StoreInput("ITEM-X", new LocationIdentifier(2), null)
+        );
+
+        BulkStoreResult result = service.store(ctxt, sins, null, 1);
+        assertEquals(new BulkStoreResult(3, 3, 2), result);
+        ArgumentCaptor<List<Item>> itemCaptor = genericCaptor();
+        verify(mockItemRepo, times(2)).saveAll(itemCaptor.capture());
+        List<List<Item>> chunks = itemCaptor.getAllValues();
+        assertThat(chunks.get(0).stream().map(Item::getBarcode)).containsExactly("ITEM-Y", "ITEM-X");
+        assertThat(chunks.get(1).stream().map(Item::getBarcode)).containsExactly("ITEM-Z");
+        verify(mockItemRepo).deleteAllByBarcodeIn(List.of("ITEM-Y", "ITEM-X"));
+    }
+
+    @Test
+    public void testLinkPartitions() {
+        Location loc1 = new Location(1, "STO-1");
+        Location loc2 = new Location(2, "STO-2");
+        Location loc3 = new Location(3, "STO-3");
+        Location loc4 = new Location(4, "STO-4");
+        Address A1 = new Address(1, 1), A2 = new Address(1, 2);
+        Map<Integer, List<Item>> partitions = new LinkedHashMap<>();
+        partitions.put(1, List.of(new Item(null, "ITEM-1", loc1, A1)));
+        partitions.put(2, List.of(new Item(null, "ITEM-2", loc2, A1), new Item(null, "ITEM-3", loc2, A2)));
+        partitions.put(3, List.of(new Item(null, "ITEM-4", loc3, null)));
+        partitions.put(4, List.of(new Item(null, "ITEM-5", loc4, null)));
+
+        assertThat(BulkStoreService.linkPartitions(partitions, Map.of())).containsExactlyElementsOf(partitions.values());
+        // Occupants not being moved, or moved within the same location, do not link anything
+        Map<Integer, Map<Address, String>> occupants = Map.of(1, Map.of(A1, "ITEM-0"), 2, Map.of(A2, "ITEM-2"));
+        assertThat(BulkStoreService.linkPartitions(partitions, occupants)).containsExactlyElementsOf(partitions.values());
+
+        // ITEM-1 is at loc2:A1 and ITEM-5 is at loc1:A1, so loc2 is linked to loc1, and loc1 to loc4
+        occupants = Map.of(1, Map.of(A1, "item-5"), 2, Map.of(A1, "ITEM-1"));
+        assertThat(BulkStoreService.linkPartitions(partitions, occupants).stream()
+                .map(items -> items.stream().map(Item::getBarcode).collect(toList())))
+                .containsExactly(List.of("ITEM-1", "ITEM-2", "ITEM-3", "ITEM-5"), List.of("ITEM-4"));
+    }
+
+    @Test
+    public void testMakeChunks() {
+        Location loc = new Location(1, "STO-1");
+        List<List<Item>> partitions = Stream.of(3, 1, 1, 4, 2)
+                .map(n -> Collections.nCopies(n, new Item(null, "X", loc, null)))
+                .collect(toList());
+        assertThat(BulkStoreService.makeChunks(partitions, 2).stream().map(List::size))
+                .containsExactly(3, 2, 4, 2);
+        assertThat(BulkStoreService.makeChunks(partitions, 100).stream().map(List::size))
+                .containsExactly(11);
+        assertThat(BulkStoreService.makeChunks(List.of(), 2)).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ArgumentCaptor<T> genericCaptor() {
+        return (ArgumentCaptor<T>) ArgumentCaptor.forClass(List.class);
+    }
+}
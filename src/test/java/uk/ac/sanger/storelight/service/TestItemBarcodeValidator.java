@@ -2,27 +2,36 @@ package uk.ac.sanger.storelight.service;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import uk.ac.sanger.storelight.config.ApiKeyConfig;
+import uk.ac.sanger.storelight.config.BarcodeRules;
 
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 /**
  * Tests {@link ItemBarcodeValidator}
  * @author dr6
  */
 public class TestItemBarcodeValidator {
+    ApiKeyConfig mockApiKeyConfig;
     ItemBarcodeValidator itemBarcodeValidator;
 
     @BeforeEach
     void setup() {
-        itemBarcodeValidator = new ItemBarcodeValidator();
+        mockApiKeyConfig = mock(ApiKeyConfig.class);
+        when(mockApiKeyConfig.getBarcodeRules(any())).thenReturn(BarcodeRules.DEFAULT);
+        itemBarcodeValidator = new ItemBarcodeValidator(mockApiKeyConfig);
     }
 
     @ParameterizedTest
@@ -56,4 +65,61 @@ public class TestItemBarcodeValidator {
                     strings[strings.length-1])
         );
     }
+
+    @ParameterizedTest
+    @MethodSource("appRulesArguments")
+    public void testValidateWithAppRules(String spec, List<String> barcodes, String expectedErrorMessage) {
+        when(mockApiKeyConfig.getBarcodeRules("app")).thenReturn(BarcodeRules.valueOf(spec));
+        if (expectedErrorMessage==null) {
+            assertThat(itemBarcodeValidator.validateItemBarcodes(barcodes.stream(), "app")).containsExactlyElementsOf(barcodes);
+        } else {
+            assertThat(assertThrows(IllegalArgumentException.class, () -> itemBarcodeValidator.validateItemBarcodes(barcodes.stream(), "app")))
+                    .hasMessage(expectedErrorMessage);
+        }
+    }
+
+    static Stream<Arguments> appRulesArguments() {
+        return Stream.of(
+                Arguments.of("min=4; max=8; chars=A-Z0-9-", List.of("ABC-123", "abc-124"), null),
+                Arguments.of("min=4; max=8", List.of("ABC", "ABCDEFGHI", "AB CD"), "Barcode too short: [\"ABC\"]. Barcode too long: [\"ABCDEFGHI\"]."),
+                Arguments.of("chars=A-Z0-9-", List.of("ABC-123", "ABC_123", "abc.1", "sto-1", " AB"),
+                        "Barcode has surrounding whitespace: [\" AB\"]. Barcodes cannot start with STO-: [\"sto-1\"]. " +
+                                "Barcodes contain invalid characters: [\"ABC_123\", \"abc.1\"].")
+        );
+    }
+
+    @Test
+    public void testBarcodeRulesValueOf() {
+        BarcodeRules rules = BarcodeRules.valueOf(" min=3 ;max=10; chars=a-c_- ");
+        assertEquals(3, rules.getMinLength());
+        assertEquals(10, rules.getMaxLength());
+        for (char ch : "abcABC_-".toCharArray()) {
+            assertTrue(rules.isAllowed(ch));
+        }
+        for (char ch : "dD .é".toCharArray()) {
+            assertFalse(rules.isAllowed(ch));
+        }
+        assertFalse(BarcodeRules.valueOf("").hasCharacterRestriction());
+        for (String invalid : new String[] { "min=1", "max=65", "min=8;max=4", "chars=", "chars=z-a", "colour=blue", "min", "max=x" }) {
+            assertThrows(IllegalArgumentException.class, () -> BarcodeRules.valueOf(invalid), invalid);
+        }
+    }
+
+    @Test
+    public void testParallelValidation() {
+        final int numBarcodes = ItemBarcodeValidator.PARALLEL_THRESHOLD * 3;
+        List<String> barcodes = IntStream.range(0, numBarcodes)
+                .mapToObj(i -> "ITEM-"+i)
+                .collect(toList());
+        assertThat(itemBarcodeValidator.validateItemBarcodes(barcodes, BarcodeRules.DEFAULT)).hasSize(numBarcodes);
+
+        List<String> badBarcodes = new ArrayList<>(barcodes);
+        badBarcodes.set(5, "X");
+        badBarcodes.set(numBarcodes - 1, "item-7");
+        badBarcodes.set(numBarcodes - 2, "STO-1");
+        badBarcodes.set(numBarcodes/2, " ITEM");
+        assertThat(assertThrows(IllegalArgumentException.class, () -> itemBarcodeValidator.validateItemBarcodes(badBarcodes, BarcodeRules.DEFAULT)))
+                .hasMessage("Barcode repeated: [\"item-7\"]. Barcode too short: [\"X\"]. " +
+                        "Barcode has surrounding whitespace: [\" ITEM\"]. Barcodes cannot start with STO-: [\"STO-1\"].");
+    }
 }
@@ -13,6 +13,7 @@ import java.util.stream.Stream;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -90,4 +91,19 @@ public class TestLocationCache {
                     .hasMessage("Unknown location barcode: [\"STO-404\"]");
         }
     }
+
+    @Test
+    public void testLookUpExisting() {
+        Stream<LocationIdentifier> liStream = Stream.of(1, 404, "sto-2", "STO-404")
+                .map(obj -> (obj instanceof String ? new LocationIdentifier((String) obj)
+                        : new LocationIdentifier((Integer) obj)));
+        LocationCache cache = new LocationCache(mockLocationRepo);
+        cache.lookUpExisting(liStream);
+        assertEquals(Set.of(1, 404), idsLookedUp);
+        assertEquals(Set.of("STO-2", "STO-404"), bcsLookedUp);
+        assertEquals(locations.get(0), cache.get(new LocationIdentifier(1)));
+        assertEquals(locations.get(1), cache.get(new LocationIdentifier("STO-2")));
+        assertNull(cache.get(new LocationIdentifier(404)));
+        assertNull(cache.get(new LocationIdentifier("STO-404")));
+    }
 }
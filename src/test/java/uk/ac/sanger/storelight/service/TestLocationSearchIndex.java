@@ -0,0 +1,192 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.sanger.storelight.model.Location;
+import uk.ac.sanger.storelight.repo.LocationRepo;
+import uk.ac.sanger.storelight.repo.StoreDB;
+import uk.ac.sanger.storelight.requests.LocationIdentifier;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link LocationSearchIndex}
+ * @author dr6
+ */
+public class TestLocationSearchIndex {
+    private LocationRepo mockLocationRepo;
+    private LocationSearchIndex index;
+
+    /**
+     * Sets up the index with these locations:
+     * <pre>
+     * 1 "Freezer Smith"
+     *   2 "Shelf 1" (RNA samples)
+     *     3 "Box" (Smith RNA)
+     *   4 "Smith RNA box"
+     * 5 "Smithers RNA"
+     * 6 "Cupboard" (Smithsonian)
+     * </pre>
+     */
+    @BeforeEach
+    void setup() {
+        StoreDB mockDb = mock(StoreDB.class);
+        mockLocationRepo = mock(LocationRepo.class);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockLocationRepo.findAllSearchFields()).thenReturn(List.of(
+                new Object[] { 1, null, "Freezer Smith", null },
+                new Object[] { 2, 1, "Shelf 1", "RNA samples" },
+                new Object[] { 3, 2, "Box", "Smith RNA" },
+                new Object[] { 4, 1, "Smith RNA box", null },
+                new Object[] { 5, null, "Smithers RNA", null },
+                new Object[] { 6, null, "Cupboard", "Smithsonian" }
+        ));
+        index = new LocationSearchIndex(mockDb);
+        index.rebuild();
+    }
+
+    @ParameterizedTest
+    @CsvSource(value={
+            "smith, 1;4;5;3;6",
+            "Smith RNA, 4;5;3",
+            "rna, 4;5;2;3",
+            "'rna, smith!', 4;5;3",
+            "box, 3;4",
+            "smithsonian, 6",
+            "freezer rna,",
+            "'  ',",
+            "x,",
+    })
+    public void testSearch(String text, String expectedIds) {
+        assertThat(index.search(text, null, 10)).containsExactlyElementsOf(ids(expectedIds));
+    }
+
+    @Test
+    public void testSearchUnderAndLimit() {
+        assertThat(index.search("rna", 1, 10)).containsExactly(4, 2, 3);
+        assertThat(index.search("rna", 2, 10)).containsExactly(3);
+        assertThat(index.search("rna", 3, 10)).isEmpty();
+        assertThat(index.search("smith", null, 2)).containsExactly(1, 4);
+    }
+
+    @Test
+    public void testIndexAndRemove() {
+        Location freezer = new Location(1, "STO-1", "Freezer Smith", null, null, null, null, null);
+        Location box = new Location(3, "STO-3", "Jones box", "DNA", freezer, null, null, null);
+        Location newLoc = new Location(7, "STO-7", "Smith DNA", null, null, null, null, null);
+        index.index(List.of(box, newLoc));
+        assertThat(index.search("smith rna", null, 10)).containsExactly(4, 5);
+        assertThat(index.search("dna", null, 10)).containsExactly(7, 3);
+        assertThat(index.search("box", 1, 10)).containsExactly(3, 4);
+        assertThat(index.search("jones", 2, 10)).isEmpty();
+
+        index.remove(List.of(4, 7));
+        assertThat(index.search("smith", null, 10)).containsExactly(1, 5, 6);
+        assertThat(index.search("dna", null, 10)).containsExactly(3);
+    }
+
+    @Test
+    public void testUpdatesWaitForCommit() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new TestTransactionManager());
+        Location jones = new Location(7, "STO-7", "Jones box", null, null, null, null, null);
+        transactionTemplate.executeWithoutResult(status -> {
+            index.index(List.of(jones));
+            index.remove(List.of(5));
+            status.setRollbackOnly();
+        });
+        assertThat(index.search("jones", null, 10)).isEmpty();
+        assertThat(index.search("smithers", null, 10)).containsExactly(5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            index.index(List.of(jones));
+            index.remove(List.of(5));
+            assertThat(index.search("jones", null, 10)).isEmpty();
+            assertThat(index.search("smithers", null, 10)).containsExactly(5);
+        });
+        assertThat(index.search("jones", null, 10)).containsExactly(7);
+        assertThat(index.search("smithers", null, 10)).isEmpty();
+    }
+
+    @Test
+    public void testRebuildKeepsUpdatesMadeDuringIt() {
+        List<Object[]> rows = mockLocationRepo.findAllSearchFields();
+        Location jones = new Location(5, "STO-5", "Jones RNA", null, null, null, null, null);
+        when(mockLocationRepo.findAllSearchFields()).then(invocation -> {
+            index.index(List.of(jones));
+            index.remove(List.of(6));
+            assertThat(index.search("jones", null, 10)).containsExactly(5);
+            return rows;
+        });
+        index.rebuild();
+        assertThat(index.search("jones", null, 10)).containsExactly(5);
+        assertThat(index.search("smithers", null, 10)).isEmpty();
+        assertThat(index.search("cupboard", null, 10)).isEmpty();
+        assertThat(index.search("smith", null, 10)).containsExactly(1, 4, 3);
+    }
+
+    @Test
+    public void testSearchLocations() {
+        Location loc1 = new Location(1, "STO-1");
+        Location loc4 = new Location(4, "STO-4");
+        when(mockLocationRepo.get(new LocationIdentifier("STO-1"))).thenReturn(loc1);
+        when(mockLocationRepo.findAllById(any())).thenReturn(List.of(loc1, loc4));
+        assertThat(index.searchLocations("smith", new LocationIdentifier("STO-1"), 5)).containsExactly(loc4);
+        verify(mockLocationRepo).findAllById(List.of(4, 3));
+        assertThat(index.searchLocations("freezer", null, 5)).containsExactly(loc1);
+        assertThat(index.searchLocations("nothing", null, 5)).isEmpty();
+
+        for (int first : new int[] { 0, LocationSearchIndex.MAX_RESULTS+1 }) {
+            assertThat(assertThrows(IllegalArgumentException.class, () -> index.searchLocations("smith", null, first)))
+                    .hasMessage("The number of results must be between 1 and "+LocationSearchIndex.MAX_RESULTS+".");
+        }
+    }
+
+    @Test
+    public void testWords() {
+        assertThat(LocationSearchIndex.words("The box-labelled  'Smith' RNA, the BOX.")).containsExactly(
+                "the", "box", "labelled", "smith", "rna"
+        );
+        assertThat(LocationSearchIndex.words(null)).isEmpty();
+    }
+
+    /**
+     * A transaction manager with no resources, so that transaction synchronizations run on commit and rollback
+     */
+    private static class TestTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {}
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {}
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {}
+    }
+
+    private static List<Integer> ids(String string) {
+        if (string==null) {
+            return List.of();
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (String part : string.split(";")) {
+            ids.add(Integer.valueOf(part));
+        }
+        return ids;
+    }
+}
@@ -1,15 +1,22 @@
 package uk.ac.sanger.storelight.service;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import uk.ac.sanger.storelight.graphql.StoreRequestContext;
 import uk.ac.sanger.storelight.model.*;
 import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.DeleteLocationResult;
+import uk.ac.sanger.storelight.requests.LocationEdit;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
 import uk.ac.sanger.storelight.requests.LocationInput;
+import uk.ac.sanger.storelight.requests.LocationLayout;
+import uk.ac.sanger.storelight.requests.LocationLookupResult;
+import uk.ac.sanger.storelight.requests.LocationMove;
 
 import javax.persistence.EntityNotFoundException;
 import java.util.*;
@@ -27,6 +34,11 @@ import static org.mockito.Mockito.*;
 public class TestLocationService {
     private static final String NEWBC = "STO-88";
     private LocationRepo mockLocationRepo;
+    private ItemRepo mockItemRepo;
+    private LocationDeletionRecordRepo mockDeletionRecordRepo;
+    private BarcodeAllocator mockBarcodeAllocator;
+    private UnstoreService mockUnstoreService;
+    private LocationSearchIndex mockSearchIndex;
     private LocationService locationService;
     private StoreRequestContext ctxt;
 
@@ -35,14 +47,51 @@ public class TestLocationService {
         StoreDB mockDb = mock(StoreDB.class);
         ctxt = new StoreRequestContext("apikey", "test", "tester");
         mockLocationRepo = mock(LocationRepo.class);
-        BarcodeSeedRepo mockBarcodeSeedRepo = mock(BarcodeSeedRepo.class);
-        when(mockDb.getBarcodeSeedRepo()).thenReturn(mockBarcodeSeedRepo);
+        mockBarcodeAllocator = mock(BarcodeAllocator.class);
+        mockItemRepo = mock(ItemRepo.class);
         when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        mockDeletionRecordRepo = mock(LocationDeletionRecordRepo.class);
+        when(mockDb.getLocationDeletionRecordRepo()).thenReturn(mockDeletionRecordRepo);
 
-        when(mockBarcodeSeedRepo.createStoreBarcode()).thenReturn(NEWBC);
+        when(mockBarcodeAllocator.createStoreBarcode()).thenReturn(NEWBC);
         when(mockLocationRepo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
-        locationService = spy(new LocationService(mockDb));
+        mockUnstoreService = mock(UnstoreService.class);
+        mockSearchIndex = mock(LocationSearchIndex.class);
+        locationService = spy(new LocationService(mockDb, mockBarcodeAllocator, mockUnstoreService, mockSearchIndex,
+                mock(SubtreeCountService.class)));
+    }
+
+    @Test
+    public void testLookUpLocations() {
+        Location loc1 = new Location(1, "STO-1");
+        Location loc2 = new Location(2, "STO-2");
+        when(mockLocationRepo.findAllById(any())).thenReturn(List.of(loc1));
+        when(mockLocationRepo.findAllByBarcodeIn(any())).thenReturn(List.of(loc2));
+        List<LocationIdentifier> lis = List.of(new LocationIdentifier("sto-2"), new LocationIdentifier(404),
+                new LocationIdentifier(1), new LocationIdentifier("STO-404"), new LocationIdentifier("sto-404"),
+                new LocationIdentifier(404), new LocationIdentifier("STO-1"));
+
+        LocationLookupResult result = locationService.lookUpLocations(lis);
+        assertThat(result.getLocations()).containsExactly(loc2, null, loc1, null, null, null, loc1);
+        assertThat(result.getUnknownIds()).containsExactly(404);
+        assertThat(result.getUnknownBarcodes()).containsExactly("STO-404");
+        verify(mockLocationRepo).findAllById(any());
+        verify(mockLocationRepo).findAllByBarcodeIn(any());
+    }
+
+    @Test
+    public void testLookUpLocationsInvalid() {
+        List<LocationIdentifier> tooMany = IntStream.rangeClosed(1, LocationService.MAX_LOOKUP_LOCATIONS + 1)
+                .mapToObj(LocationIdentifier::new)
+                .collect(Collectors.toList());
+        assertThat(assertThrows(IllegalArgumentException.class, () -> locationService.lookUpLocations(tooMany)))
+                .hasMessage("Cannot look up more than "+LocationService.MAX_LOOKUP_LOCATIONS+" locations at once.");
+        List<LocationIdentifier> missing = List.of(new LocationIdentifier(1), new LocationIdentifier((String) null));
+        assertThat(assertThrows(IllegalArgumentException.class, () -> locationService.lookUpLocations(missing)))
+                .hasMessage("Missing location identifier.");
+        verifyNoInteractions(mockLocationRepo);
     }
 
     @ParameterizedTest
@@ -57,6 +106,7 @@ public class TestLocationService {
             Location result = locationService.createLocation(ctxt, lin);
             assertEquals(expectedResult, result);
             verify(mockLocationRepo).save(result);
+            verify(mockSearchIndex).index(List.of(result));
         } else if (expectedResult instanceof Class) {
             //noinspection unchecked
             assertThrows((Class<? extends Throwable>) expectedResult, () -> locationService.createLocation(ctxt, lin));
@@ -161,6 +211,335 @@ public class TestLocationService {
         }
     }
 
+    /**
+     * Sets up a tree of locations for testing bulk edits:
+     * <pre>
+     * STO-1 (2x2): STO-2 (A1), STO-3 (A2), STO-4
+     *   STO-2: STO-7
+     * STO-5 (1x1): STO-6 (A1)
+     * </pre>
+     */
+    private Map<Integer, Location> setupEditTree() {
+        final Address A1 = new Address(1, 1), A2 = new Address(1, 2);
+        Location loc1 = new Location(1, "STO-1", null, null, null, null, new Size(2, 2), null);
+        Location loc2 = new Location(2, "STO-2", null, null, loc1, A1, null, null);
+        Location loc3 = new Location(3, "STO-3", null, null, loc1, A2, null, null);
+        Location loc4 = new Location(4, "STO-4", null, null, loc1, null, null, null);
+        Location loc5 = new Location(5, "STO-5", null, null, null, null, new Size(1, 1), null);
+        Location loc6 = new Location(6, "STO-6", null, null, loc5, A1, null, null);
+        Location loc7 = new Location(7, "STO-7", null, null, loc2, null, null, null);
+        Map<Integer, Location> locations = Stream.of(loc1, loc2, loc3, loc4, loc5, loc6, loc7)
+                .collect(Collectors.toMap(Location::getId, loc -> loc));
+        for (Location loc : locations.values()) {
+            if (loc.getParent()!=null) {
+                loc.getParent().getChildren().add(loc);
+            }
+        }
+        when(mockLocationRepo.findAllById(any())).then(invocation -> {
+            Iterable<Integer> ids = invocation.getArgument(0);
+            return StreamSupport.stream(ids.spliterator(), false)
+                    .map(locations::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        });
+        when(mockLocationRepo.findAllByParentIdIn(any())).then(invocation -> {
+            Collection<Integer> parentIds = invocation.getArgument(0);
+            return locations.values().stream()
+                    .filter(loc -> loc.getParent()!=null && parentIds.contains(loc.getParent().getId()))
+                    .collect(Collectors.toList());
+        });
+        return locations;
+    }
+
+    private static LocationEdit edit(int id, Object... keysAndValues) {
+        Map<String, Object> change = new HashMap<>(keysAndValues.length/2);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            change.put((String) keysAndValues[i], keysAndValues[i+1]);
+        }
+        return new LocationEdit(new LocationIdentifier(id), change);
+    }
+
+    @Test
+    public void testEditLocations() {
+        Map<Integer, Location> locations = setupEditTree();
+        final Address A1 = new Address(1, 1), A2 = new Address(1, 2), B1 = new Address(2, 1);
+        List<LocationEdit> edits = List.of(
+                edit(2, "address", A2), // swap with STO-3
+                edit(3, "address", A1),
+                edit(6, "parentId", 1, "address", B1), // move out of STO-5
+                edit(4, "parentId", 5, "address", A1), // into the space left by STO-6
+                edit(7, "name", "Alpha")
+        );
+
+        List<Location> result = locationService.editLocations(ctxt, edits);
+
+        assertThat(result.stream().map(Location::getId)).containsExactly(2, 3, 6, 4, 7);
+        assertEquals(A2, locations.get(2).getAddress());
+        assertEquals(A1, locations.get(3).getAddress());
+        assertSame(locations.get(1), locations.get(6).getParent());
+        assertEquals(B1, locations.get(6).getAddress());
+        assertSame(locations.get(5), locations.get(4).getParent());
+        assertEquals(A1, locations.get(4).getAddress());
+        assertEquals("Alpha", locations.get(7).getName());
+        verify(mockLocationRepo).findAllByParentIdIn(Set.of(1, 5));
+        verify(mockLocationRepo).saveAll(List.copyOf(result));
+        verify(mockSearchIndex).index(List.copyOf(result));
+    }
+
+    @Test
+    public void testEditLocationsNoChange() {
+        Map<Integer, Location> locations = setupEditTree();
+        List<Location> result = locationService.editLocations(ctxt, List.of(edit(2, "address", new Address(1, 1))));
+        assertThat(result).containsExactly(locations.get(2));
+        verify(mockLocationRepo, never()).saveAll(any());
+        verifyNoInteractions(mockSearchIndex);
+    }
+
+    @Test
+    public void testEditsUpdatePaths() {
+        Map<Integer, Location> locations = setupEditTree();
+        locations.values().stream()
+                .sorted(Comparator.comparingInt(loc -> loc.getHierarchy().size()))
+                .forEach(loc -> {
+                    loc.updatePathKey();
+                    loc.updateQualifiedName();
+                });
+        assertEquals("STO-1/A1/STO-7", locations.get(7).getPathKey());
+        assertEquals("STO-1 / A1 / STO-7", locations.get(7).getQualifiedNameWithFirstBarcode());
+
+        locationService.editLocations(ctxt, List.of(edit(1, "name", "Freezer"), edit(4, "parentId", 2)));
+        assertEquals("FREEZER", locations.get(1).getPathKey());
+        assertEquals("FREEZER/A2", locations.get(3).getPathKey());
+        assertEquals("FREEZER/A1/STO-7", locations.get(7).getPathKey());
+        assertEquals("FREEZER/A1/STO-4", locations.get(4).getPathKey());
+        assertEquals("STO-5/A1", locations.get(6).getPathKey());
+        assertEquals("STO-1 Freezer", locations.get(1).getQualifiedNameWithFirstBarcode());
+        assertEquals("STO-1 Freezer / A1 / STO-7", locations.get(7).getQualifiedNameWithFirstBarcode());
+        assertEquals("STO-1 Freezer / A1 / STO-4", locations.get(4).getQualifiedNameWithFirstBarcode());
+
+        when(mockLocationRepo.get(new LocationIdentifier(2))).thenReturn(locations.get(2));
+        locationService.editLocation(ctxt, new LocationIdentifier(2), Map.of("name", "Shelf"));
+        assertEquals("FREEZER/SHELF", locations.get(2).getPathKey());
+        assertEquals("FREEZER/SHELF/STO-7", locations.get(7).getPathKey());
+        assertEquals("FREEZER/SHELF/STO-4", locations.get(4).getPathKey());
+        assertEquals("STO-1 Freezer / Shelf / STO-7", locations.get(7).getQualifiedNameWithFirstBarcode());
+        assertEquals("STO-1 Freezer / Shelf / STO-4", locations.get(4).getQualifiedNameWithFirstBarcode());
+
+        clearInvocations(mockLocationRepo);
+        locationService.editLocation(ctxt, new LocationIdentifier(2), Map.of("description", "Top shelf"));
+        verify(mockLocationRepo, never()).findAllByParentIdIn(any());
+    }
+
+    @ParameterizedTest
+    @MethodSource("editLocationsErrorArguments")
+    public void testEditLocationsErrors(List<LocationEdit> edits, String expectedError) {
+        Map<Integer, Location> locations = setupEditTree();
+        Map<Integer, Location> original = new HashMap<>(locations.size());
+        locations.forEach((id, loc) -> original.put(id, new Location(id, loc.getBarcode(), loc.getName(),
+                loc.getDescription(), loc.getParent(), loc.getAddress(), loc.getSize(), loc.getDirection())));
+        assertThat(assertThrows(IllegalArgumentException.class, () -> locationService.editLocations(ctxt, edits)))
+                .hasMessage(expectedError);
+        verify(mockLocationRepo, never()).saveAll(any());
+        locations.forEach((id, loc) -> {
+            assertEquals(original.get(id), loc);
+            assertSame(original.get(id).getParent(), loc.getParent());
+        });
+    }
+
+    static Stream<Arguments> editLocationsErrorArguments() {
+        final Address A1 = new Address(1, 1), A2 = new Address(1, 2), B1 = new Address(2, 1), C1 = new Address(3, 1);
+        return Stream.of(
+                Arguments.of(List.of(edit(2, "name", "Alpha"), edit(2, "name", "Beta")),
+                        "Location given more than once: [STO-2]."),
+                Arguments.of(List.of(edit(2, "foo", 1, "name", "X".repeat(Location.MAX_NAME+1)), edit(3, "size", 5)),
+                        "Invalid field: [foo]. STO-2: Name too long ("+(Location.MAX_NAME+1)+"). Max length is "
+                                +Location.MAX_NAME+". STO-3: Require size to be a mapping of numRows and numColumns, " +
+                                "but received java.lang.Integer."),
+                Arguments.of(List.of(edit(2, "parentId", 98), edit(3, "parentId", 99)),
+                        "Invalid parent ids: [98, 99]."),
+                Arguments.of(List.of(edit(2, "parentId", 2)), "Location would be inside itself: [STO-2]."),
+                Arguments.of(List.of(edit(2, "parentId", 7)), "Locations would be inside themselves: [STO-2, STO-7]."),
+                Arguments.of(List.of(edit(5, "parentId", 6), edit(3, "parentId", 6)),
+                        "Locations would be inside themselves: [STO-5, STO-6]."),
+                Arguments.of(List.of(edit(3, "address", A1)), "Address used by more than one location in STO-1: [A1]."),
+                Arguments.of(List.of(edit(6, "parentId", 1), edit(4, "address", A2)),
+                        "Addresses used by more than one location in STO-1: [A1, A2]."),
+                Arguments.of(List.of(edit(3, "address", C1)),
+                        "STO-3: Address C1 is out of bounds for the specified parent."),
+                Arguments.of(List.of(edit(1, "size", sizeMap(1, 2)), edit(4, "address", B1)),
+                        "STO-4: Address B1 is out of bounds for the specified parent."),
+                Arguments.of(List.of(edit(4, "parentId", null, "address", A1)),
+                        "STO-4: A location without a parent cannot have an address.")
+        );
+    }
+
+    @Test
+    public void testRearrange() {
+        Map<Integer, Location> locations = setupEditTree();
+        final Address A1 = new Address(1, 1), A2 = new Address(1, 2), B2 = new Address(2, 2);
+        Location parent = locations.get(1);
+        LocationIdentifier parentLi = new LocationIdentifier(1);
+        when(mockLocationRepo.get(parentLi)).thenReturn(parent);
+        List<LocationMove> moves = List.of(new LocationMove(new LocationIdentifier(2), A2),
+                new LocationMove(new LocationIdentifier(3), B2), new LocationMove(new LocationIdentifier(4), A1));
+
+        assertSame(parent, locationService.rearrange(ctxt, parentLi, moves));
+        assertEquals(A2, locations.get(2).getAddress());
+        assertEquals(B2, locations.get(3).getAddress());
+        assertEquals(A1, locations.get(4).getAddress());
+        verify(mockLocationRepo).saveAll(List.of(locations.get(2), locations.get(3), locations.get(4)));
+    }
+
+    @Test
+    public void testRearrangeErrors() {
+        Map<Integer, Location> locations = setupEditTree();
+        final Address A1 = new Address(1, 1), A2 = new Address(1, 2), C1 = new Address(3, 1);
+        LocationIdentifier parentLi = new LocationIdentifier(1);
+        when(mockLocationRepo.get(parentLi)).thenReturn(locations.get(1));
+
+        List<LocationMove> moves = List.of(new LocationMove(new LocationIdentifier(2), A2),
+                new LocationMove(new LocationIdentifier(6), A1), new LocationMove(new LocationIdentifier(7), null));
+        assertThat(assertThrows(IllegalArgumentException.class, () -> locationService.rearrange(ctxt, parentLi, moves)))
+                .hasMessage("Locations not inside STO-1: [STO-6, STO-7].");
+
+        List<LocationMove> moves2 = List.of(new LocationMove(new LocationIdentifier(2), A2),
+                new LocationMove(new LocationIdentifier(4), C1));
+        assertThat(assertThrows(IllegalArgumentException.class, () -> locationService.rearrange(ctxt, parentLi, moves2)))
+                .hasMessage("STO-4: Address C1 is out of bounds for the specified parent. " +
+                        "Address used by more than one location in STO-1: [A2].");
+        verify(mockLocationRepo, never()).saveAll(any());
+        assertEquals(A1, locations.get(2).getAddress());
+    }
+
+    @ParameterizedTest
+    @MethodSource("deleteLocationArguments")
+    public void testDeleteLocation(boolean unstore, int numItems, String expectedError) {
+        Location loc = new Location(1, "STO-1");
+        LocationIdentifier li = new LocationIdentifier(1);
+        when(mockLocationRepo.get(li)).thenReturn(loc);
+        List<List<Integer>> levels = List.of(List.of(1), List.of(2, 3), List.of(4));
+        List<Integer> ids = List.of(1, 2, 3, 4);
+        when(mockLocationRepo.findSubtreeLevels(1)).thenReturn(levels);
+        when(mockItemRepo.countByLocationIdIn(ids)).thenReturn((long) numItems);
+        when(mockUnstoreService.unstoreInLocations(ctxt, ids)).thenReturn(numItems);
+
+        if (expectedError!=null) {
+            assertThat(assertThrows(IllegalArgumentException.class, () -> locationService.deleteLocation(ctxt, li, unstore)))
+                    .hasMessage(expectedError);
+            verify(mockLocationRepo, never()).bulkDeleteByIdIn(any());
+            verifyNoInteractions(mockDeletionRecordRepo);
+            verifyNoInteractions(mockUnstoreService);
+            verifyNoInteractions(mockSearchIndex);
+            return;
+        }
+        assertEquals(new DeleteLocationResult(4, unstore ? numItems : 0), locationService.deleteLocation(ctxt, li, unstore));
+        if (unstore) {
+            verify(mockUnstoreService).unstoreInLocations(ctxt, ids);
+            verify(mockItemRepo, never()).countByLocationIdIn(any());
+        } else {
+            verifyNoInteractions(mockUnstoreService);
+        }
+        InOrder inOrder = inOrder(mockDeletionRecordRepo, mockLocationRepo);
+        inOrder.verify(mockDeletionRecordRepo).recordDeletions(ids, ctxt.getUsername(), ctxt.getApp());
+        inOrder.verify(mockLocationRepo).bulkDeleteByIdIn(List.of(4));
+        inOrder.verify(mockLocationRepo).bulkDeleteByIdIn(List.of(2, 3));
+        inOrder.verify(mockLocationRepo).bulkDeleteByIdIn(List.of(1));
+        verify(mockSearchIndex).remove(ids);
+    }
+
+    static Stream<Arguments> deleteLocationArguments() {
+        return Stream.of(
+                Arguments.of(false, 0, null),
+                Arguments.of(true, 0, null),
+                Arguments.of(true, 3, null),
+                Arguments.of(false, 1, "Cannot delete location STO-1: an item is stored inside it."),
+                Arguments.of(false, 3, "Cannot delete location STO-1: 3 items are stored inside it.")
+        );
+    }
+
+    @Test
+    public void testCreateLocations() {
+        Location parent = new Location(1, "STO-1", null, null, null, null, new Size(2, 3), GridDirection.RightDown);
+        parent.getChildren().add(new Location(2, "STO-2", null, null, parent, new Address(1, 1), null, null));
+        parent.updatePathKey();
+        when(mockLocationRepo.getById(1)).thenReturn(parent);
+        when(mockBarcodeAllocator.createStoreBarcodes(anyInt())).then(invocation -> {
+            int count = invocation.getArgument(0);
+            return IntStream.range(0, count).mapToObj(i -> "STO-X"+i).collect(Collectors.toList());
+        });
+        LocationLayout box = new LocationLayout("Box {n}", null, null, null, null, 2, null);
+        LocationLayout rack = new LocationLayout("Rack {n}", "  A rack.  ", new Address(1, 2), new Size(1, 2),
+                GridDirection.RightDown, 3, List.of(box));
+
+        List<Location> racks = locationService.createLocations(ctxt, 1, List.of(rack));
+
+        assertThat(racks).hasSize(3);
+        assertThat(racks.stream().map(Location::getName)).containsExactly("Rack 1", "Rack 2", "Rack 3");
+        assertThat(racks.stream().map(Location::getAddress))
+                .containsExactly(new Address(1, 2), new Address(1, 3), new Address(2, 1));
+        assertThat(racks.stream().map(Location::getBarcode)).containsExactly("STO-X0", "STO-X3", "STO-X6");
+        for (Location loc : racks) {
+            assertSame(parent, loc.getParent());
+            assertEquals("A rack.", loc.getDescription());
+            assertEquals(new Size(1, 2), loc.getSize());
+            assertThat(loc.getChildren().stream().map(Location::getName)).containsExactly("Box 1", "Box 2");
+            loc.getChildren().forEach(box1 -> assertSame(loc, box1.getParent()));
+        }
+        assertThat(parent.getChildren()).hasSize(4).containsAll(racks);
+        assertEquals("STO-1/RACK 2/BOX 1", racks.get(1).getChildren().get(0).getPathKey());
+        verify(mockBarcodeAllocator).createStoreBarcodes(9);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Location>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mockLocationRepo).saveAll(captor.capture());
+        List<Location> saved = captor.getValue();
+        assertThat(saved).hasSize(9);
+        verify(mockSearchIndex).index(saved);
+        for (int i = 0; i < saved.size(); ++i) {
+            Location loc = saved.get(i);
+            if (loc.getParent()!=parent) {
+                assertThat(saved.subList(0, i)).contains(loc.getParent());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("createLocationsErrorArguments")
+    public void testCreateLocationsErrors(List<LocationLayout> layouts, String expectedError) {
+        Location parent = new Location(1, "STO-1", null, null, null, null, new Size(2, 2), null);
+        parent.getChildren().add(new Location(2, "STO-2", null, null, parent, new Address(1, 1), null, null));
+        when(mockLocationRepo.getById(1)).thenReturn(parent);
+        assertThat(assertThrows(IllegalArgumentException.class,
+                () -> locationService.createLocations(ctxt, 1, layouts)))
+                .hasMessage(expectedError);
+        verifyNoInteractions(mockBarcodeAllocator);
+        verify(mockLocationRepo, never()).saveAll(any());
+        assertThat(parent.getChildren()).hasSize(1);
+    }
+
+    static Stream<Arguments> createLocationsErrorArguments() {
+        final Address A1 = new Address(1, 1), A2 = new Address(1, 2), C1 = new Address(3, 1);
+        String longName = "X".repeat(Location.MAX_NAME - 1) + "{n}";
+        return Stream.of(
+                Arguments.of(List.of(layout(null, A1, 1)), "Address already used in the parent: [A1]."),
+                Arguments.of(List.of(layout(null, A2, 1), layout(null, A2, 1), layout(null, C1, 1)),
+                        "Address outside the listed size of the parent: [C1]. Address already used in the parent: [A2]."),
+                Arguments.of(List.of(layout(null, A2, 2)),
+                        "Locations with an address can only be repeated inside a parent with a size and direction."),
+                Arguments.of(List.of(layout(null, null, 0)), "Repeat count must be at least 1."),
+                Arguments.of(List.of(layout(longName, null, 10)),
+                        "Location name is too long (max length: "+Location.MAX_NAME+")."),
+                Arguments.of(List.of(new LocationLayout(null, null, null, new Size(1,1), null, 2,
+                                List.of(layout(null, A1, 1), layout(null, A2, 1)))),
+                        "Address outside the listed size of the parent: [A2]."),
+                Arguments.of(List.of(new LocationLayout(null, null, null, null, null, 100, List.of(layout(null, null, 100)))),
+                        "Layout specifies too many locations (max "+LocationService.MAX_LAYOUT_LOCATIONS+").")
+        );
+    }
+
+    private static LocationLayout layout(String name, Address address, int repeat) {
+        return new LocationLayout(name, null, address, null, null, repeat, null);
+    }
+
     static Stream<Arguments> editLocationsArguments() {
         final Address A2 = new Address(1,2);
         final Address B3 = new Address(2,3);
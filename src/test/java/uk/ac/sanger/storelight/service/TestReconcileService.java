@@ -0,0 +1,129 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.*;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link ReconcileService}
+ * @author dr6
+ */
+public class TestReconcileService {
+    private LocationRepo mockLocationRepo;
+    private ItemRepo mockItemRepo;
+    private ReconcileService service;
+
+    private Location rack, box1, box2;
+    private LocationIdentifier rackLi, box1Li, box2Li;
+
+    @BeforeEach
+    void setup() {
+        StoreDB mockDb = mock(StoreDB.class);
+        mockLocationRepo = mock(LocationRepo.class);
+        mockItemRepo = mock(ItemRepo.class);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        service = new ReconcileService(mockDb);
+
+        rack = new Location(1, "STO-1");
+        box1 = new Location(2, "STO-2");
+        box2 = new Location(3, "STO-3");
+        rackLi = new LocationIdentifier(rack.getBarcode());
+        box1Li = new LocationIdentifier(box1.getId());
+        box2Li = new LocationIdentifier(box2.getId());
+        when(mockLocationRepo.get(rackLi)).thenReturn(rack);
+        when(mockLocationRepo.findSubtreeIds(rack.getId())).thenReturn(List.of(1, 2, 3));
+        when(mockLocationRepo.findAllById(any())).thenReturn(List.of(box1, box2));
+        when(mockItemRepo.findItemPositionsInLocations(any())).thenReturn(List.of(
+                new Object[] { 2, 1, 1, "ITEM-1" },
+                new Object[] { 2, 1, 2, "ITEM-2" },
+                new Object[] { 3, null, null, "ITEM-3" },
+                new Object[] { 3, 2, 1, "ITEM-4" },
+                new Object[] { 1, null, null, "ITEM-5" }
+        ));
+    }
+
+    @Test
+    public void testReconcileRecursive() {
+        Location elsewhere = new Location(9, "STO-9");
+        Item item6 = new Item(6, "ITEM-6", elsewhere, new Address(3, 3));
+        when(mockItemRepo.findAllByBarcodeIn(any())).thenReturn(List.of(item6));
+        List<StoreInput> scanned = List.of(
+                new StoreInput("item-1", box1Li, new Address(1, 1)),
+                new StoreInput("ITEM-2", box1Li, new Address(1, 3)),
+                new StoreInput("ITEM-3", box2Li, null),
+                new StoreInput("ITEM-4", box1Li, null),
+                new StoreInput("item-6", box2Li, new Address(1, 1)),
+                new StoreInput("ITEM-7", null, null)
+        );
+
+        ReconcileResult result = service.reconcile(rackLi, scanned, true);
+
+        assertEquals(6, result.getNumScanned());
+        assertEquals(5, result.getNumExpected());
+        assertEquals(2, result.getNumMatched());
+        assertThat(result.getMissing()).containsExactly(
+                new ScanDiscrepancy("ITEM-5", rack, null, null, null)
+        );
+        assertThat(result.getMisplaced()).containsExactly(
+                new ScanDiscrepancy("ITEM-2", box1, new Address(1, 2), box1, new Address(1, 3)),
+                new ScanDiscrepancy("ITEM-4", box2, new Address(2, 1), box1, null)
+        );
+        assertThat(result.getUnexpected()).containsExactly(
+                new ScanDiscrepancy("ITEM-6", elsewhere, new Address(3, 3), box2, new Address(1, 1)),
+                new ScanDiscrepancy("ITEM-7", null, null, rack, null)
+        );
+        verify(mockItemRepo).findItemPositionsInLocations(List.of(1, 2, 3));
+        verify(mockItemRepo).findAllByBarcodeIn(List.of("item-6", "ITEM-7"));
+    }
+
+    @Test
+    public void testReconcileMissingInOrder() {
+        ReconcileResult result = service.reconcile(rackLi, List.of(), true);
+        assertEquals(0, result.getNumScanned());
+        assertEquals(5, result.getNumExpected());
+        assertEquals(0, result.getNumMatched());
+        assertThat(result.getMissing().stream().map(ScanDiscrepancy::getBarcode))
+                .containsExactly("ITEM-5", "ITEM-1", "ITEM-2", "ITEM-4", "ITEM-3");
+        assertThat(result.getUnexpected()).isEmpty();
+        assertThat(result.getMisplaced()).isEmpty();
+        verify(mockItemRepo, never()).findAllByBarcodeIn(any());
+    }
+
+    @Test
+    public void testReconcileNotRecursive() {
+        when(mockItemRepo.findItemPositionsInLocations(List.of(1))).thenReturn(List.<Object[]>of(
+                new Object[] { 1, null, null, "ITEM-5" }
+        ));
+        ReconcileResult result = service.reconcile(rackLi, List.of(new StoreInput("Item-5", null, null)), false);
+        assertEquals(new ReconcileResult(1, 1, 1, List.of(), List.of(), List.of()), result);
+        verify(mockLocationRepo, never()).findSubtreeIds(anyInt());
+
+        assertThat(assertThrows(IllegalArgumentException.class,
+                () -> service.reconcile(rackLi, List.of(new StoreInput("ITEM-1", box1Li, null)), false)))
+                .hasMessage("Location not inside STO-1: [STO-2].");
+    }
+
+    @Test
+    public void testReconcileRepeatedBarcodes() {
+        List<StoreInput> scanned = List.of(
+                new StoreInput("ITEM-1", box1Li, null),
+                new StoreInput("item-1", box2Li, null),
+                new StoreInput("ITEM-2", null, null),
+                new StoreInput("ITEM-1", null, null)
+        );
+        assertThat(assertThrows(IllegalArgumentException.class, () -> service.reconcile(rackLi, scanned, true)))
+                .hasMessage("Barcode scanned more than once: [\"item-1\"].");
+        verify(mockItemRepo, never()).findItemPositionsInLocations(any());
+    }
+}
@@ -7,6 +7,7 @@ import uk.ac.sanger.storelight.model.*;
 import uk.ac.sanger.storelight.utils.CIStringSet;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -32,6 +33,36 @@ public class TestStoreAddressChecker {
         }
     }
 
+    @ParameterizedTest
+    @MethodSource("checkItemsArguments")
+    public void testCheckPartitions(Collection<Item> items, String expectedErrorMessage) {
+        StoreAddressChecker checker = new StoreAddressChecker();
+        CIStringSet barcodes = new CIStringSet();
+        Map<Integer, List<Item>> partitions = new LinkedHashMap<>();
+        Map<Integer, Map<Address, String>> occupants = new HashMap<>();
+        for (Item item : items) {
+            barcodes.add(item.getBarcode());
+            Location loc = item.getLocation();
+            partitions.computeIfAbsent(loc.getId(), k -> new ArrayList<>()).add(item);
+            for (Item occupant : loc.getStored()) {
+                occupants.computeIfAbsent(loc.getId(), k -> new HashMap<>())
+                        .put(occupant.getAddress(), occupant.getBarcode());
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            if (expectedErrorMessage==null) {
+                checker.checkPartitions(partitions.values(), occupants, barcodes, pool);
+            } else {
+                assertThat(assertThrows(IllegalArgumentException.class,
+                        () -> checker.checkPartitions(partitions.values(), occupants, barcodes, pool)))
+                        .hasMessage(expectedErrorMessage);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     static Stream<Arguments> checkItemsArguments() {
         final Location loc1 = new Location(1, "STO-1", null, null, null, null, null, null);
         final Location loc2 = new Location(2, "STO-2", null, null, null, null, new Size(2,2), null);
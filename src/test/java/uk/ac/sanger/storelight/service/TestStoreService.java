@@ -56,7 +56,8 @@ public class TestStoreService {
         when(mockItemRepo.save(any())).then(invocation -> invocation.getArgument(0));
         when(mockItemRepo.saveAll(any())).then(invocation -> invocation.getArgument(0));
 
-        storeService = spy(new StoreService(mockEntityManager, mockDb, mockItemBarcodeValidator, mockStoreAddressChecker));
+        storeService = spy(new StoreService(mockEntityManager, mockDb, mockItemBarcodeValidator, mockStoreAddressChecker,
+                mock(SubtreeCountService.class)));
     }
 
     @ParameterizedTest
@@ -70,12 +71,12 @@ public class TestStoreService {
             when(mockLocationRepo.get(any())).thenThrow(EntityNotFoundException.class);
         }
         if (data.itemBarcodeError!=null) {
-            when(mockItemBarcodeValidator.validateItemBarcodes(any())).thenThrow(new IllegalArgumentException(data.itemBarcodeError));
+            when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString())).thenThrow(new IllegalArgumentException(data.itemBarcodeError));
         }
 
         if (data.expectedResult!=null) {
             assertEquals(data.expectedResult, storeService.storeBarcode(ctxt, itemBarcode, li, data.address));
-            verify(mockItemBarcodeValidator).validateItemBarcodes(any());
+            verify(mockItemBarcodeValidator).validateItemBarcodes(any(), anyString());
             InOrder order = inOrder(mockItemRepo, mockEntityManager);
             order.verify(mockItemRepo).deleteAllByBarcodeIn(List.of(itemBarcode));
             order.verify(mockEntityManager).flush();
@@ -142,10 +143,10 @@ public class TestStoreService {
         CIStringSet barcodeSet;
         if (data.itemBarcodeError==null) {
             barcodeSet = new CIStringSet(data.barcodes);
-            when(mockItemBarcodeValidator.validateItemBarcodes(any())).thenReturn(barcodeSet);
+            when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString())).thenReturn(barcodeSet);
         } else {
             barcodeSet = null;
-            when(mockItemBarcodeValidator.validateItemBarcodes(any()))
+            when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString()))
                     .thenThrow(new IllegalArgumentException(data.itemBarcodeError));
         }
         if (data.location!=null) {
@@ -234,10 +235,10 @@ public class TestStoreService {
         if (data.itemBarcodeError==null) {
             barcodeSet = new CIStringSet();
             data.storeInputs.forEach(si -> barcodeSet.add(si.getBarcode()));
-            when(mockItemBarcodeValidator.validateItemBarcodes(any())).thenReturn(barcodeSet);
+            when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString())).thenReturn(barcodeSet);
         } else {
             barcodeSet = null;
-            when(mockItemBarcodeValidator.validateItemBarcodes(any()))
+            when(mockItemBarcodeValidator.validateItemBarcodes(any(), anyString()))
                     .thenThrow(new IllegalArgumentException(data.itemBarcodeError));
         }
         if (data.addressError!=null) {
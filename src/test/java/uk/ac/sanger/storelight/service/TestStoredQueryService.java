@@ -0,0 +1,159 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.data.domain.PageRequest;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.LocationIdentifier;
+import uk.ac.sanger.storelight.requests.ResultPage;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link StoredQueryService}
+ * @author dr6
+ */
+public class TestStoredQueryService {
+    private ItemRepo mockItemRepo;
+    private StoredQueryService service;
+
+    @BeforeEach
+    void setup() {
+        StoreDB mockDb = mock(StoreDB.class);
+        mockItemRepo = mock(ItemRepo.class);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        service = new StoredQueryService(mockDb);
+    }
+
+    @Test
+    public void testStoredByPrefix() {
+        Location loc = new Location(1, "STO-1");
+        List<Item> items = new ArrayList<>(List.of(new Item("ab-1", loc), new Item("AB-2", loc), new Item("AB-3", loc)));
+        when(mockItemRepo.findPageByBarcodeKeyLike(any(), any(), any())).thenReturn(items);
+
+        assertEquals(new ResultPage<>(items.subList(0, 2), "AB-2", true), service.storedByPrefix(" ab_ ", 2, null));
+        verify(mockItemRepo).findPageByBarcodeKeyLike("AB!_%", "", PageRequest.of(0, 3));
+
+        assertEquals(new ResultPage<>(items, "AB-3", false), service.storedByPrefix("ab", 3, "ab-0"));
+        verify(mockItemRepo).findPageByBarcodeKeyLike("AB%", "AB-0", PageRequest.of(0, 4));
+
+        when(mockItemRepo.findPageByBarcodeKeyLike(any(), any(), any())).thenReturn(List.of());
+        assertEquals(new ResultPage<>(List.of(), null, false), service.storedByPrefix("ab", 3, "AB-3"));
+    }
+
+    @ParameterizedTest
+    @CsvSource(value={
+            ", 10, No barcode prefix given.",
+            "'  ', 10, No barcode prefix given.",
+            "AB, 0, The number of results must be between 1 and 1000.",
+            "AB, 1001, The number of results must be between 1 and 1000.",
+    })
+    public void testStoredByPrefixErrors(String prefix, int first, String expectedError) {
+        assertThat(assertThrows(IllegalArgumentException.class, () -> service.storedByPrefix(prefix, first, null)))
+                .hasMessage(expectedError);
+        verifyNoInteractions(mockItemRepo);
+    }
+
+    @Test
+    public void testStoredPage() {
+        Location loc = new Location(10, "STO-10");
+        Item a1 = new Item(1, "ITEM-1", loc, new Address(1, 1));
+        Item a2 = new Item(5, "ITEM-5", loc, new Address(1, 2));
+        Item b1 = new Item(3, "ITEM-3", loc, new Address(2, 1));
+        Item none1 = new Item(2, "ITEM-2", loc, null);
+        Item none2 = new Item(4, "ITEM-4", loc, null);
+        when(mockItemRepo.countByLocationId(10)).thenReturn(5L);
+        when(mockItemRepo.findAddressedPage(10, 0, 0, 0, PageRequest.of(0, 3))).thenReturn(List.of(a1, a2, b1));
+        when(mockItemRepo.findAddressedPage(10, 1, 2, 5, PageRequest.of(0, 3))).thenReturn(List.of(b1));
+        when(mockItemRepo.findUnaddressedPage(10, 0, PageRequest.of(0, 2))).thenReturn(List.of(none1, none2));
+        when(mockItemRepo.findUnaddressedPage(10, 2, PageRequest.of(0, 3))).thenReturn(List.of(none2));
+
+        assertEquals(new ResultPage<>(List.of(a1, a2), "1:2:5", true, 5), service.storedPage(loc, 2, null));
+        verify(mockItemRepo, never()).findUnaddressedPage(any(), anyInt(), any());
+        assertEquals(new ResultPage<>(List.of(b1, none1), "2", true, 5), service.storedPage(loc, 2, "1:2:5"));
+        assertEquals(new ResultPage<>(List.of(none2), "4", false, 5), service.storedPage(loc, 2, "2"));
+    }
+
+    @Test
+    public void testChildrenPage() {
+        LocationRepo mockLocationRepo = mock(LocationRepo.class);
+        StoreDB mockDb = mock(StoreDB.class);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        service = new StoredQueryService(mockDb);
+        Location parent = new Location(10, "STO-10");
+        Location child = new Location(11, "STO-11", null, null, parent, new Address(3, 4), null, null);
+        when(mockLocationRepo.countByParentId(10)).thenReturn(1L);
+        when(mockLocationRepo.findAddressedPage(10, 0, 0, 0, PageRequest.of(0, 6))).thenReturn(List.of(child));
+        assertEquals(new ResultPage<>(List.of(child), "3:4:11", false, 1), service.childrenPage(parent, 5, null));
+        verify(mockLocationRepo).findUnaddressedPage(10, 0, PageRequest.of(0, 5));
+    }
+
+    @ParameterizedTest
+    @CsvSource(value={
+            "'', Invalid cursor: \"\"",
+            "1:2, Invalid cursor: \"1:2\"",
+            "1:2:X, Invalid cursor: \"1:2:X\"",
+            "ABC, Invalid cursor: \"ABC\"",
+    })
+    public void testStoredPageInvalidCursor(String after, String expectedError) {
+        assertThat(assertThrows(IllegalArgumentException.class, () -> service.storedPage(new Location(10, "STO-10"), 2, after)))
+                .hasMessage(expectedError);
+        verifyNoInteractions(mockItemRepo);
+    }
+
+    @Test
+    public void testStoredUnder() {
+        LocationRepo mockLocationRepo = mock(LocationRepo.class);
+        StoreDB mockDb = mock(StoreDB.class);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        service = new StoredQueryService(mockDb);
+        Location root = new Location(1, "STO-1");
+        LocationIdentifier li = new LocationIdentifier(1);
+        when(mockLocationRepo.get(li)).thenReturn(root);
+        final int numLocations = RepoUtils.MAX_IN_SIZE + 500;
+        List<Integer> subtreeIds = IntStream.rangeClosed(1, numLocations).boxed().collect(toList());
+        Collections.reverse(subtreeIds);
+        when(mockLocationRepo.findSubtreeIds(1)).thenReturn(subtreeIds);
+        List<Integer> chunk1 = IntStream.rangeClosed(1, RepoUtils.MAX_IN_SIZE).boxed().collect(toList());
+        List<Integer> chunk2 = IntStream.rangeClosed(RepoUtils.MAX_IN_SIZE + 1, numLocations).boxed().collect(toList());
+        Location loc7 = new Location(7, "STO-7");
+        Location loc1001 = new Location(1001, "STO-1001");
+        Item itemA = new Item(20, "ITEM-A", loc7, null);
+        Item itemB = new Item(4, "ITEM-B", loc1001, null);
+        Item itemC = new Item(9, "ITEM-C", loc1001, null);
+        when(mockItemRepo.findPageInLocations(chunk1, 0, 0, PageRequest.of(0, 3))).thenReturn(List.of(itemA));
+        when(mockItemRepo.findPageInLocations(chunk2, 0, 0, PageRequest.of(0, 2))).thenReturn(List.of(itemB, itemC));
+        when(mockItemRepo.findPageInLocations(chunk2, 1001, 4, PageRequest.of(0, 3))).thenReturn(List.of(itemC));
+
+        assertEquals(new ResultPage<>(List.of(itemA, itemB), "1001:4", true), service.storedUnder(li, 2, null));
+        assertEquals(new ResultPage<>(List.of(itemC), "1001:9", false), service.storedUnder(li, 2, "1001:4"));
+        verify(mockItemRepo, never()).findPageInLocations(eq(chunk1), eq(1001), anyInt(), any());
+
+        for (String after : new String[] { "", "1", "1:2:3", "X:1" }) {
+            assertThat(assertThrows(IllegalArgumentException.class, () -> service.storedUnder(li, 2, after)))
+                    .hasMessage("Invalid cursor: \""+after+"\"");
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource(value={
+            "ABC, ABC",
+            "A%B_C, A!%B!_C",
+            "A!B, A!!B",
+    })
+    public void testEscapeLike(String string, String expected) {
+        assertEquals(expected, StoredQueryService.escapeLike(string));
+    }
+}
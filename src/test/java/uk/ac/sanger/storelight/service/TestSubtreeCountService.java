@@ -0,0 +1,178 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link SubtreeCountService}
+ * @author dr6
+ */
+public class TestSubtreeCountService {
+    private LocationRepo mockLocationRepo;
+    private ItemRepo mockItemRepo;
+    private SubtreeCountRepo mockCountRepo;
+    private SubtreeCountService service;
+
+    private Location freezer, shelf, box1, box2;
+
+    @BeforeEach
+    void setup() {
+        mockLocationRepo = mock(LocationRepo.class);
+        mockItemRepo = mock(ItemRepo.class);
+        mockCountRepo = mock(SubtreeCountRepo.class);
+        StoreDB mockDb = mock(StoreDB.class);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        when(mockDb.getSubtreeCountRepo()).thenReturn(mockCountRepo);
+        service = new SubtreeCountService(mockDb, mock(PlatformTransactionManager.class));
+
+        freezer = new Location(1, "STO-1");
+        shelf = new Location(2, "STO-2");
+        shelf.setParent(freezer);
+        box1 = new Location(20, "STO-20");
+        box1.setParent(shelf);
+        box2 = new Location(35, "STO-35");
+        box2.setParent(shelf);
+    }
+
+    @Test
+    public void testStripeFor() {
+        assertEquals(0, SubtreeCountService.stripeFor(0));
+        assertEquals(4, SubtreeCountService.stripeFor(20));
+        assertEquals(3, SubtreeCountService.stripeFor(35));
+        assertEquals(SubtreeCountService.NUM_STRIPES - 1, SubtreeCountService.stripeFor(-1));
+    }
+
+    @Test
+    public void testAdjust() {
+        when(mockLocationRepo.findAllById(Set.of(35))).thenReturn(List.of(box2));
+        service.adjust(Map.of(20, 3, 35, -1, 2, 0), Map.of(20, box1));
+
+        InOrder inOrder = inOrder(mockCountRepo);
+        inOrder.verify(mockCountRepo).addItems(1, 3, -1);
+        inOrder.verify(mockCountRepo).addItems(1, 4, 3);
+        inOrder.verify(mockCountRepo).addItems(2, 3, -1);
+        inOrder.verify(mockCountRepo).addItems(2, 4, 3);
+        inOrder.verify(mockCountRepo).addItems(20, 4, 3);
+        inOrder.verify(mockCountRepo).addItems(35, 3, -1);
+        verifyNoMoreInteractions(mockCountRepo);
+    }
+
+    @Test
+    public void testRecordStores() {
+        service.recordStores(List.of());
+        verifyNoInteractions(mockItemRepo, mockCountRepo);
+
+        List<Object[]> oldCounts = List.<Object[]>of(new Object[] { 35, 1L });
+        when(mockItemRepo.countByLocationOfBarcodeKeyIn(List.of("ITEM-1", "ITEM-2"))).thenReturn(oldCounts);
+        when(mockLocationRepo.findAllById(Set.of(35))).thenReturn(List.of(box2));
+        service.recordStores(List.of(new Item("item-1", box1), new Item("ITEM-2", box1)));
+
+        verify(mockCountRepo).addItems(1, 3, -1);
+        verify(mockCountRepo).addItems(1, 4, 2);
+        verify(mockCountRepo).addItems(2, 3, -1);
+        verify(mockCountRepo).addItems(2, 4, 2);
+        verify(mockCountRepo).addItems(20, 4, 2);
+        verify(mockCountRepo).addItems(35, 3, -1);
+        verifyNoMoreInteractions(mockCountRepo);
+    }
+
+    @Test
+    public void testRecordTransfer() {
+        service.recordTransfer(box1, box2, 0);
+        service.recordTransfer(box1, box1, 5);
+        verifyNoInteractions(mockCountRepo);
+
+        service.recordTransfer(box1, box2, 5);
+        verify(mockCountRepo).addItems(1, 4, -5);
+        verify(mockCountRepo).addItems(1, 3, 5);
+        verify(mockCountRepo).addItems(2, 4, -5);
+        verify(mockCountRepo).addItems(2, 3, 5);
+        verify(mockCountRepo).addItems(20, 4, -5);
+        verify(mockCountRepo).addItems(35, 3, 5);
+        verifyNoMoreInteractions(mockCountRepo);
+    }
+
+    @Test
+    public void testRecordMoves() {
+        Location otherFreezer = new Location(3, "STO-3");
+        Map<Location, List<Integer>> ancestry = service.ancestry(List.of(shelf, box1));
+        assertThat(ancestry.get(box1)).containsExactly(2, 1);
+
+        service.recordMoves(ancestry);
+        verifyNoInteractions(mockCountRepo);
+
+        // The shelf (with 5 items under it, 2 of them in box1) moves to the other freezer,
+        // and box1 moves out of the shelf into the freezer, so its items stay in the freezer's count
+        shelf.setParent(otherFreezer);
+        box1.setParent(freezer);
+        List<SubtreeCount> counts = List.of(new SubtreeCount(2, 0, 4), new SubtreeCount(2, 4, 1),
+                new SubtreeCount(20, 4, 2));
+        when(mockCountRepo.findAllForUpdateByLocationIdIn(any())).thenReturn(counts);
+        service.recordMoves(ancestry);
+
+        int shelfStripe = SubtreeCountService.stripeFor(2);
+        verify(mockCountRepo).addItems(1, shelfStripe, -3);
+        verify(mockCountRepo).addItems(3, shelfStripe, 3);
+        verify(mockCountRepo).addItems(2, 4, -2);
+        verify(mockCountRepo).findAllForUpdateByLocationIdIn(List.of(2, 20));
+        verifyNoMoreInteractions(mockCountRepo);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRebuild() {
+        List<Object[]> parents = List.of(new Object[] { 1, null }, new Object[] { 2, 1 },
+                new Object[] { 20, 2 }, new Object[] { 35, 2 });
+        when(mockLocationRepo.findAllParentIds()).thenReturn(parents);
+        List<Object[]> itemCounts = List.of(new Object[] { 20, 3L }, new Object[] { 35, 1L }, new Object[] { 2, 2L });
+        when(mockItemRepo.countAllByLocation()).thenReturn(itemCounts);
+
+        service.rebuild();
+
+        ArgumentCaptor<Iterable<SubtreeCount>> captor = ArgumentCaptor.forClass(Iterable.class);
+        InOrder inOrder = inOrder(mockCountRepo);
+        InOrder itemOrder = inOrder(mockCountRepo, mockItemRepo);
+        itemOrder.verify(mockCountRepo).deleteAllCounts();
+        itemOrder.verify(mockItemRepo).countAllByLocation();
+        inOrder.verify(mockCountRepo).deleteAllCounts();
+        inOrder.verify(mockCountRepo).saveAll(captor.capture());
+        assertThat(captor.getValue()).containsExactlyInAnyOrder(
+                new SubtreeCount(1, 0, 6), new SubtreeCount(2, 0, 6),
+                new SubtreeCount(20, 0, 3), new SubtreeCount(35, 0, 1),
+                new SubtreeCount(SubtreeCountService.REBUILT_MARKER_ID, 0, 0)
+        );
+    }
+
+    @Test
+    public void testRebuildIfNeeded() {
+        service = spy(service);
+        doNothing().when(service).rebuild();
+        when(mockCountRepo.findForUpdate(SubtreeCountService.REBUILT_MARKER_ID, 0))
+                .thenReturn(Optional.of(new SubtreeCount(SubtreeCountService.REBUILT_MARKER_ID, 0, 0)));
+        service.rebuildIfNeeded();
+        verify(service, never()).rebuild();
+
+        when(mockCountRepo.findForUpdate(SubtreeCountService.REBUILT_MARKER_ID, 0)).thenReturn(Optional.empty());
+        service.rebuildIfNeeded();
+        verify(service).rebuild();
+
+        service.forceRebuild = true;
+        when(mockCountRepo.findForUpdate(SubtreeCountService.REBUILT_MARKER_ID, 0))
+                .thenReturn(Optional.of(new SubtreeCount(SubtreeCountService.REBUILT_MARKER_ID, 0, 0)));
+        service.rebuildIfNeeded();
+        verify(service, times(2)).rebuild();
+    }
+}
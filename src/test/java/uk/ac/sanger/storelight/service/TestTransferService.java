@@ -0,0 +1,140 @@
+package uk.ac.sanger.storelight.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
+import uk.ac.sanger.storelight.graphql.StoreRequestContext;
+import uk.ac.sanger.storelight.model.*;
+import uk.ac.sanger.storelight.repo.*;
+import uk.ac.sanger.storelight.requests.*;
+import uk.ac.sanger.storelight.service.TransferService.Transform;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link TransferService}
+ * @author dr6
+ */
+public class TestTransferService {
+    private LocationRepo mockLocationRepo;
+    private ItemRepo mockItemRepo;
+    private StoreRecordRepo mockRecordRepo;
+    private TransferService service;
+    private StoreRequestContext ctxt;
+
+    private Location dest;
+
+    @BeforeEach
+    void setup() {
+        mockLocationRepo = mock(LocationRepo.class);
+        mockItemRepo = mock(ItemRepo.class);
+        mockRecordRepo = mock(StoreRecordRepo.class);
+        StoreDB mockDb = mock(StoreDB.class);
+        when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
+        when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
+        when(mockDb.getStoreRecordRepo()).thenReturn(mockRecordRepo);
+        service = new TransferService(mockDb, mock(SubtreeCountService.class));
+        ctxt = new StoreRequestContext("apikey", "test", "tester");
+
+        dest = new Location(10, "STO-10", null, null, null, null, new Size(4, 6), GridDirection.RightDown);
+        when(mockLocationRepo.get(new LocationIdentifier(10))).thenReturn(dest);
+        List<Location> locations = List.of(new Location(1, "STO-1"), new Location(2, "STO-2"),
+                new Location(3, "STO-3"), new Location(4, "STO-4"), dest);
+        when(mockLocationRepo.findAllById(any())).then(invocation -> {
+            Iterable<Integer> ids = invocation.getArgument(0);
+            List<Location> found = new ArrayList<>();
+            for (Integer id : ids) {
+                locations.stream().filter(loc -> loc.getId().equals(id)).forEach(found::add);
+            }
+            return found;
+        });
+        when(mockItemRepo.findAddressedItemsInLocations(List.of(10)))
+                .thenReturn(List.<Object[]>of(new Object[] { 10, 4, 4, "ITEM-D" }));
+    }
+
+    private static List<LocationIdentifier> sourceLis(Integer... ids) {
+        return Arrays.stream(ids).map(LocationIdentifier::new).collect(toList());
+    }
+
+    private static Object[] position(int locationId, Integer row, Integer column, String barcode) {
+        return new Object[] { locationId, row, column, barcode };
+    }
+
+    @Test
+    public void testTransforms() {
+        List<Transform> quadrants = TransferService.transforms(TransferMapping.Quadrant, 4, null, null);
+        assertThat(quadrants.stream().map(tr -> new Address(tr.row(1), tr.column(1))))
+                .containsExactly(new Address(1, 1), new Address(1, 2), new Address(2, 1), new Address(2, 2));
+        assertEquals(new Address(6, 5), new Address(quadrants.get(3).row(3), quadrants.get(2).column(3)));
+        assertThat(TransferService.transforms(TransferMapping.Identity, 2, null, null))
+                .containsExactly(Transform.IDENTITY, Transform.IDENTITY);
+        assertThat(TransferService.transforms(TransferMapping.Offset, 1, 2, null))
+                .containsExactly(new Transform(1, 2, 0));
+    }
+
+    @Test
+    public void testTransfer() {
+        when(mockItemRepo.findItemPositionsInLocations(any())).thenReturn(List.of(
+                position(1, 1, 1, "ITEM-1"), position(2, 1, 1, "ITEM-2"),
+                position(3, 2, 3, "ITEM-3"), position(4, 1, 2, "ITEM-4")
+        ));
+        when(mockItemRepo.transfer(any(), any(), anyInt(), anyInt(), anyInt())).thenReturn(1);
+
+        TransferResult result = service.transfer(ctxt, sourceLis(1, 2, 3, 4), new LocationIdentifier(10),
+                TransferMapping.Quadrant, null, null);
+
+        assertEquals(new TransferResult(4, dest), result);
+        InOrder inOrder = inOrder(mockRecordRepo, mockItemRepo);
+        int[][] shifts = { {-1, -1}, {-1, 0}, {0, -1}, {0, 0} };
+        for (int i = 0; i < 4; ++i) {
+            inOrder.verify(mockRecordRepo).recordTransfer(i+1, 2, shifts[i][0], shifts[i][1], 10, ctxt.getUsername(), ctxt.getApp());
+            inOrder.verify(mockItemRepo).transfer(i+1, dest, 2, shifts[i][0], shifts[i][1]);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("transferErrorArguments")
+    public void testTransferErrors(List<LocationIdentifier> sourceLis, TransferMapping mapping, Integer rowOffset,
+                                   Integer columnOffset, List<Object[]> positions, String expectedError) {
+        when(mockItemRepo.findItemPositionsInLocations(any())).thenReturn(positions);
+        assertThat(assertThrows(IllegalArgumentException.class, () -> service.transfer(ctxt, sourceLis,
+                new LocationIdentifier(10), mapping, rowOffset, columnOffset)))
+                .hasMessage(expectedError);
+        verifyNoInteractions(mockRecordRepo);
+        verify(mockItemRepo, never()).transfer(any(), any(), anyInt(), anyInt(), anyInt());
+    }
+
+    static Stream<Arguments> transferErrorArguments() {
+        List<Object[]> none = List.of();
+        return Stream.of(
+                Arguments.of(List.of(), null, null, null, none, "No source locations given."),
+                Arguments.of(sourceLis(1), TransferMapping.Identity, 1, null, none,
+                        "Offsets can only be given for an Offset mapping."),
+                Arguments.of(sourceLis(1, 2, 3, 4, 1), TransferMapping.Quadrant, null, null, none,
+                        "A Quadrant mapping cannot have more than 4 sources."),
+                Arguments.of(sourceLis(1, 10), null, null, null, none, "The destination cannot also be a source."),
+                Arguments.of(sourceLis(1, 2, 1), null, null, null, none, "Source location given more than once: [STO-1]."),
+                Arguments.of(sourceLis(1, 2), TransferMapping.Offset, 1, -1,
+                        List.of(position(1, null, null, "ITEM-1"), position(1, 1, 1, "ITEM-2"),
+                                position(2, 3, 8, "ITEM-3"), position(2, 3, 5, "ITEM-4")),
+                        "Item without an address cannot be mapped: [\"ITEM-1\"]. Items would be mapped outside " +
+                                "the destination: [\"ITEM-2\", \"ITEM-3\"]. Address already occupied in the destination: [D4]."),
+                Arguments.of(sourceLis(1, 2), null, null, null,
+                        List.of(position(1, null, null, "ITEM-1"), position(1, 1, 1, "ITEM-2"),
+                                position(2, 1, 1, "ITEM-3"), position(2, 5, 1, "ITEM-4")),
+                        "Item would be mapped outside the destination: [\"ITEM-4\"]. " +
+                                "Address mapped to by more than one item: [A1].")
+        );
+    }
+}
@@ -2,10 +2,12 @@ package uk.ac.sanger.storelight.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import uk.ac.sanger.storelight.graphql.StoreRequestContext;
 import uk.ac.sanger.storelight.model.*;
 import uk.ac.sanger.storelight.repo.*;
 import uk.ac.sanger.storelight.requests.LocationIdentifier;
+import uk.ac.sanger.storelight.requests.RecursiveUnstoreResult;
 
 import javax.persistence.EntityNotFoundException;
 import java.util.List;
@@ -36,7 +38,7 @@ public class TestUnstoreService {
         when(mockDb.getItemRepo()).thenReturn(mockItemRepo);
         when(mockDb.getLocationRepo()).thenReturn(mockLocationRepo);
         when(mockDb.getStoreRecordRepo()).thenReturn(mockRecordRepo);
-        unstoreService = new UnstoreService(mockDb);
+        unstoreService = new UnstoreService(mockDb, mock(SubtreeCountService.class));
         ctxt = new StoreRequestContext("apikey", "test", "tester");
     }
 
@@ -59,15 +61,18 @@ public class TestUnstoreService {
         List<String> list1 = List.of("X", "Y", "Z");
         when(mockItemRepo.findAllByBarcodeIn(list1)).thenReturn(List.of());
         assertThat(unstoreService.unstoreBarcodes(ctxt, list1)).isEmpty();
-        verify(mockItemRepo, never()).deleteAll(any());
+        verify(mockItemRepo, never()).bulkDeleteByBarcodeKeyIn(any());
         Location loc = new Location(1, "STO-1");
         List<String> list2 = List.of("A", "B", "C");
         List<Item> items = List.of(new Item(1, "A", loc, null), new Item(2, "B", loc, null));
         when(mockItemRepo.findAllByBarcodeIn(list2)).thenReturn(items);
 
         assertThat(unstoreService.unstoreBarcodes(ctxt, list2)).hasSameElementsAs(items);
-        verify(mockItemRepo).deleteAll(items);
-        verifyUnstoreRecords(items);
+        InOrder inOrder = inOrder(mockRecordRepo, mockItemRepo);
+        inOrder.verify(mockRecordRepo).recordUnstoresOfBarcodeKeys(List.of("A", "B"), ctxt.getUsername(), ctxt.getApp());
+        inOrder.verify(mockItemRepo).bulkDeleteByBarcodeKeyIn(List.of("A", "B"));
+        verify(mockItemRepo, never()).deleteAll(any());
+        verify(mockRecordRepo, never()).saveAll(any());
     }
 
     @Test
@@ -93,6 +98,30 @@ public class TestUnstoreService {
         verifyUnstoreRecords(List.of(item));
     }
 
+    @Test
+    public void testEmptyRecursive() {
+        Location loc = new Location(1, "STO-1");
+        LocationIdentifier li = new LocationIdentifier(loc.getId());
+        when(mockLocationRepo.get(li)).thenReturn(loc);
+        List<Integer> subtreeIds = List.of(1, 2, 3);
+        when(mockLocationRepo.findSubtreeIds(1)).thenReturn(subtreeIds);
+        List<Item> items = List.of(new Item(10, "ITEM-10", loc, null),
+                new Item(11, "ITEM-11", new Location(3, "STO-3"), null));
+        when(mockItemRepo.findAllByLocationIdIn(subtreeIds)).thenReturn(items);
+        when(mockItemRepo.deleteAllByLocationIdIn(subtreeIds)).thenReturn(2);
+
+        assertEquals(new RecursiveUnstoreResult(3, 2, null), unstoreService.emptyRecursive(ctxt, li, false));
+        verify(mockItemRepo, never()).findAllByLocationIdIn(any());
+
+        assertEquals(new RecursiveUnstoreResult(3, 2, items), unstoreService.emptyRecursive(ctxt, li, true));
+
+        InOrder inOrder = inOrder(mockRecordRepo, mockItemRepo);
+        inOrder.verify(mockRecordRepo).recordUnstoresInLocations(subtreeIds, ctxt.getUsername(), ctxt.getApp());
+        inOrder.verify(mockItemRepo).deleteAllByLocationIdIn(subtreeIds);
+        verify(mockItemRepo, never()).deleteAll(any());
+        verify(mockRecordRepo, never()).saveAll(any());
+    }
+
     private void verifyUnstoreRecords(List<Item> items) {
         List<StoreRecord> records = items.stream()
                 .map(item -> new StoreRecord(item.getBarcode(), null, null, ctxt.getUsername(), ctxt.getApp()))
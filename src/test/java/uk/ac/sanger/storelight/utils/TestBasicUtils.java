@@ -0,0 +1,32 @@
+package uk.ac.sanger.storelight.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests {@link BasicUtils}
+ * @author dr6
+ */
+public class TestBasicUtils {
+    @Test
+    public void testBarcodeKey() {
+        assertNull(BasicUtils.barcodeKey(null));
+        assertEquals("STO-1A", BasicUtils.barcodeKey("sto-1a"));
+        assertEquals("STO-1A", BasicUtils.barcodeKey("STO-1A"));
+    }
+
+    @Test
+    public void testBarcodeKeyIgnoresDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertEquals("ITEM-I1", BasicUtils.barcodeKey("item-i1"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -86,4 +86,34 @@ public class TestCIStringSet {
         assertThrows(NoSuchElementException.class, iter::next);
         assertEquals(CIStringSet.of("Alabama", "ARIZONA", "arkansas"), strings);
     }
+
+    @Test
+    public void testGrowthAndOrder() {
+        CIStringSet strings = new CIStringSet();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+            String s = "Item-"+i;
+            assertTrue(strings.add(s));
+            expected.add(s);
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            assertTrue(strings.remove("ITEM-"+i));
+            assertFalse(strings.contains("item-"+i));
+            expected.remove("Item-"+i);
+        }
+        assertThat(strings).hasSize(500);
+        assertThat(strings).containsExactlyElementsOf(expected);
+        for (int i = 0; i < 1000; ++i) {
+            if (strings.add("item-"+i)) {
+                expected.add("item-"+i);
+            }
+        }
+        assertThat(strings).hasSize(1000);
+        assertThat(strings).containsExactlyElementsOf(expected);
+        for (int i = 0; i < 1000; ++i) {
+            assertTrue(strings.contains("ITEM-"+i));
+        }
+        assertEquals(new CIStringSet(expected), strings);
+        assertEquals(new CIStringSet(expected).hashCode(), strings.hashCode());
+    }
 }